@@ -0,0 +1,24 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 从classpath加载构建时生成的合成PDF，找不到时（例如在IDE中直接运行）在内存中生成
+ */
+final class BenchmarkDocument {
+
+    private BenchmarkDocument() {
+    }
+
+    static PDDocument load(SyntheticPdfGenerator.Spec spec) throws IOException {
+        try (InputStream in = BenchmarkDocument.class.getResourceAsStream(spec.resourceName())) {
+            if (in != null) {
+                return PDDocument.load(in);
+            }
+        }
+        return SyntheticPdfGenerator.generate(spec);
+    }
+}
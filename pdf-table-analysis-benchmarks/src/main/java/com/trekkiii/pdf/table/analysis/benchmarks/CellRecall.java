@@ -0,0 +1,124 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.opencv.CellExtractionStrategy;
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+import com.trekkiii.pdf.table.analysis.opencv.ExtractionMethod;
+import com.trekkiii.pdf.table.analysis.utils.Utils;
+import com.trekkiii.pdf.table.analysis.vector.VectorExtractor;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 比较各个{@link ExtractionMethod}的单元格召回率和每页耗时。
+ * <p>
+ * 以{@link VectorExtractor}从绘图指令中得到的单元格作为标准答案，因此只适用于表格线为矢量路径的PDF；
+ * 识别出的单元格与标准答案的IoU不小于{@link #MIN_IOU}时算作召回。
+ * <pre>
+ * java -cp target/benchmarks.jar com.trekkiii.pdf.table.analysis.benchmarks.CellRecall [file.pdf...]
+ * </pre>
+ * 不指定文件时使用{@link SyntheticPdfGenerator}生成的文档
+ */
+public class CellRecall {
+
+    private static final double MIN_IOU = 0.5;
+    private static final int REPEAT = 10;
+
+    public static void main(String[] args) throws IOException {
+        nu.pattern.OpenCV.loadShared();
+        Settings settings = new Settings();
+        System.out.printf("%-24s %-10s %8s %8s %8s %10s%n", "document", "method", "truth", "found", "recall", "ms/page");
+        if (args.length == 0) {
+            for (SyntheticPdfGenerator.Spec spec : SyntheticPdfGenerator.Spec.values()) {
+                try (PDDocument document = BenchmarkDocument.load(spec)) {
+                    report(spec.fileName(), document, settings);
+                }
+            }
+        }
+        for (String arg : args) {
+            try (PDDocument document = PDDocument.load(new File(arg))) {
+                report(new File(arg).getName(), document, settings);
+            }
+        }
+    }
+
+    private static void report(String name, PDDocument document, Settings settings) throws IOException {
+        VectorExtractor vectorExtractor = new VectorExtractor(settings);
+        PDFRenderer renderer = new PDFRenderer(document);
+        int pages = document.getNumberOfPages();
+        List<List<Rect>> truth = new ArrayList<>(pages);
+        List<Mat> images = new ArrayList<>(pages);
+        try {
+            for (int page = 0; page < pages; page++) {
+                truth.add(cells(vectorExtractor.getTables(document.getPage(page))));
+                images.add(Utils.bufferedImage2GrayscaleMat(
+                        renderer.renderImageWithDPI(page, settings.getPdfRenderingDpi(), ImageType.RGB)));
+            }
+            for (ExtractionMethod method : ExtractionMethod.values()) {
+                CellExtractionStrategy extractor = method.create(Settings.builder().setExtractionMethod(method).build());
+                int truthCount = 0;
+                int foundCount = 0;
+                int recalled = 0;
+                long nanos = 0;
+                for (int page = 0; page < pages; page++) {
+                    List<Rect> found = extractor.getTableBoundingRectangles(images.get(page));// 预热
+                    long start = System.nanoTime();
+                    for (int i = 0; i < REPEAT; i++) {
+                        extractor.getTableBoundingRectangles(images.get(page));
+                    }
+                    nanos += System.nanoTime() - start;
+                    truthCount += truth.get(page).size();
+                    foundCount += found.size();
+                    recalled += matched(truth.get(page), found);
+                }
+                System.out.printf("%-24s %-10s %8d %8d %8.3f %10.2f%n", name, method, truthCount, foundCount,
+                        truthCount == 0 ? 1.0 : recalled / (double) truthCount, nanos / 1e6 / REPEAT / pages);
+            }
+        } finally {
+            for (Mat image : images) {
+                image.release();
+            }
+        }
+    }
+
+    private static List<Rect> cells(List<DetectedTable> tables) {
+        List<Rect> out = new ArrayList<>();
+        for (DetectedTable table : tables) {
+            out.addAll(table.getCells());
+        }
+        return out;
+    }
+
+    private static int matched(List<Rect> truth, List<Rect> found) {
+        int count = 0;
+        for (Rect expected : truth) {
+            for (Rect rect : found) {
+                if (iou(expected, rect) >= MIN_IOU) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static double iou(Rect a, Rect b) {
+        int x1 = Math.max(a.x, b.x);
+        int y1 = Math.max(a.y, b.y);
+        int x2 = Math.min(a.x + a.width, b.x + b.width);
+        int y2 = Math.min(a.y + a.height, b.y + b.height);
+        if (x2 <= x1 || y2 <= y1) {
+            return 0;
+        }
+        double intersection = (double) (x2 - x1) * (y2 - y1);
+        return intersection / (a.area() + b.area() - intersection);
+    }
+}
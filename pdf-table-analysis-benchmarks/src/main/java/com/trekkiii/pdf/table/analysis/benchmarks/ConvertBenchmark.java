@@ -0,0 +1,62 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.utils.GrayscaleBufferPool;
+import com.trekkiii.pdf.table.analysis.utils.Utils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 页面图像转灰度Mat：{@link Utils#bufferedImage2GrayscaleMat}，以及作为对照的PNG编码/解码方式
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ConvertBenchmark {
+
+    @Param({"SMALL", "HUGE"})
+    public SyntheticPdfGenerator.Spec spec;
+
+    private BufferedImage image;
+    private Mat reused;
+    private GrayscaleBufferPool pool;
+
+    @Setup
+    public void setUp() throws IOException {
+        nu.pattern.OpenCV.loadShared();
+        try (PDDocument document = BenchmarkDocument.load(spec)) {
+            image = new PDFRenderer(document).renderImageWithDPI(0, new Settings().getPdfRenderingDpi(), ImageType.RGB);
+        }
+        reused = new Mat();
+        pool = new GrayscaleBufferPool(1);
+    }
+
+    @TearDown
+    public void tearDown() {
+        reused.release();
+    }
+
+    @Benchmark
+    public Mat direct() {
+        return Utils.bufferedImage2GrayscaleMat(image, reused, pool);
+    }
+
+    @Benchmark
+    public int pngRoundTrip() throws IOException {
+        Mat mat = Utils.bufferedImage2Mat(image, Imgcodecs.IMREAD_GRAYSCALE);
+        int rows = mat.rows();
+        mat.release();
+        return rows;
+    }
+}
@@ -0,0 +1,50 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import com.trekkiii.pdf.table.analysis.PdfTableParser;
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端解析吞吐量，单位为页/秒：每次调用按顺序解析多页文档中的下一页
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class EndToEndBenchmark {
+
+    @Param({"false", "true"})
+    public boolean vectorDetection;
+
+    private PDDocument document;
+    private PdfTableParser parser;
+    private int pageCount;
+    private int nextPage;
+
+    @Setup
+    public void setUp() throws IOException {
+        document = BenchmarkDocument.load(SyntheticPdfGenerator.Spec.MULTIPAGE);
+        pageCount = document.getNumberOfPages();
+        parser = new PdfTableParser(Settings.builder().setVectorDetection(vectorDetection).build());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public List<ParsedTablePage> parsePage() throws IOException {
+        int page = nextPage % pageCount + 1;
+        nextPage++;
+        return parser.parsePdfPages(document, page, page);
+    }
+}
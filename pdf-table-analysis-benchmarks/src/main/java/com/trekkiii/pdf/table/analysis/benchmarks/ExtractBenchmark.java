@@ -0,0 +1,63 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.opencv.CellExtractionStrategy;
+import com.trekkiii.pdf.table.analysis.opencv.ExtractionMethod;
+import com.trekkiii.pdf.table.analysis.opencv.OpenCVExtractor;
+import com.trekkiii.pdf.table.analysis.utils.Utils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单元格识别：{@link CellExtractionStrategy#getTableBoundingRectangles(Mat)}，比较{@link ExtractionMethod}的各个方法，
+ * 以及{@link OpenCVExtractor}开启和关闭Canny边缘检测（形态学方法不使用Canny）。识别的准确率参见{@link CellRecall}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ExtractBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public SyntheticPdfGenerator.Spec spec;
+
+    @Param({"CONTOURS", "MORPHOLOGY"})
+    public ExtractionMethod method;
+
+    @Param({"false", "true"})
+    public boolean canny;
+
+    private Mat grayscale;
+    private CellExtractionStrategy extractor;
+
+    @Setup
+    public void setUp() throws IOException {
+        nu.pattern.OpenCV.loadShared();
+        Settings settings = Settings.builder().setExtractionMethod(method).setCannyFiltering(canny).build();
+        try (PDDocument document = BenchmarkDocument.load(spec)) {
+            grayscale = Utils.bufferedImage2GrayscaleMat(
+                    new PDFRenderer(document).renderImageWithDPI(0, settings.getPdfRenderingDpi(), ImageType.RGB));
+        }
+        extractor = method.create(settings);
+    }
+
+    @TearDown
+    public void tearDown() {
+        grayscale.release();
+    }
+
+    @Benchmark
+    public List<Rect> extract() {
+        return extractor.getTableBoundingRectangles(grayscale);
+    }
+}
@@ -0,0 +1,47 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.openjdk.jmh.annotations.*;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 页面渲染：{@link PDFRenderer#renderImageWithDPI(int, float, ImageType)}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class RenderBenchmark {
+
+    @Param({"SMALL", "HUGE"})
+    public SyntheticPdfGenerator.Spec spec;
+
+    @Param({"72", "120", "200"})
+    public int dpi;
+
+    private PDDocument document;
+    private PDFRenderer renderer;
+
+    @Setup
+    public void setUp() throws IOException {
+        document = BenchmarkDocument.load(spec);
+        renderer = new PDFRenderer(document);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public BufferedImage render() throws IOException {
+        return renderer.renderImageWithDPI(0, dpi, ImageType.RGB);
+    }
+}
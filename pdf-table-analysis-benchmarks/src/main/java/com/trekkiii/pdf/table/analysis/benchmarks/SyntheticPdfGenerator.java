@@ -0,0 +1,115 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * 生成基准测试使用的合成PDF：每页一个由线段绘制的网格表格，单元格中是短文本。
+ * <p>
+ * 构建时由exec-maven-plugin调用，输出到{@code target/classes/synthetic}，随benchmarks.jar一起打包。
+ */
+public class SyntheticPdfGenerator {
+
+    /**
+     * 合成文档的规格
+     */
+    public enum Spec {
+        SMALL(1, 5, 3, PDRectangle.A4),
+        MEDIUM(1, 20, 8, PDRectangle.A4),
+        HUGE(1, 40, 20, new PDRectangle(PDRectangle.A3.getHeight(), PDRectangle.A3.getWidth())),
+        MULTIPAGE(50, 20, 8, PDRectangle.A4);
+
+        final int pages;
+        final int rows;
+        final int cols;
+        final PDRectangle pageSize;
+
+        Spec(int pages, int rows, int cols, PDRectangle pageSize) {
+            this.pages = pages;
+            this.rows = rows;
+            this.cols = cols;
+            this.pageSize = pageSize;
+        }
+
+        public int getPages() {
+            return pages;
+        }
+
+        /**
+         * @return 文档在classpath中的路径
+         */
+        public String resourceName() {
+            return "/synthetic/" + fileName();
+        }
+
+        String fileName() {
+            return name().toLowerCase() + ".pdf";
+        }
+    }
+
+    private static final float MARGIN = 36;
+    private static final float FONT_SIZE = 7;
+
+    public static void main(String[] args) throws IOException {
+        Path outputDir = Paths.get(args.length > 0 ? args[0] : "synthetic");
+        Files.createDirectories(outputDir);
+        for (Spec spec : Spec.values()) {
+            Path out = outputDir.resolve(spec.fileName());
+            try (PDDocument document = generate(spec)) {
+                document.save(out.toFile());
+            }
+        }
+    }
+
+    public static PDDocument generate(Spec spec) throws IOException {
+        PDDocument document = new PDDocument();
+        for (int p = 0; p < spec.pages; p++) {
+            PDPage page = new PDPage(spec.pageSize);
+            document.addPage(page);
+            try (PDPageContentStream cs = new PDPageContentStream(document, page)) {
+                drawTable(cs, spec, p);
+            }
+        }
+        return document;
+    }
+
+    private static void drawTable(PDPageContentStream cs, Spec spec, int pageIndex) throws IOException {
+        float width = spec.pageSize.getWidth() - 2 * MARGIN;
+        float height = spec.pageSize.getHeight() - 2 * MARGIN;
+        float cellWidth = width / spec.cols;
+        float cellHeight = Math.min(height / spec.rows, 24);
+        float top = spec.pageSize.getHeight() - MARGIN;
+        float bottom = top - cellHeight * spec.rows;
+
+        cs.setLineWidth(1);
+        for (int r = 0; r <= spec.rows; r++) {
+            float y = top - r * cellHeight;
+            cs.moveTo(MARGIN, y);
+            cs.lineTo(MARGIN + width, y);
+        }
+        for (int c = 0; c <= spec.cols; c++) {
+            float x = MARGIN + c * cellWidth;
+            cs.moveTo(x, top);
+            cs.lineTo(x, bottom);
+        }
+        cs.stroke();
+
+        cs.setFont(PDType1Font.HELVETICA, FONT_SIZE);
+        for (int r = 0; r < spec.rows; r++) {
+            for (int c = 0; c < spec.cols; c++) {
+                cs.beginText();
+                cs.newLineAtOffset(MARGIN + c * cellWidth + 2, top - (r + 1) * cellHeight + (cellHeight - FONT_SIZE) / 2);
+                cs.showText(pageIndex + "-" + r + "-" + c);
+                cs.endText();
+            }
+        }
+    }
+}
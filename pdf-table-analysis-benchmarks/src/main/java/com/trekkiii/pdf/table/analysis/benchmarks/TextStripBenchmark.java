@@ -0,0 +1,61 @@
+package com.trekkiii.pdf.table.analysis.benchmarks;
+
+import com.trekkiii.pdf.table.analysis.PdfTableParser;
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import com.trekkiii.pdf.table.analysis.opencv.OpenCVExtractor;
+import com.trekkiii.pdf.table.analysis.utils.Utils;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按单元格提取文本：{@link PdfTableParser#parsePageByRectangles(PDPage, List, int)}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class TextStripBenchmark {
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public SyntheticPdfGenerator.Spec spec;
+
+    private PDDocument document;
+    private PDPage page;
+    private PdfTableParser parser;
+    private List<Rect> rectangles;
+
+    @Setup
+    public void setUp() throws IOException {
+        Settings settings = new Settings();
+        parser = new PdfTableParser(settings);
+        document = BenchmarkDocument.load(spec);
+        page = document.getPage(0);
+
+        Mat grayscale = Utils.bufferedImage2GrayscaleMat(
+                new PDFRenderer(document).renderImageWithDPI(0, settings.getPdfRenderingDpi(), ImageType.RGB));
+        rectangles = new OpenCVExtractor(settings).getTableBoundingRectangles(grayscale);
+        grayscale.release();
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        document.close();
+    }
+
+    @Benchmark
+    public ParsedTablePage parsePageByRectangles() throws IOException {
+        return parser.parsePageByRectangles(page, rectangles, 1);
+    }
+}
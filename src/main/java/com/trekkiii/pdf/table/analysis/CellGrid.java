@@ -0,0 +1,96 @@
+package com.trekkiii.pdf.table.analysis;
+
+import org.opencv.core.Rect;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 根据单元格矩形推导表格网格，计算每个单元格所在的网格行、列以及跨越的行数、列数（合并单元格）。
+ * <p>
+ * 所有单元格左边缘的x坐标排序后按容差聚类，每个聚类是一条列分界线；上边缘的y坐标同样得到行分界线。
+ * 只使用左/上边缘：相邻单元格之间隔着表格线，右边缘与下一列的左边缘相差线宽，若一并作为分界线会产生很窄的空列。
+ * 单元格的起始列是其左边缘所在的聚类，跨越的列数是落在[左边缘, 右边缘)内的分界线数量，均通过二分查找得到，
+ * 整个网格的推导为 O(n log n)，只需遍历单元格一次。
+ */
+final class CellGrid {
+
+    private final int[] columnStarts;// 列分界线（聚类中最小的x坐标），升序
+    private final int[] rowStarts;
+
+    /**
+     * @param rectangles 单元格矩形
+     * @param tolerance  同一分界线上坐标的最大偏差，单位与矩形相同
+     */
+    CellGrid(List<Rect> rectangles, int tolerance) {
+        int[] xs = new int[rectangles.size()];
+        int[] ys = new int[rectangles.size()];
+        for (int i = 0; i < xs.length; i++) {
+            xs[i] = rectangles.get(i).x;
+            ys[i] = rectangles.get(i).y;
+        }
+        columnStarts = breakpoints(xs, tolerance);
+        rowStarts = breakpoints(ys, tolerance);
+    }
+
+    int getRowCount() {
+        return rowStarts.length;
+    }
+
+    int getColumnCount() {
+        return columnStarts.length;
+    }
+
+    int row(Rect rect) {
+        return indexOf(rowStarts, rect.y);
+    }
+
+    int column(Rect rect) {
+        return indexOf(columnStarts, rect.x);
+    }
+
+    int rowSpan(Rect rect) {
+        return span(rowStarts, rect.y, rect.y + rect.height);
+    }
+
+    int columnSpan(Rect rect) {
+        return span(columnStarts, rect.x, rect.x + rect.width);
+    }
+
+    /**
+     * 排序后自小到大扫描，与当前聚类第一个坐标相差不超过tolerance的坐标归入同一聚类
+     *
+     * @return 每个聚类的最小坐标
+     */
+    private static int[] breakpoints(int[] values, int tolerance) {
+        if (values.length == 0) {
+            return values;
+        }
+        Arrays.sort(values);
+        int count = 1;
+        for (int i = 1; i < values.length; i++) {
+            if (values[i] - values[count - 1] > tolerance) {
+                values[count++] = values[i];
+            }
+        }
+        return Arrays.copyOf(values, count);
+    }
+
+    /**
+     * @return 不大于value的最后一条分界线的编号
+     */
+    private static int indexOf(int[] starts, int value) {
+        int i = Arrays.binarySearch(starts, value);
+        return Math.max(0, i >= 0 ? i : -i - 2);
+    }
+
+    /**
+     * @return [start, end)内的分界线数量，至少为1
+     */
+    private static int span(int[] starts, int start, int end) {
+        int first = indexOf(starts, start);
+        int i = Arrays.binarySearch(starts, end);
+        int last = i >= 0 ? i - 1 : -i - 2;// 小于end的最后一条分界线
+        return Math.max(1, last - first + 1);
+    }
+}
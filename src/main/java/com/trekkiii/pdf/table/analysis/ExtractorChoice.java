@@ -0,0 +1,45 @@
+package com.trekkiii.pdf.table.analysis;
+
+import com.trekkiii.pdf.table.analysis.extract.TableExtractor;
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 由{@link PdfTableParser#selectExtractor(org.apache.pdfbox.pdmodel.PDDocument, int, int)}为文档确定的识别方法，
+ * 以及选择时该方法在抽样页面上的识别结果。
+ * <p>
+ * 解析抽样页面时直接使用这些结果，不再重复渲染和识别。只包含坐标，与加载文档的PDDocument无关，
+ * 因此可以在分段解析同一文档的多个线程之间共享。
+ */
+public final class ExtractorChoice {
+
+    private final TableExtractor extractor;
+    private final Map<Integer, List<DetectedTable>> sampleTables;// 页码 -> 识别结果
+
+    ExtractorChoice(TableExtractor extractor, Map<Integer, List<DetectedTable>> sampleTables) {
+        this.extractor = extractor;
+        this.sampleTables = sampleTables;
+    }
+
+    /**
+     * 不抽样，直接使用指定的识别方法
+     */
+    ExtractorChoice(TableExtractor extractor) {
+        this(extractor, Collections.emptyMap());
+    }
+
+    public TableExtractor getExtractor() {
+        return extractor;
+    }
+
+    /**
+     * @param pageNumber 页码，第一页为1
+     * @return 该页作为抽样页面时的识别结果（使用{@code settings.getPdfRenderingDpi()}的像素坐标），不是抽样页面时返回null
+     */
+    List<DetectedTable> getSampleTables(int pageNumber) {
+        return sampleTables.get(pageNumber);
+    }
+}
@@ -1,38 +1,107 @@
 package com.trekkiii.pdf.table.analysis;
 
+import com.trekkiii.pdf.table.analysis.cache.CachedPageImage;
+import com.trekkiii.pdf.table.analysis.cache.PageResourceCache;
+import com.trekkiii.pdf.table.analysis.cache.PageResultCache;
+import com.trekkiii.pdf.table.analysis.extract.ExtractorSelector;
+import com.trekkiii.pdf.table.analysis.extract.TableExtractor;
+import com.trekkiii.pdf.table.analysis.extract.TableExtractors;
+import com.trekkiii.pdf.table.analysis.metrics.Stage;
+import com.trekkiii.pdf.table.analysis.metrics.StageTimer;
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
 import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+import com.trekkiii.pdf.table.analysis.opencv.MorphologyExtractor;
 import com.trekkiii.pdf.table.analysis.opencv.OpenCVExtractor;
+import com.trekkiii.pdf.table.analysis.render.LineArtRenderer;
+import com.trekkiii.pdf.table.analysis.text.CellTextStripper;
+import com.trekkiii.pdf.table.analysis.utils.CosDigest;
+import com.trekkiii.pdf.table.analysis.utils.GrayscaleBufferPool;
+import com.trekkiii.pdf.table.analysis.vector.ContentPreFilter;
+import com.trekkiii.pdf.table.analysis.vector.VectorExtractor;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
 import org.apache.pdfbox.rendering.ImageType;
 import org.apache.pdfbox.rendering.PDFRenderer;
-import org.apache.pdfbox.text.PDFTextStripperByArea;
 import org.apache.pdfbox.tools.imageio.ImageIOUtil;
 import org.opencv.core.Core;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.Rect;
 
 import java.awt.*;
 import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static com.trekkiii.pdf.table.analysis.utils.Utils.bufferedImage2GrayscaleMat;
 
 /**
+ * PDF表格解析器。
+ * <p>
+ * 线程安全：创建后不再修改{@link Settings}和提取器，每个线程的中间图像保存在线程局部变量或对象池中，
+ * 一个实例可以作为单例同时处理多个请求。线程局部的中间图像（native内存）在每次公开的解析调用结束时释放，
+ * 请求线程池中空闲的线程不会长期占用页面大小的Mat。需要不同的设置时另外创建一个实例，创建的开销很小。
+ * PDFBox的{@link PDDocument}不是线程安全的，多个线程共享同一个文档时，渲染以该文档为锁串行执行。
+ * <p>
  * Created by 刘春龙 on 2017/10/24.
  */
 public class PdfTableParser {
 
     private static final Logger logger = Logger.getLogger(PdfTableParser.class.getName());
 
-    private OpenCVExtractor extractor;
-    private Settings settings;
+    // 低DPI下单元格外接矩形向外扩展的像素数，保证重新渲染的区域包含表格的外框线
+    private static final int TABLE_REGION_MARGIN = 4;
+
+    // 单元格按行分组使用的排序
+    private static final Comparator<Rect> ROW_ORDER = (a, b) -> a.y != b.y ? Integer.compare(a.y, b.y) : Integer.compare(a.x, b.x);
+    private static final Comparator<Rect> COLUMN_ORDER = (a, b) -> Integer.compare(a.x, b.x);
+
+    // 通过loadPdfDocument(Path)加载的文档及其文件，并行解析时工作线程从文件重新加载，不需要生成快照
+    private static final Map<PDDocument, Path> SOURCE_FILES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    // 页面指纹的格式版本，识别或文本提取的结果发生变化时修改，使旧的缓存记录失效
+    private static final String PAGE_FINGERPRINT_VERSION = "page-result-2";
+
+    private final TableExtractor extractor;
+    private final Map<String, TableExtractor> candidates;// 自动选择识别方法时的候选，未开启时为null
+    private final VectorExtractor vectorExtractor;
+    private final Settings settings;
 
     static {
         // 加载图像处理库
@@ -42,7 +111,16 @@ public class PdfTableParser {
 
     public PdfTableParser(Settings settings) {
         this.settings = settings;
-        this.extractor = new OpenCVExtractor(settings);
+        this.extractor = TableExtractors.create(settings.getTableExtractor(), settings);
+        this.vectorExtractor = new VectorExtractor(settings);
+        if (settings.hasAutoExtractorSelection()) {
+            this.candidates = new LinkedHashMap<>();
+            for (String name : TableExtractors.names()) {
+                candidates.put(name, name.equals(settings.getTableExtractor()) ? extractor : TableExtractors.create(name, settings));
+            }
+        } else {
+            this.candidates = null;
+        }
     }
 
     public PdfTableParser() {
@@ -61,7 +139,7 @@ public class PdfTableParser {
     public void savePdfPagesAsPNG(PDDocument document, int startPage, int endPage, Path outputDir) throws IOException {
         PDFRenderer pdfRenderer = new PDFRenderer(document);
         for (int page = startPage - 1; page < endPage; ++page) {// pdfbox 默认第一页页码为0
-            savePdfPageAsPNG(pdfRenderer, page, outputDir);
+            savePdfPageAsPNG(document, pdfRenderer, page, outputDir);
         }
     }
 
@@ -80,14 +158,15 @@ public class PdfTableParser {
     /**
      * 使用设置中指定的DPI渲染单个PDF页面，并将图像保存在指定的目录中
      *
+     * @param document  PDDocument，渲染时的锁
      * @param renderer  PDFRenderer
      * @param page      页码
      * @param outputDir 输出目录
      * @throws IOException
      */
-    private void savePdfPageAsPNG(PDFRenderer renderer, int page, Path outputDir) throws IOException {
+    private void savePdfPageAsPNG(PDDocument document, PDFRenderer renderer, int page, Path outputDir) throws IOException {
         BufferedImage bim;
-        synchronized (this) {
+        synchronized (document) {
             bim = renderer.renderImageWithDPI(page, settings.getPdfRenderingDpi(), ImageType.RGB);
         }
 
@@ -98,6 +177,7 @@ public class PdfTableParser {
 
     /**
      * 将指定页码范围内的PDF页面的debug图像保存在指定的目录中。
+     * 图像由{@code settings.getDebugImageWriter()}在后台写出，队列已满时在当前线程中直接写出，不丢弃图像；返回前等待全部写完。
      *
      * @param document  PDDocument
      * @param startPage 起始页，第一页页码为1
@@ -106,24 +186,40 @@ public class PdfTableParser {
      * @throws IOException
      */
     public void savePdfPagesDebugImages(PDDocument document, int startPage, int endPage, Path outputDir) throws IOException {
-        OpenCVExtractor debugExtractor = new OpenCVExtractor(settings);
+        PDFRenderer renderer = newRenderer(document);
+        Mat mat = new Mat();// 逐页复用的灰度图像
+        try {
+            for (int page = startPage - 1; page < endPage; ++page) {// pdfbox 默认第一页页码为0
+                Settings debugSettings = Settings.builder()
+                        .setDebugImages(true)
+                        .setDebugFileOutputDir(outputDir)
+                        .setDebugFilename("page_" + (page + 1))
+                        .setCompactDebugImages(settings.hasCompactDebugImages())
+                        .setDebugImageWriter(settings.getDebugImageWriter())
+                        .setCompleteDebugImages(true)
+                        .build();
+                TableExtractor debugExtractor = TableExtractors.create(settings.getTableExtractor(), debugSettings);// 每页独立的输出文件名
 
-        PDFRenderer renderer = new PDFRenderer(document);
-        for (int page = startPage - 1; page < endPage; ++page) {// pdfbox 默认第一页页码为0
-            Settings debugSettings = Settings.builder()
-                    .setDebugImages(true)
-                    .setDebugFileOutputDir(outputDir)
-                    .setDebugFilename("page_" + (page + 1))
-                    .build();
-            debugExtractor.setSettings(debugSettings);
+                int dpi = debugSettings.getPdfRenderingDpi();
+                PageKey pageKey = new PageKey(document.getPage(page));
+                if (!loadCachedPageImage(pageKey, dpi, mat)) {
+                    BufferedImage bim;
+                    synchronized (document) {
+                        bim = renderPage(renderer, page, dpi, null);
+                    }
 
-            BufferedImage bim;
-            synchronized (this) {
-                bim = renderer.renderImageWithDPI(page, debugSettings.getPdfRenderingDpi(), ImageType.RGB);
+                    bufferedImage2GrayscaleMat(bim, mat, GrayscaleBufferPool.shared());// 需要先将图像转为灰度图
+                    storeCachedPageImage(pageKey, dpi, mat);
+                }
+                debugExtractor.extract(document.getPage(page), mat, null);
             }
-
-            Mat mat = bufferedImage2GrayscaleMat(bim);// 需要先将图像转为灰度图
-            debugExtractor.getTableBoundingRectangles(mat);
+            settings.getDebugImageWriter().flush();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while writing debug images");
+        } finally {
+            mat.release();
+            releaseWorkspaces();
         }
     }
 
@@ -141,113 +237,989 @@ public class PdfTableParser {
 
     /**
      * 解析指定页码范围内的PDF页面，并返回包含单元格文本的解析结果
+     * <p>
+     * {@code settings.getParallelism()}大于1时使用{@link #parsePdfPagesInParallel(PDDocument, int, int)}并行解析。
+     * 无论是否并行，单个页面解析失败都不会中断其它页面：失败的页面以空的{@link ParsedTablePage}返回，
+     * 异常可通过{@link ParsedTablePage#getError()}获取。本类其它逐页解析的方法同样如此。
      * @param document PDDocument
      * @param startPage 起始页，第一页页码为1
      * @param endPage 结束页
+     * @return 包含单元格文本的解析结果，按页码排序，每个页码一个
+     * @throws IOException 并行解析时工作线程无法加载文档，或等待被中断
+     */
+    public List<ParsedTablePage> parsePdfPages(PDDocument document, int startPage, int endPage) throws IOException {
+        if (settings.getParallelism() > 1 && endPage > startPage) {
+            return parsePdfPagesInParallel(document, startPage, endPage);
+        }
+        return parsePdfPagesSequentially(document, startPage, endPage);
+    }
+
+    /**
+     * 在调用线程中逐页解析指定页码范围内的PDF页面
+     *
+     * @param document  PDDocument
+     * @param startPage 起始页，第一页页码为1
+     * @param endPage   结束页
      * @return 包含单元格文本的解析结果
      * @throws IOException
      */
-    public List<ParsedTablePage> parsePdfPages(PDDocument document, int startPage, int endPage) throws IOException {
+    private List<ParsedTablePage> parsePdfPagesSequentially(PDDocument document, int startPage, int endPage) throws IOException {
+        List<ParsedTablePage> out = new ArrayList<>();
+        parsePdfPages(document, startPage, endPage, out::add);
+        return out;
+    }
+
+    /**
+     * 逐页解析指定页码范围内的PDF页面，每解析完一页立即交给{@code consumer}处理。
+     * <p>
+     * 与{@link #parsePdfPages(PDDocument, int, int)}不同，已解析的页面不会保留在内存中，
+     * 每页的BufferedImage在转换为灰度图后立即释放，灰度Mat在页面之间复用，因此内存占用与文档页数无关。
+     * {@code consumer}在调用线程中同步执行，处理较慢时解析随之暂停。
+     *
+     * @param document  PDDocument
+     * @param startPage 起始页，第一页页码为1
+     * @param endPage   结束页
+     * @param consumer  解析结果的处理者，按页码顺序调用
+     * @throws IOException
+     */
+    public void parsePdfPages(PDDocument document, int startPage, int endPage, Consumer<ParsedTablePage> consumer) throws IOException {
+        parsePdfPages(new PageCursor(document, startPage, endPage, null), consumer);
+    }
+
+    /**
+     * 使用已确定的识别方法逐页解析，参见{@link #parsePdfPages(PDDocument, int, int, Consumer)}。
+     * <p>
+     * 将一个文档拆分为多段解析时，先用{@link #selectExtractor(PDDocument, int, int)}为整个文档确定一次识别方法，
+     * 再交给各段使用，避免每段重复抽样。
+     *
+     * @param document  PDDocument
+     * @param startPage 起始页，第一页页码为1
+     * @param endPage   结束页
+     * @param choice    识别方法，可以来自加载同一文件的另一个PDDocument
+     * @param consumer  解析结果的处理者，按页码顺序调用
+     * @throws IOException
+     */
+    public void parsePdfPages(PDDocument document, int startPage, int endPage, ExtractorChoice choice,
+                              Consumer<ParsedTablePage> consumer) throws IOException {
+        parsePdfPages(new PageCursor(document, startPage, endPage, Objects.requireNonNull(choice)), consumer);
+    }
+
+    private static void parsePdfPages(PageCursor pageCursor, Consumer<ParsedTablePage> consumer) {
+        try (PageCursor cursor = pageCursor) {
+            while (cursor.hasNext()) {
+                consumer.accept(cursor.next());
+            }
+        }
+    }
+
+    /**
+     * 从文件加载并解析所有页面，每解析完一页立即交给{@code consumer}处理。
+     * <p>
+     * 文档通过{@link #loadPdfDocument(Path)}加载：文件内容按需从磁盘读取，解析时的缓冲使用有上限的堆内存，
+     * 超出部分写入临时文件；字体、图像等资源只在页面内缓存。堆内存占用取决于单个页面，而不是整个文件。
+     * {@code settings.getParallelism()}大于1时各工作线程直接从文件加载独立的PDDocument，
+     * 所有页面解析完成后再按页码顺序交给{@code consumer}。
+     *
+     * @param file     PDF文件
+     * @param consumer 解析结果的处理者，按页码顺序调用
+     * @throws IOException
+     */
+    public void parsePdfPages(Path file, Consumer<ParsedTablePage> consumer) throws IOException {
+        int pageCount;
+        ExtractorChoice choice;
+        try (PDDocument document = loadPdfDocument(file)) {
+            pageCount = document.getNumberOfPages();
+            if (settings.getParallelism() <= 1 || pageCount <= 1) {
+                parsePdfPages(document, 1, pageCount, consumer);
+                return;
+            }
+            choice = selectExtractor(document, 1, pageCount);
+        }
+        parsePdfPagesInParallel(() -> loadPdfDocument(file), choice, 1, pageCount).forEach(consumer);
+    }
+
+    /**
+     * 从文件加载并解析所有页面，参见{@link #parsePdfPages(Path, Consumer)}
+     *
+     * @param file PDF文件
+     * @return 按页码排序的解析结果
+     * @throws IOException
+     */
+    public List<ParsedTablePage> parsePdfPages(Path file) throws IOException {
         List<ParsedTablePage> out = new ArrayList<>();
+        parsePdfPages(file, out::add);
+        return out;
+    }
 
-        PDFRenderer renderer = new PDFRenderer(document);
-        for (int page = startPage - 1; page < endPage; ++page) {
-            BufferedImage bim;
-            synchronized (this) {
-                bim = renderer.renderImageWithDPI(page, settings.getPdfRenderingDpi(), ImageType.RGB);
+    /**
+     * 从输入流加载并解析所有页面，每解析完一页立即交给{@code consumer}处理。
+     * <p>
+     * 输入流的内容复制到PDFBox的缓冲区中：不超过{@code settings.getMaxMainMemoryBytes()}的部分保存在堆内存中，
+     * 其余写入{@code settings.getScratchDirectory()}下的临时文件。
+     * 并行解析时先将输入流写入临时文件，再按{@link #parsePdfPages(Path, Consumer)}处理。
+     * 输入流不会被关闭。
+     *
+     * @param input    PDF输入流
+     * @param consumer 解析结果的处理者，按页码顺序调用
+     * @throws IOException
+     */
+    public void parsePdfPages(InputStream input, Consumer<ParsedTablePage> consumer) throws IOException {
+        if (settings.getParallelism() > 1) {
+            Path tmp = settings.getScratchDirectory() == null
+                    ? Files.createTempFile("pdf-table-", ".pdf")
+                    : Files.createTempFile(settings.getScratchDirectory(), "pdf-table-", ".pdf");
+            try {
+                Files.copy(input, tmp, StandardCopyOption.REPLACE_EXISTING);
+                parsePdfPages(tmp, consumer);
+            } finally {
+                Files.deleteIfExists(tmp);
             }
-            ParsedTablePage parsedTablePage = parsePdfPage(bim, document.getPage(page), page + 1);
-            out.add(parsedTablePage);
+            return;
+        }
+        try (PDDocument document = PDDocument.load(input, memoryUsageSetting())) {
+            document.setResourceCache(new PageResourceCache());
+            parsePdfPages(document, 1, document.getNumberOfPages(), consumer);
         }
+    }
+
+    /**
+     * 从输入流加载并解析所有页面，参见{@link #parsePdfPages(InputStream, Consumer)}
+     *
+     * @param input PDF输入流
+     * @return 按页码排序的解析结果
+     * @throws IOException
+     */
+    public List<ParsedTablePage> parsePdfPages(InputStream input) throws IOException {
+        List<ParsedTablePage> out = new ArrayList<>();
+        parsePdfPages(input, out::add);
         return out;
     }
 
+    /**
+     * 以适合大文件的方式加载PDF文档：文件内容按需读取，解析缓冲的堆内存不超过{@code settings.getMaxMainMemoryBytes()}，
+     * 并安装{@link PageResourceCache}，解析器处理完每个页面后释放该页面的字体、图像等资源。
+     * 并行解析该文档时各工作线程直接从文件重新加载，因此加载后不应修改文档或文件。
+     * <p>
+     * 调用方负责关闭返回的文档。
+     *
+     * @param file PDF文件
+     * @return PDDocument
+     * @throws IOException
+     */
+    public PDDocument loadPdfDocument(Path file) throws IOException {
+        PDDocument document = PDDocument.load(file.toFile(), memoryUsageSetting());
+        document.setResourceCache(new PageResourceCache());
+        SOURCE_FILES.put(document, file);
+        return document;
+    }
+
+    private MemoryUsageSetting memoryUsageSetting() {
+        MemoryUsageSetting memoryUsageSetting = MemoryUsageSetting.setupMixed(settings.getMaxMainMemoryBytes());
+        if (settings.getScratchDirectory() != null) {
+            memoryUsageSetting.setTempDir(settings.getScratchDirectory().toFile());
+        }
+        return memoryUsageSetting;
+    }
+
+    /**
+     * 以{@link Stream}的形式惰性解析指定页码范围内的PDF页面，只有在消费下一个元素时才渲染并解析对应页面。
+     * <p>
+     * 单个页面解析失败时返回带有异常的空页面，参见{@link #parsePdfPages(PDDocument, int, int)}。
+     * 流读取完毕或被关闭时释放内部的Mat，提前结束消费时应关闭流（例如使用try-with-resources）。
+     *
+     * @param document  PDDocument
+     * @param startPage 起始页，第一页页码为1
+     * @param endPage   结束页
+     * @return 按页码顺序的解析结果流
+     */
+    public Stream<ParsedTablePage> streamPdfPages(PDDocument document, int startPage, int endPage) {
+        PageCursor cursor = new PageCursor(document, startPage, endPage, null);
+        Iterator<ParsedTablePage> iterator = new Iterator<ParsedTablePage>() {
+            @Override
+            public boolean hasNext() {
+                if (cursor.hasNext()) {
+                    return true;
+                }
+                cursor.close();
+                return false;
+            }
+
+            @Override
+            public ParsedTablePage next() {
+                if (!cursor.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return cursor.next();
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(cursor::close);
+    }
+
+    /**
+     * 逐页渲染并解析PDF页面的游标，持有页面之间复用的灰度Mat
+     */
+    private class PageCursor implements Closeable {
+
+        private final PDDocument document;
+        private final PDFRenderer renderer;
+        private final int endPage;
+        private final Mat mat = new Mat();// 逐页复用的灰度图像
+        private final int startPage;
+        private ExtractorChoice choice;// 为null时在解析第一页时选择
+        private int page;
+
+        PageCursor(PDDocument document, int startPage, int endPage, ExtractorChoice choice) {
+            this.document = document;
+            this.renderer = newRenderer(document);
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.choice = choice;
+            this.page = startPage - 1;// pdfbox 默认第一页页码为0
+        }
+
+        boolean hasNext() {
+            return page < endPage;
+        }
+
+        ParsedTablePage next() {
+            if (choice == null) {
+                choice = selectExtractor(document, startPage, endPage);
+            }
+            int current = page++;
+            return parsePdfPageIsolated(choice, (dpi, region) -> {
+                synchronized (document) {
+                    return renderPage(renderer, current, dpi, region);
+                }
+            }, mat, document, current);
+        }
+
+        /**
+         * 释放灰度Mat和当前线程的识别器工作区，应由解析页面的线程调用
+         */
+        @Override
+        public void close() {
+            mat.release();
+            releaseWorkspaces();
+        }
+    }
+
+    /**
+     * 使用{@code settings.getParallelism()}个工作线程并行解析指定页码范围内的PDF页面。
+     * <p>
+     * PDFBox不是线程安全的，因此每个工作线程加载独立的PDDocument/PDFRenderer，按页码从共享计数器领取页面（大小页面自动均衡），
+     * 结果按页码顺序返回。document由{@link #loadPdfDocument(Path)}加载时，工作线程直接从该文件加载；
+     * 否则退而将document保存为内存中的字节快照，工作线程从快照加载，快照与整个文件大小相当。
+     * <p>
+     * 无法生成快照（例如加密文档）时退回顺序解析。
+     *
+     * @param document  PDDocument
+     * @param startPage 起始页，第一页页码为1
+     * @param endPage   结束页
+     * @return 按页码排序的解析结果
+     * @throws IOException 工作线程无法加载文档，或等待被中断
+     */
+    private List<ParsedTablePage> parsePdfPagesInParallel(PDDocument document, int startPage, int endPage) throws IOException {
+        Path file = SOURCE_FILES.get(document);
+        if (file != null) {
+            return parsePdfPagesInParallel(() -> loadPdfDocument(file), selectExtractor(document, startPage, endPage),
+                    startPage, endPage);
+        }
+
+        byte[] snapshot;
+        try {
+            snapshot = snapshot(document);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot snapshot document, falling back to sequential parsing", e);
+            return parsePdfPagesSequentially(document, startPage, endPage);
+        }
+
+        // 各工作线程加载的副本内容相同，识别方法只需确定一次
+        return parsePdfPagesInParallel(() -> {
+            PDDocument copy = PDDocument.load(snapshot);
+            copy.setResourceCache(new PageResourceCache());
+            return copy;
+        }, selectExtractor(document, startPage, endPage), startPage, endPage);
+    }
+
+    /**
+     * 并行解析，每个工作线程通过{@code loader}加载独立的PDDocument
+     *
+     * @param loader    加载文档副本
+     * @param choice    识别方法
+     * @param startPage 起始页，第一页页码为1
+     * @param endPage   结束页
+     * @return 按页码排序的解析结果
+     * @throws IOException 工作线程无法加载文档，或等待被中断
+     */
+    private List<ParsedTablePage> parsePdfPagesInParallel(DocumentLoader loader, ExtractorChoice choice,
+                                                          int startPage, int endPage) throws IOException {
+        int pageCount = endPage - startPage + 1;
+        int workers = Math.min(settings.getParallelism(), pageCount);
+        ParsedTablePage[] out = new ParsedTablePage[pageCount];
+        AtomicInteger nextPage = new AtomicInteger(startPage - 1);// pdfbox 默认第一页页码为0
+
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new ParserThreadFactory());
+        try {
+            List<Future<Void>> futures = new ArrayList<>(workers);
+            for (int i = 0; i < workers; i++) {
+                futures.add(executor.submit(() -> {
+                    parsePagesWorker(loader, choice, nextPage, startPage, endPage, out);
+                    return null;
+                }));
+            }
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while parsing pages");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            executor.shutdownNow();
+        }
+        return Arrays.asList(out);
+    }
+
+    /**
+     * 并行解析的工作线程：加载独立的PDDocument，循环领取页面直到超出结束页
+     */
+    private void parsePagesWorker(DocumentLoader loader, ExtractorChoice choice, AtomicInteger nextPage,
+                                  int startPage, int endPage, ParsedTablePage[] out) throws IOException {
+        try (PDDocument document = loader.load()) {
+            PDFRenderer renderer = newRenderer(document);
+            Mat mat = new Mat();
+            try {
+                int page;
+                while ((page = nextPage.getAndIncrement()) < endPage) {
+                    int current = page;
+                    out[page - (startPage - 1)] = parsePdfPageIsolated(choice,
+                            (dpi, region) -> renderPage(renderer, current, dpi, region), mat, document, page);
+                }
+            } finally {
+                mat.release();
+                releaseWorkspaces();
+            }
+        }
+    }
+
+    /**
+     * 加载并行解析工作线程使用的文档副本
+     */
+    @FunctionalInterface
+    private interface DocumentLoader {
+        PDDocument load() throws IOException;
+    }
+
+    /**
+     * 释放当前线程中识别器工作区占用的native内存，之后再次解析时重新分配。
+     * 每次公开的解析调用结束时调用，避免线程池中的请求线程长期持有多张页面大小的Mat
+     */
+    private static void releaseWorkspaces() {
+        OpenCVExtractor.releaseWorkspace();
+        MorphologyExtractor.releaseWorkspace();
+    }
+
+    /**
+     * 文档安装了{@link PageResourceCache}时，释放刚处理完的页面的字体、图像等资源
+     */
+    private static void releasePageResources(PDDocument document) {
+        if (document.getResourceCache() instanceof PageResourceCache) {
+            ((PageResourceCache) document.getResourceCache()).clear();
+        }
+    }
+
+    /**
+     * 确定解析[startPage, endPage]使用的识别方法。未开启{@code settings.hasAutoExtractorSelection()}时直接使用
+     * {@code settings.getTableExtractor()}；否则在页码范围内均匀抽取{@code settings.getExtractorSamplePages()}个页面，
+     * 由{@link ExtractorSelector}选出与参考方法足够一致的方法中最快的一个，并保留该方法在抽样页面上的结果，
+     * 解析到这些页面时不再重复渲染。抽样页面渲染失败时使用参考方法。
+     * <p>
+     * 各个parsePdfPages方法会自动调用；按页码拆分解析同一文档时，应只调用一次并将结果交给
+     * {@link #parsePdfPages(PDDocument, int, int, ExtractorChoice, Consumer)}。
+     *
+     * @param document  PDDocument
+     * @param startPage 起始页，第一页页码为1
+     * @param endPage   结束页
+     * @return 识别方法
+     */
+    public ExtractorChoice selectExtractor(PDDocument document, int startPage, int endPage) {
+        if (candidates == null || endPage < startPage) {
+            return new ExtractorChoice(extractor);
+        }
+        int pageCount = endPage - startPage + 1;
+        int sampleCount = Math.min(settings.getExtractorSamplePages(), pageCount);
+        PDFRenderer renderer = newRenderer(document);
+        List<ExtractorSelector.Sample> samples = new ArrayList<>(sampleCount);
+        int[] pageIndexes = new int[sampleCount];
+        List<Mat> mats = new ArrayList<>(sampleCount);
+        try {
+            for (int i = 0; i < sampleCount; i++) {
+                int pageIndex = startPage - 1 + (int) ((long) i * pageCount / sampleCount);
+                pageIndexes[i] = pageIndex;
+                long start = System.nanoTime();
+                Mat mat;
+                synchronized (document) {
+                    BufferedImage bim = renderPage(renderer, pageIndex, settings.getPdfRenderingDpi(), null);
+                    mat = bufferedImage2GrayscaleMat(bim);
+                    bim.flush();
+                }
+                mats.add(mat);
+                samples.add(new ExtractorSelector.Sample(document.getPage(pageIndex), mat, System.nanoTime() - start));
+            }
+            ExtractorSelector.Selection selection = new ExtractorSelector(candidates, settings.getTableExtractor(),
+                    settings.getMinExtractorAgreement()).select(samples);
+            logger.fine("table extractor: " + selection);
+            if (settings.getParseListener().isEnabled()) {
+                settings.getParseListener().onExtractorSelected(selection.getName());
+            }
+            Map<Integer, List<DetectedTable>> sampleTables = new HashMap<>();
+            for (int i = 0; i < sampleCount; i++) {
+                List<DetectedTable> tables = selection.getSampleTables(i);
+                if (tables != null) {
+                    sampleTables.put(pageIndexes[i] + 1, tables);
+                }
+            }
+            return new ExtractorChoice(selection.getExtractor(), sampleTables);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot render sample pages, using " + settings.getTableExtractor(), e);
+            return new ExtractorChoice(extractor);
+        } finally {
+            for (Mat mat : mats) {
+                mat.release();
+            }
+            releasePageResources(document);
+            releaseWorkspaces();
+        }
+    }
+
+    /**
+     * 将document保存为字节数组，供各工作线程加载独立的副本
+     */
+    private static byte[] snapshot(PDDocument document) throws IOException {
+        if (document.isEncrypted()) {
+            throw new IOException("encrypted documents cannot be snapshotted");
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        document.save(bytes);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * 并行解析工作线程的ThreadFactory，使用守护线程，避免阻止JVM退出
+     */
+    private static class ParserThreadFactory implements ThreadFactory {
+
+        private static final AtomicInteger POOL_NUMBER = new AtomicInteger(1);
+
+        private final int poolNumber = POOL_NUMBER.getAndIncrement();
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "pdf-table-parser-" + poolNumber + "-" + threadNumber.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+
     /**
      * 解析指定页码的单个PDF页面，并返回包含单元格文本的解析结果
+     * <p>
+     * 设置了{@code settings.getPageResultCache()}时先按页面指纹查找缓存，命中时不渲染页面；
+     * 两种缓存共用的页面内容哈希在首次查找时才计算，每个页面最多计算一次。
+     * 开启{@code settings.hasContentPreFilter()}时，{@link ContentPreFilter}判断没有表格的页面直接返回空结果。
+     * 开启{@code settings.hasVectorDetection()}时先尝试{@link VectorExtractor}，
+     * 页面中找不到表格线时才使用选定的方法识别；该方法不需要页面图像，或该页面是选择方法时的抽样页面时不渲染页面。
+     * 开启{@code settings.hasAdaptiveDpi()}时先用{@code settings.getMinPdfRenderingDpi()}渲染，
+     * 识别结果不满足{@link #isDetailedEnough(List)}时再用{@code settings.getPdfRenderingDpi()}重新渲染：
+     * 低DPI下识别出单元格时只重新渲染单元格所在的区域；没有识别出单元格时，只有{@link ContentPreFilter}判断页面中
+     * 绘制了线段或图像才重新渲染整个页面，否则直接接受低DPI下的空结果
      *
-     * @param bim        图像格式的PDF页面
+     * @param choice     识别方法，见{@link #selectExtractor(PDDocument, int, int)}
+     * @param renderer   渲染页面图像，只有需要OpenCV识别且缓存未命中时才调用
+     * @param mat        用于存放灰度图像的Mat，可在页面之间复用
      * @param pdPage     PDPage格式的PDF页面
      * @param pageNumber 页码
      * @return 包含单元格文本的解析结果
      * @throws IOException
      */
-    private ParsedTablePage parsePdfPage(BufferedImage bim, PDPage pdPage, int pageNumber) throws IOException {
-        List<Rect> rectangles = extractor.getTableBoundingRectangles(bufferedImage2GrayscaleMat(bim));
-        return parsePageByRectangles(pdPage, rectangles, pageNumber);
+    private ParsedTablePage parsePdfPage(ExtractorChoice choice, PageRenderer renderer, Mat mat,
+                                         PDPage pdPage, int pageNumber) throws IOException {
+        TableExtractor extractor = choice.getExtractor();
+        StageTimer timer = new StageTimer(settings.getParseListener(), pageNumber);
+        long pageStart = timer.isEnabled() ? System.nanoTime() : 0;
+
+        PageKey pageKey = new PageKey(pdPage);
+        PageResultCache resultCache = settings.getPageResultCache();
+        String fingerprint = resultCache == null ? null : pageFingerprint(pageKey);
+        if (fingerprint != null) {
+            ParsedTablePage cached = resultCache.get(fingerprint, pageNumber);
+            if (cached != null) {
+                if (timer.isEnabled()) {
+                    timer.getListener().onPageParsed(pageNumber, cached.getCellCount(), System.nanoTime() - pageStart);
+                }
+                return cached;
+            }
+        }
+
+        int dpi = settings.getPdfRenderingDpi();
+        List<DetectedTable> tables = Collections.emptyList();
+        boolean skipped = false;
+        if (settings.hasContentPreFilter()) {
+            timer.start();
+            skipped = !ContentPreFilter.mayContainTable(pdPage);
+            timer.stop(Stage.PRE_FILTER);
+            if (skipped && timer.isEnabled()) {
+                timer.getListener().onPageSkipped(pageNumber);
+            }
+        }
+        if (!skipped && settings.hasVectorDetection()) {
+            timer.start();
+            tables = vectorExtractor.getTables(pdPage);
+            timer.stop(Stage.VECTOR_EXTRACT);
+        }
+        List<DetectedTable> sampleTables = choice.getSampleTables(pageNumber);
+        if (!skipped && tables.isEmpty() && sampleTables != null) {// 选择识别方法时已经以完整DPI识别过该页面
+            tables = sampleTables;
+        } else if (!skipped && tables.isEmpty() && !extractor.requiresImage()) {
+            timer.start();
+            tables = extractor.extract(pdPage, null, timer);
+            timer.stop(Stage.EXTRACT);
+        } else if (!skipped && tables.isEmpty()) {
+            if (settings.hasAdaptiveDpi() && settings.getMinPdfRenderingDpi() < dpi) {
+                int lowDpi = settings.getMinPdfRenderingDpi();
+                renderPageImage(renderer, pageKey, mat, pageNumber, lowDpi, timer);
+                tables = extractTables(extractor, pdPage, mat, timer);
+                if (isDetailedEnough(tables) || (tables.isEmpty() && !mayContainTable(pdPage, timer))) {
+                    dpi = lowDpi;
+                } else if (tables.isEmpty()) {// 低DPI下可能丢失了细的表格线，无法确认页面中没有表格
+                    renderPageImage(renderer, pageKey, mat, pageNumber, dpi, timer);
+                    tables = extractTables(extractor, pdPage, mat, timer);
+                } else {
+                    Rect region = tableRegion(tables, lowDpi, dpi, pdPage);
+                    tables = extractTables(extractor, renderer, pdPage, mat, pageNumber, dpi, region, timer);
+                }
+            } else {
+                renderPageImage(renderer, pageKey, mat, pageNumber, dpi, timer);
+                tables = extractTables(extractor, pdPage, mat, timer);
+            }
+        }
+
+        timer.start();
+        ParsedTablePage out = parsePageByTables(pdPage, tables, pageNumber, dpi);
+        timer.stop(Stage.TEXT_STRIP);
+        if (fingerprint != null) {
+            resultCache.put(fingerprint, out);
+        }
+
+        if (timer.isEnabled()) {
+            timer.getListener().onPageParsed(pageNumber, out.getCellCount(), System.nanoTime() - pageStart);
+        }
+        return out;
+    }
+
+    /**
+     * 低DPI下没有识别出单元格时，判断是否值得用完整DPI重新渲染整个页面。
+     * 开启{@code settings.hasContentPreFilter()}时页面已经通过了同样的检查，不再重复扫描
+     */
+    private boolean mayContainTable(PDPage pdPage, StageTimer timer) {
+        if (settings.hasContentPreFilter()) {
+            return true;
+        }
+        timer.start();
+        boolean mayContainTable = ContentPreFilter.mayContainTable(pdPage);
+        timer.stop(Stage.PRE_FILTER);
+        return mayContainTable;
+    }
+
+    /**
+     * 解析单个页面并释放该页面的资源。解析失败时记录日志并返回带有异常的空页面，不中断其它页面的解析
+     *
+     * @param pageIndex 页码，第一页为0
+     */
+    private ParsedTablePage parsePdfPageIsolated(ExtractorChoice choice, PageRenderer renderer, Mat mat,
+                                                 PDDocument document, int pageIndex) {
+        try {
+            return parsePdfPage(choice, renderer, mat, document.getPage(pageIndex), pageIndex + 1);
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "failed to parse page " + (pageIndex + 1), e);
+            ParsedTablePage failed = new ParsedTablePage(pageIndex + 1);
+            failed.setError(e);
+            return failed;
+        } finally {
+            releasePageResources(document);
+        }
+    }
+
+    /**
+     * 使用指定的DPI渲染整个页面（缓存中有时直接读取），并转换为灰度图像存放在mat中
+     */
+    private void renderPageImage(PageRenderer renderer, PageKey pageKey, Mat mat, int pageNumber, int dpi,
+                                 StageTimer timer) throws IOException {
+        if (loadCachedPageImage(pageKey, dpi, mat)) {
+            return;
+        }
+        renderImage(renderer, mat, pageNumber, dpi, null, timer);
+        storeCachedPageImage(pageKey, dpi, mat);
+    }
+
+    /**
+     * 渲染页面或页面中的区域，并转换为灰度图像存放在mat中
+     */
+    private void renderImage(PageRenderer renderer, Mat mat, int pageNumber, int dpi, Rect region,
+                             StageTimer timer) throws IOException {
+        timer.start();
+        BufferedImage bim = renderer.render(dpi, region);
+        timer.stop(Stage.RENDER);
+        if (timer.isEnabled()) {
+            timer.getListener().onPageRendered(pageNumber, bim.getWidth(), bim.getHeight());
+        }
+        try {
+            timer.start();
+            bufferedImage2GrayscaleMat(bim, mat, GrayscaleBufferPool.shared());
+            timer.stop(Stage.CONVERT);
+        } finally {
+            bim.flush();
+        }
+    }
+
+    private static List<DetectedTable> extractTables(TableExtractor extractor, PDPage pdPage, Mat mat,
+                                                     StageTimer timer) throws IOException {
+        timer.start();
+        List<DetectedTable> tables = extractor.extract(pdPage, mat, timer);
+        timer.stop(Stage.EXTRACT);
+        return tables;
+    }
+
+    /**
+     * 只渲染页面中的region区域并识别表格，返回的坐标相对于整个页面
+     */
+    private List<DetectedTable> extractTables(TableExtractor extractor, PageRenderer renderer, PDPage pdPage, Mat mat,
+                                              int pageNumber, int dpi, Rect region, StageTimer timer) throws IOException {
+        renderImage(renderer, mat, pageNumber, dpi, region, timer);
+        List<DetectedTable> tables = extractTables(extractor, pdPage, mat, timer);
+        for (DetectedTable table : tables) {
+            table.translate(region.x, region.y);
+        }
+        return tables;
+    }
+
+    /**
+     * 低DPI下的识别结果是否足够可靠：至少识别出一个单元格，并且所有单元格的宽和高都不小于{@code settings.getMinCellSize()}像素。
+     * <p>
+     * 单元格太小时，相邻的表格线和文字在低DPI下容易粘连，需要用更高的DPI重新识别
+     */
+    private boolean isDetailedEnough(List<DetectedTable> tables) {
+        if (tables.isEmpty()) {
+            return false;
+        }
+        for (DetectedTable table : tables) {
+            for (Rect rect : table.getCells()) {
+                if (rect.width < settings.getMinCellSize() || rect.height < settings.getMinCellSize()) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将低DPI下识别出的所有单元格的外接矩形换算到高DPI，并向外扩展以包含表格的外框线
+     *
+     * @return 高DPI下需要重新渲染的区域，不超出页面范围
+     */
+    private static Rect tableRegion(List<DetectedTable> tables, int lowDpi, int dpi, PDPage page) {
+        int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE, x2 = 0, y2 = 0;
+        for (DetectedTable table : tables) {
+            for (Rect rect : table.getCells()) {
+                x1 = Math.min(x1, rect.x);
+                y1 = Math.min(y1, rect.y);
+                x2 = Math.max(x2, rect.x + rect.width);
+                y2 = Math.max(y2, rect.y + rect.height);
+            }
+        }
+        double scale = (double) dpi / lowDpi;
+        int margin = (int) Math.ceil(TABLE_REGION_MARGIN * scale);
+
+        PDRectangle cropBox = page.getCropBox();
+        boolean rotated = page.getRotation() % 180 != 0;
+        int pageWidth = (int) ((rotated ? cropBox.getHeight() : cropBox.getWidth()) * dpi / 72f);
+        int pageHeight = (int) ((rotated ? cropBox.getWidth() : cropBox.getHeight()) * dpi / 72f);
+
+        int left = Math.max(0, (int) Math.floor(x1 * scale) - margin);
+        int top = Math.max(0, (int) Math.floor(y1 * scale) - margin);
+        int right = Math.min(pageWidth, (int) Math.ceil(x2 * scale) + margin);
+        int bottom = Math.min(pageHeight, (int) Math.ceil(y2 * scale) + margin);
+        return new Rect(left, top, Math.max(1, right - left), Math.max(1, bottom - top));
+    }
+
+    /**
+     * 创建识别表格使用的渲染器，开启{@code settings.hasLineArtRendering()}时为{@link LineArtRenderer}
+     */
+    private PDFRenderer newRenderer(PDDocument document) {
+        return settings.hasLineArtRendering() ? new LineArtRenderer(document) : new PDFRenderer(document);
+    }
+
+    /**
+     * 使用指定的DPI渲染页面，region不为null时只渲染该区域（坐标为该DPI下的像素），
+     * 区域图像与整页渲染后裁剪得到的图像相同。开启{@code settings.hasLineArtRendering()}时渲染为8位灰度图像，
+     * 转换为Mat时直接拷贝像素
+     */
+    private BufferedImage renderPage(PDFRenderer renderer, int pageIndex, int dpi, Rect region) throws IOException {
+        boolean gray = settings.hasLineArtRendering();
+        if (region == null) {
+            return renderer.renderImageWithDPI(pageIndex, dpi, gray ? ImageType.GRAY : ImageType.RGB);
+        }
+        BufferedImage image = new BufferedImage(region.width, region.height,
+                gray ? BufferedImage.TYPE_BYTE_GRAY : BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            g.setBackground(Color.WHITE);
+            g.clearRect(0, 0, region.width, region.height);
+            g.translate(-region.x, -region.y);
+            renderer.renderPageToGraphics(pageIndex, g, dpi / 72f);
+        } finally {
+            g.dispose();
+        }
+        return image;
+    }
+
+    /**
+     * 计算{@code settings.getPageResultCache()}使用的页面指纹：页面内容哈希加上{@link Settings#resultKey()}，
+     * 计算失败时返回null（不使用缓存）
+     */
+    private String pageFingerprint(PageKey pageKey) {
+        String hash = pageKey.hash();
+        if (hash == null) {
+            return null;
+        }
+        return new CosDigest().update(PAGE_FINGERPRINT_VERSION).update(hash).update(settings.resultKey()).hexDigest();
+    }
+
+    /**
+     * 从缓存中读取页面灰度图像到mat
+     *
+     * @return 是否命中缓存
+     */
+    private boolean loadCachedPageImage(PageKey pageKey, int dpi, Mat mat) {
+        String imageKey = settings.getPageImageCache() == null ? null : pageKey.imageKey();
+        if (imageKey == null) {
+            return false;
+        }
+        CachedPageImage image = settings.getPageImageCache().get(imageKey, dpi);
+        if (image == null) {
+            return false;
+        }
+        mat.create(image.getHeight(), image.getWidth(), CvType.CV_8UC1);
+        mat.put(0, 0, image.getPixels());
+        return true;
+    }
+
+    /**
+     * 将mat中的页面灰度图像放入缓存
+     */
+    private void storeCachedPageImage(PageKey pageKey, int dpi, Mat mat) {
+        String imageKey = settings.getPageImageCache() == null ? null : pageKey.imageKey();
+        if (imageKey == null) {
+            return;
+        }
+        byte[] pixels = new byte[(int) mat.total()];
+        mat.get(0, 0, pixels);
+        settings.getPageImageCache().put(imageKey, dpi, new CachedPageImage(mat.cols(), mat.rows(), pixels));
+    }
+
+    /**
+     * 页面结果缓存和页面图像缓存共用的页面内容哈希（见{@link CosDigest#hashPage(PDPage)}），首次查找缓存时才计算
+     */
+    private class PageKey {
+
+        private final PDPage page;
+        private boolean computed;
+        private String hash;// 计算失败时为null
+
+        PageKey(PDPage page) {
+            this.page = page;
+        }
+
+        /**
+         * @return 页面内容哈希，计算失败时返回null（不使用缓存）
+         */
+        String hash() {
+            if (!computed) {
+                computed = true;
+                try {
+                    hash = CosDigest.hashPage(page);
+                } catch (IOException e) {
+                    logger.log(Level.WARNING, "cannot hash page, page caches disabled", e);
+                }
+            }
+            return hash;
+        }
+
+        /**
+         * @return {@code settings.getPageImageCache()}使用的页面键，两种渲染方式的图像不同
+         */
+        String imageKey() {
+            String hash = hash();
+            if (hash == null) {
+                return null;
+            }
+            return settings.hasLineArtRendering() ? hash + "-line-art" : hash;
+        }
+    }
+
+    /**
+     * 渲染单个PDF页面
+     */
+    @FunctionalInterface
+    private interface PageRenderer {
+        /**
+         * @param dpi    渲染DPI
+         * @param region 只渲染该区域（该DPI下的像素坐标），为null时渲染整个页面
+         */
+        BufferedImage render(int dpi, Rect region) throws IOException;
     }
 
     /**
      * 使用从{@link OpenCVExtractor}获取的{@link Rect}，逐个单元格解析PDF页面
+     * <p>
+     * 页面文本只提取一遍，由{@link CellTextStripper}按单元格分配字符。
+     * 同时根据单元格的左/上边缘推导表格网格，合并单元格的跨行、跨列数记录在{@link CompactTable}中。
+     * 单元格矩形也可以来自{@link VectorExtractor}或调用方自己的识别结果，单位为{@code settings.getPdfRenderingDpi()}下的像素。
+     * 所有矩形作为同一个表格，需要区分页面中的多个表格时使用{@link #parsePageByTables(PDPage, List, int, int)}
      * @param page PDF页面
      * @param rectangles {@link OpenCVExtractor}识别的OpenCV {@link Rect}列表
      * @param pageNumber 页码
      * @return 解析的结果
      * @throws IOException
      */
-    private ParsedTablePage parsePageByRectangles(PDPage page, List<Rect> rectangles, int pageNumber) throws IOException {
-        List<List<Rect>> sortedRects = groupRectanglesByRow(rectangles);// 按照表格行分组
+    public ParsedTablePage parsePageByRectangles(PDPage page, List<Rect> rectangles, int pageNumber) throws IOException {
+        return parsePageByRectangles(page, rectangles, pageNumber, settings.getPdfRenderingDpi());
+    }
+
+    /**
+     * 与{@link #parsePageByRectangles(PDPage, List, int)}相同，单元格矩形的单位为指定DPI下的像素
+     *
+     * @param page       PDF页面
+     * @param rectangles 单元格矩形列表
+     * @param pageNumber 页码
+     * @param dpi        识别单元格时页面图像的DPI，记录在{@link ParsedTablePage#getDpi()}中
+     * @return 解析的结果
+     * @throws IOException
+     */
+    public ParsedTablePage parsePageByRectangles(PDPage page, List<Rect> rectangles, int pageNumber, int dpi) throws IOException {
+        List<DetectedTable> tables = rectangles.isEmpty()
+                ? Collections.emptyList() : Collections.singletonList(DetectedTable.of(rectangles));
+        return parsePageByTables(page, tables, pageNumber, dpi);
+    }
+
+    /**
+     * 逐个表格解析PDF页面，每个{@link DetectedTable}对应结果中的一个{@link ParsedTable}
+     * <p>
+     * 所有表格的单元格一起交给{@link CellTextStripper}，页面文本仍然只提取一遍；
+     * 之后各表格分别按行分组并推导网格，行号和网格位置都相对于所在的表格
+     *
+     * @param page       PDF页面
+     * @param tables     表格列表，坐标单位为指定DPI下的像素
+     * @param pageNumber 页码
+     * @param dpi        识别单元格时页面图像的DPI，记录在{@link ParsedTablePage#getDpi()}中
+     * @return 解析的结果
+     * @throws IOException
+     */
+    public ParsedTablePage parsePageByTables(PDPage page, List<DetectedTable> tables, int pageNumber, int dpi) throws IOException {
+        double dpiRatio = (double) settings.getDefaultPdfDpi() / dpi;
 
         ParsedTablePage out = new ParsedTablePage(pageNumber);
+        out.setDpi(dpi);
 
-        PDFTextStripperByArea stripper = new PDFTextStripperByArea();
+        CellTextStripper stripper = new CellTextStripper();
         stripper.setSortByPosition(true);
 
-        int iRow = 0;
-        int iCol = 0;
-        for (List<Rect> row : sortedRects) {
-            for (Rect col : row) {
-                // 使用设置中指定的DPI（pdfRenderingDpi）渲染单个PDF页面，生成图像。
-                // 这里需要根据比例进行相应的还原
-                Rectangle r = new Rectangle(
-                        (int) (col.x * settings.getDpiRatio()),
-                        (int) (col.y * settings.getDpiRatio()),
-                        (int) (col.width * settings.getDpiRatio()),
-                        (int) (col.height * settings.getDpiRatio())
-                );
-                stripper.addRegion(getRegionId(iRow, iCol), r);
-                iCol++;
-            }
-            iRow++;
-            iCol = 0;
-        }
-
-        stripper.extractRegions(page);
-
-        iRow = 0;
-        iCol = 0;
-
-        for (List<Rect> row : sortedRects) {
-            List<String> rowCells = new ArrayList<>();
-            for (Rect col : row) {
-                String cellText = stripper.getTextForRegion(getRegionId(iRow, iCol));
-                logger.info("text: " + cellText);
-                rowCells.add(cellText);
-                iCol++;
-            }
-            out.addRow(rowCells);
-            iRow++;
-            iCol = 0;
+        List<List<List<Rect>>> sortedTables = new ArrayList<>(tables.size());
+        List<Rectangle> cellAreas = new ArrayList<>();
+        for (DetectedTable table : tables) {
+            List<List<Rect>> sortedRects = groupRectanglesByRow(table.getCells(), settings.getRowTolerance());// 按照表格行分组
+            sortedTables.add(sortedRects);
+            for (List<Rect> row : sortedRects) {
+                for (Rect col : row) {
+                    // 使用指定的DPI渲染单个PDF页面，生成图像。
+                    // 这里需要根据比例进行相应的还原
+                    Rectangle r = toPdfUnits(col, dpiRatio);
+                    stripper.addCell(r);
+                    cellAreas.add(r);
+                }
+            }
+        }
+
+        if (!cellAreas.isEmpty()) {// 没有单元格时不需要遍历页面文本
+            stripper.extractCells(page);
+        }
+
+        int cell = 0;// 单元格编号与添加顺序一致
+        for (int t = 0; t < tables.size(); t++) {
+            Rectangle bounds = toPdfUnits(tables.get(t).getBounds(), dpiRatio);
+            CompactTable table = out.addTable(bounds.x, bounds.y, bounds.width, bounds.height).getCells();
+            CellGrid grid = new CellGrid(tables.get(t).getCells(), settings.getRowTolerance());// 合并单元格的网格位置
+            for (List<Rect> row : sortedTables.get(t)) {
+                table.startRow();
+                for (Rect col : row) {
+                    String cellText = stripper.getTextForCell(cell);
+                    logger.fine("text: " + cellText);
+                    Rectangle r = cellAreas.get(cell++);
+                    int id = table.addCell(cellText, r.x, r.y, r.width, r.height);
+                    table.setGridPosition(id, grid.row(col), grid.column(col), grid.rowSpan(col), grid.columnSpan(col));
+                }
+            }
+            table.trimToSize();
         }
         return out;
     }
 
+    private static Rectangle toPdfUnits(Rect rect, double dpiRatio) {
+        return new Rectangle(
+                (int) (rect.x * dpiRatio),
+                (int) (rect.y * dpiRatio),
+                (int) (rect.width * dpiRatio),
+                (int) (rect.height * dpiRatio)
+        );
+    }
+
     /**
      * 按y坐标对{@link Rect}进行分组，将它们按照表格行分组
-     * @param rectangles {@link OpenCVExtractor}识别的OpenCV {@link Rect}列表
-     * @return list of Rectangle lists representing table rows.
+     * <p>
+     * 先按(y, x)排序，再自上而下扫描：与当前行第一个单元格的y坐标相差不超过{@code rowTolerance}的单元格归入同一行，
+     * 避免抗锯齿造成的一两个像素的偏差把同一行拆开。排序后只需扫描一遍，复杂度为 O(n log n)
+     *
+     * @param rectangles   {@link OpenCVExtractor}识别的OpenCV {@link Rect}列表
+     * @param rowTolerance 同一行单元格y坐标的最大偏差，单位为像素
+     * @return list of Rectangle lists representing table rows，行按y坐标排序，行内单元格按x坐标排序
      */
-    private List<List<Rect>> groupRectanglesByRow(List<Rect> rectangles) {
+    static List<List<Rect>> groupRectanglesByRow(List<Rect> rectangles, int rowTolerance) {
         List<List<Rect>> out = new ArrayList<>();
+        if (rectangles.isEmpty()) {
+            return out;
+        }
 
-        List<Integer> rowsCoords = rectangles.stream().map(r -> r.y).distinct().collect(Collectors.toList());
-        for (int rowCoords : rowsCoords) {
-            List<Rect> cols = rectangles.stream().filter(r -> r.y == rowCoords).collect(Collectors.toList());
-            out.add(cols);
+        Rect[] sorted = rectangles.toArray(new Rect[0]);
+        Arrays.sort(sorted, ROW_ORDER);
+
+        int rowStart = 0;
+        for (int i = 1; i <= sorted.length; i++) {
+            if (i == sorted.length || sorted[i].y - sorted[rowStart].y > rowTolerance) {
+                List<Rect> row = Arrays.asList(Arrays.copyOfRange(sorted, rowStart, i));
+                if (rowTolerance > 0) {// 容差内y坐标不同的单元格需要重新按x排序
+                    row.sort(COLUMN_ORDER);
+                }
+                out.add(row);
+                rowStart = i;
+            }
         }
         return out;
     }
-
-    private static String getRegionId(int row, int col) {
-        return String.format("r%dc%d", row, col);
-    }
 }
@@ -1,8 +1,16 @@
 package com.trekkiii.pdf.table.analysis;
 
+import com.trekkiii.pdf.table.analysis.cache.PageImageCache;
+import com.trekkiii.pdf.table.analysis.cache.PageResultCache;
+import com.trekkiii.pdf.table.analysis.opencv.DebugImageWriter;
+import com.trekkiii.pdf.table.analysis.opencv.ExtractionMethod;
+import com.trekkiii.pdf.table.analysis.metrics.ParseListener;
+
 import java.nio.file.Path;
 
 /**
+ * 解析设置，创建后不可变，可以被多个解析器和线程共享。
+ * <p>
  * Created by 刘春龙 on 2017/10/24.
  */
 public class Settings {
@@ -17,6 +25,13 @@ public class Settings {
         private static final int DEFAULT_PDF_DPI = 72;// Java默认dpi 72
         private int pdfRenderingDpi = 120;
 
+        // ADAPTIVE DPI SETTINGS
+        // 自适应DPI：先用minPdfRenderingDpi渲染，单元格小于minCellSize像素时再用pdfRenderingDpi重新渲染；
+        // 识别不到单元格时，只有页面中绘制了线段或图像（见ContentPreFilter）才重新渲染
+        private boolean adaptiveDpi = false;
+        private int minPdfRenderingDpi = 60;
+        private int minCellSize = 12;
+
         // CANNY EDGE DETECTION FLAG
         // Canny边缘检测标志（Canny：边缘检测算法）
         private boolean cannyFiltering = false;
@@ -37,17 +52,94 @@ public class Settings {
         // 边界矩形参数
         private double approxDistScaleFactor = 0.02;
 
+        // TABLE REGION DETECTION PARAMS
+        // 查找表格候选区域时二值图像的缩小倍数，为1时不查找候选区域，直接处理整个页面
+        private int regionDetectionScale = 2;
+
+        // ROW GROUPING PARAMS
+        // 单元格按行分组时y坐标的最大偏差（像素，与pdfRenderingDpi对应）
+        private int rowTolerance = 2;
+
+        // TABLE EXTRACTOR
+        // 单元格识别方法在TableExtractors中注册的名称：contours（默认）、morphology、vector或自行注册的方法
+        private String tableExtractor = ExtractionMethod.CONTOURS.getName();
+
+        // AUTO EXTRACTOR SELECTION
+        // 为true时每个文档先抽样extractorSamplePages页试用所有已注册的识别方法，
+        // 其余页面使用与tableExtractor结果的一致率不低于minExtractorAgreement的方法中最快的一个
+        private boolean autoExtractorSelection = false;
+        private int extractorSamplePages = 3;
+        private double minExtractorAgreement = 0.95;
+
+        // VECTOR DETECTION FLAG
+        // 矢量表格线检测标志，为true时优先从页面绘图指令中识别单元格，找不到表格线时再渲染页面使用OpenCV
+        private boolean vectorDetection = false;
+
+        // LINE ART RENDERING FLAG
+        // 线稿渲染标志，为true时只绘制页面中的路径（不绘制文字、图像和渐变），并直接渲染为8位灰度图像，
+        // 只存在于图像中的表格线（例如扫描件）无法识别
+        private boolean lineArtRendering = false;
+
+        // CONTENT PRE-FILTER FLAG
+        // 内容流预过滤标志，为true时渲染之前扫描页面内容流，没有表格线和图像的页面直接返回空结果
+        private boolean contentPreFilter = false;
+
         // DEBUG IMAGES PARAMS
         // debug image 相关参数，设置输出解析过程中生成的image
         private boolean debugImages = false;
         private Path debugFileOutputDir;
         private String debugFilename;
+        // 为true时把所有表格外框和单元格画在同一张彩色图像上，代替每个单元格一张的box_NNN图像
+        private boolean compactDebugImages = false;
+        // 后台写出debug图像的队列，为null时使用DebugImageWriter.shared()
+        private DebugImageWriter debugImageWriter;
+        // 为true时队列已满也不丢弃debug图像，在解析线程中直接写出
+        private boolean completeDebugImages = false;
+
+        // PARALLEL PARSING SETTINGS
+        // 并行解析设置，大于1时parsePdfPages使用多个工作线程，每个线程持有独立的PDDocument
+        private int parallelism = 1;
+
+        // PARSE LISTENER
+        // 解析过程监听器，采集各阶段耗时等指标，默认不采集
+        private ParseListener parseListener = ParseListener.NOOP;
+
+        // DOCUMENT LOADING SETTINGS
+        // 按Path/InputStream加载文档时，PDFBox解析缓冲最多使用的堆内存，超出部分写入scratchDirectory（为null时使用系统临时目录）
+        private long maxMainMemoryBytes = 64L << 20;
+        private Path scratchDirectory;
+
+        // PAGE IMAGE CACHE
+        // 页面灰度图像缓存，为null时每次解析都重新渲染页面
+        private PageImageCache pageImageCache;
+
+        // PAGE RESULT CACHE
+        // 页面解析结果缓存，页面指纹命中时直接返回上次的结果，为null时不使用
+        private PageResultCache pageResultCache;
 
         public SettingsBuilder setPdfRenderingDpi(int pdfRenderingDpi) {
             this.pdfRenderingDpi = pdfRenderingDpi;
             return this;
         }
 
+        public SettingsBuilder setAdaptiveDpi(boolean adaptiveDpi) {
+            this.adaptiveDpi = adaptiveDpi;
+            return this;
+        }
+
+        public SettingsBuilder setMinPdfRenderingDpi(int minPdfRenderingDpi) {
+            if (minPdfRenderingDpi < 1) {
+                throw new IllegalArgumentException("minPdfRenderingDpi must be >= 1: " + minPdfRenderingDpi);
+            }
+            this.minPdfRenderingDpi = minPdfRenderingDpi;
+            return this;
+        }
+
+        public SettingsBuilder setMinCellSize(int minCellSize) {
+            this.minCellSize = minCellSize;
+            return this;
+        }
+
         public SettingsBuilder setCannyFiltering(boolean cannyFiltering) {
             this.cannyFiltering = cannyFiltering;
             return this;
@@ -88,11 +180,75 @@ public class Settings {
             return this;
         }
 
+        public SettingsBuilder setTableExtractor(String tableExtractor) {
+            if (tableExtractor == null) {
+                throw new IllegalArgumentException("tableExtractor must not be null");
+            }
+            this.tableExtractor = tableExtractor;
+            return this;
+        }
+
+        public SettingsBuilder setExtractionMethod(ExtractionMethod extractionMethod) {
+            return setTableExtractor(extractionMethod.getName());
+        }
+
+        public SettingsBuilder setAutoExtractorSelection(boolean autoExtractorSelection) {
+            this.autoExtractorSelection = autoExtractorSelection;
+            return this;
+        }
+
+        public SettingsBuilder setExtractorSamplePages(int extractorSamplePages) {
+            if (extractorSamplePages < 1) {
+                throw new IllegalArgumentException("extractorSamplePages must be >= 1: " + extractorSamplePages);
+            }
+            this.extractorSamplePages = extractorSamplePages;
+            return this;
+        }
+
+        public SettingsBuilder setMinExtractorAgreement(double minExtractorAgreement) {
+            if (minExtractorAgreement < 0 || minExtractorAgreement > 1) {
+                throw new IllegalArgumentException("minExtractorAgreement must be between 0 and 1: " + minExtractorAgreement);
+            }
+            this.minExtractorAgreement = minExtractorAgreement;
+            return this;
+        }
+
+        public SettingsBuilder setVectorDetection(boolean vectorDetection) {
+            this.vectorDetection = vectorDetection;
+            return this;
+        }
+
+        public SettingsBuilder setLineArtRendering(boolean lineArtRendering) {
+            this.lineArtRendering = lineArtRendering;
+            return this;
+        }
+
+        public SettingsBuilder setContentPreFilter(boolean contentPreFilter) {
+            this.contentPreFilter = contentPreFilter;
+            return this;
+        }
+
         public SettingsBuilder setDebugImages(boolean debugImages) {
             this.debugImages = debugImages;
             return this;
         }
 
+        public SettingsBuilder setRegionDetectionScale(int regionDetectionScale) {
+            if (regionDetectionScale < 1) {
+                throw new IllegalArgumentException("regionDetectionScale must be >= 1: " + regionDetectionScale);
+            }
+            this.regionDetectionScale = regionDetectionScale;
+            return this;
+        }
+
+        public SettingsBuilder setRowTolerance(int rowTolerance) {
+            if (rowTolerance < 0) {
+                throw new IllegalArgumentException("rowTolerance must be >= 0: " + rowTolerance);
+            }
+            this.rowTolerance = rowTolerance;
+            return this;
+        }
+
         public SettingsBuilder setDebugFileOutputDir(Path debugFileOutputDir) {
             this.debugFileOutputDir = debugFileOutputDir;
             return this;
@@ -103,6 +259,57 @@ public class Settings {
             return this;
         }
 
+        public SettingsBuilder setCompactDebugImages(boolean compactDebugImages) {
+            this.compactDebugImages = compactDebugImages;
+            return this;
+        }
+
+        public SettingsBuilder setDebugImageWriter(DebugImageWriter debugImageWriter) {
+            this.debugImageWriter = debugImageWriter;
+            return this;
+        }
+
+        public SettingsBuilder setCompleteDebugImages(boolean completeDebugImages) {
+            this.completeDebugImages = completeDebugImages;
+            return this;
+        }
+
+        public SettingsBuilder setParallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be >= 1: " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public SettingsBuilder setParseListener(ParseListener parseListener) {
+            this.parseListener = parseListener == null ? ParseListener.NOOP : parseListener;
+            return this;
+        }
+
+        public SettingsBuilder setMaxMainMemoryBytes(long maxMainMemoryBytes) {
+            if (maxMainMemoryBytes < 0) {
+                throw new IllegalArgumentException("maxMainMemoryBytes must be >= 0: " + maxMainMemoryBytes);
+            }
+            this.maxMainMemoryBytes = maxMainMemoryBytes;
+            return this;
+        }
+
+        public SettingsBuilder setScratchDirectory(Path scratchDirectory) {
+            this.scratchDirectory = scratchDirectory;
+            return this;
+        }
+
+        public SettingsBuilder setPageImageCache(PageImageCache pageImageCache) {
+            this.pageImageCache = pageImageCache;
+            return this;
+        }
+
+        public SettingsBuilder setPageResultCache(PageResultCache pageResultCache) {
+            this.pageResultCache = pageResultCache;
+            return this;
+        }
+
         /**
          * 创建Settings对象
          *
@@ -114,29 +321,76 @@ public class Settings {
     }
 
     // DPI SETTINGS
-    private int defaultPdfDpi;
-    private int pdfRenderingDpi;
+    private final int defaultPdfDpi;
+    private final int pdfRenderingDpi;
+
+    // ADAPTIVE DPI SETTINGS
+    private final boolean adaptiveDpi;
+    private final int minPdfRenderingDpi;
+    private final int minCellSize;
 
     // CANNY EDGE DETECTION FLAG
-    private boolean cannyFiltering;
+    private final boolean cannyFiltering;
 
     // BINARY INVERTED THRESHOLD SETTINGS
-    private double bitThreshold;
-    private double bitMaxVal;
+    private final double bitThreshold;
+    private final double bitMaxVal;
 
     // CANNY FILTER SETTINGS
-    private double cannyThreshold1;
-    private double cannyThreshold2;
-    private int cannyApertureSize;
-    private boolean cannyL2Gradient;
+    private final double cannyThreshold1;
+    private final double cannyThreshold2;
+    private final int cannyApertureSize;
+    private final boolean cannyL2Gradient;
 
     // BOUNDING RECT PARAMS
-    private double approxDistScaleFactor;
+    private final double approxDistScaleFactor;
+
+    // TABLE REGION DETECTION PARAMS
+    private final int regionDetectionScale;
+
+    // ROW GROUPING PARAMS
+    private final int rowTolerance;
+
+    // TABLE EXTRACTOR
+    private final String tableExtractor;
+
+    // AUTO EXTRACTOR SELECTION
+    private final boolean autoExtractorSelection;
+    private final int extractorSamplePages;
+    private final double minExtractorAgreement;
+
+    // VECTOR DETECTION FLAG
+    private final boolean vectorDetection;
+
+    // LINE ART RENDERING FLAG
+    private final boolean lineArtRendering;
+
+    // CONTENT PRE-FILTER FLAG
+    private final boolean contentPreFilter;
 
     // DEBUG IMAGES PARAMS
-    private boolean debugImages;
-    private Path debugFileOutputDir;
-    private String debugFilename;
+    private final boolean debugImages;
+    private final Path debugFileOutputDir;
+    private final String debugFilename;
+    private final boolean compactDebugImages;
+    private final DebugImageWriter debugImageWriter;
+    private final boolean completeDebugImages;
+
+    // PARALLEL PARSING SETTINGS
+    private final int parallelism;
+
+    // PARSE LISTENER
+    private final ParseListener parseListener;
+
+    // DOCUMENT LOADING SETTINGS
+    private final long maxMainMemoryBytes;
+    private final Path scratchDirectory;
+
+    // PAGE IMAGE CACHE
+    private final PageImageCache pageImageCache;
+
+    // PAGE RESULT CACHE
+    private final PageResultCache pageResultCache;
 
     /**
      * 构造方法
@@ -146,6 +400,9 @@ public class Settings {
     private Settings(SettingsBuilder builder) {
         this.defaultPdfDpi = SettingsBuilder.DEFAULT_PDF_DPI;
         this.pdfRenderingDpi = builder.pdfRenderingDpi;
+        this.adaptiveDpi = builder.adaptiveDpi;
+        this.minPdfRenderingDpi = builder.minPdfRenderingDpi;
+        this.minCellSize = builder.minCellSize;
         this.cannyFiltering = builder.cannyFiltering;
         this.bitThreshold = builder.bitThreshold;
         this.bitMaxVal = builder.bitMaxVal;
@@ -154,9 +411,27 @@ public class Settings {
         this.cannyApertureSize = builder.cannyApertureSize;
         this.cannyL2Gradient = builder.cannyL2Gradient;
         this.approxDistScaleFactor = builder.approxDistScaleFactor;
+        this.regionDetectionScale = builder.regionDetectionScale;
+        this.rowTolerance = builder.rowTolerance;
+        this.tableExtractor = builder.tableExtractor;
+        this.autoExtractorSelection = builder.autoExtractorSelection;
+        this.extractorSamplePages = builder.extractorSamplePages;
+        this.minExtractorAgreement = builder.minExtractorAgreement;
+        this.vectorDetection = builder.vectorDetection;
+        this.lineArtRendering = builder.lineArtRendering;
+        this.contentPreFilter = builder.contentPreFilter;
         this.debugImages = builder.debugImages;
         this.debugFileOutputDir = builder.debugFileOutputDir;
         this.debugFilename = builder.debugFilename;
+        this.compactDebugImages = builder.compactDebugImages;
+        this.debugImageWriter = builder.debugImageWriter == null ? DebugImageWriter.shared() : builder.debugImageWriter;
+        this.completeDebugImages = builder.completeDebugImages;
+        this.parallelism = builder.parallelism;
+        this.parseListener = builder.parseListener;
+        this.maxMainMemoryBytes = builder.maxMainMemoryBytes;
+        this.scratchDirectory = builder.scratchDirectory;
+        this.pageImageCache = builder.pageImageCache;
+        this.pageResultCache = builder.pageResultCache;
     }
 
     /**
@@ -183,6 +458,18 @@ public class Settings {
         return pdfRenderingDpi;
     }
 
+    public boolean hasAdaptiveDpi() {
+        return adaptiveDpi;
+    }
+
+    public int getMinPdfRenderingDpi() {
+        return minPdfRenderingDpi;
+    }
+
+    public int getMinCellSize() {
+        return minCellSize;
+    }
+
     public boolean hasCannyFiltering() {
         return cannyFiltering;
     }
@@ -215,6 +502,42 @@ public class Settings {
         return approxDistScaleFactor;
     }
 
+    public int getRegionDetectionScale() {
+        return regionDetectionScale;
+    }
+
+    public int getRowTolerance() {
+        return rowTolerance;
+    }
+
+    public String getTableExtractor() {
+        return tableExtractor;
+    }
+
+    public boolean hasAutoExtractorSelection() {
+        return autoExtractorSelection;
+    }
+
+    public int getExtractorSamplePages() {
+        return extractorSamplePages;
+    }
+
+    public double getMinExtractorAgreement() {
+        return minExtractorAgreement;
+    }
+
+    public boolean hasVectorDetection() {
+        return vectorDetection;
+    }
+
+    public boolean hasLineArtRendering() {
+        return lineArtRendering;
+    }
+
+    public boolean hasContentPreFilter() {
+        return contentPreFilter;
+    }
+
     public boolean hasDebugImages() {
         return debugImages;
     }
@@ -227,6 +550,64 @@ public class Settings {
         return debugFilename;
     }
 
+    public boolean hasCompactDebugImages() {
+        return compactDebugImages;
+    }
+
+    public DebugImageWriter getDebugImageWriter() {
+        return debugImageWriter;
+    }
+
+    public boolean hasCompleteDebugImages() {
+        return completeDebugImages;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public ParseListener getParseListener() {
+        return parseListener;
+    }
+
+    public long getMaxMainMemoryBytes() {
+        return maxMainMemoryBytes;
+    }
+
+    public Path getScratchDirectory() {
+        return scratchDirectory;
+    }
+
+    public PageImageCache getPageImageCache() {
+        return pageImageCache;
+    }
+
+    public PageResultCache getPageResultCache() {
+        return pageResultCache;
+    }
+
+    /**
+     * 影响解析结果的设置项，作为{@link PageResultCache}页面指纹的一部分。
+     * 新增影响单元格识别或文本提取的设置项时需要加入这里。
+     * 自动选择识别方法时只记录选择条件，命中的结果可能来自任何一个满足一致率下限的方法
+     *
+     * @return 设置项的文本表示
+     */
+    String resultKey() {
+        return "dpi=" + pdfRenderingDpi
+                + ",adaptiveDpi=" + adaptiveDpi + "/" + minPdfRenderingDpi + "/" + minCellSize
+                + ",canny=" + cannyFiltering + "/" + cannyThreshold1 + "/" + cannyThreshold2 + "/" + cannyApertureSize + "/" + cannyL2Gradient
+                + ",bit=" + bitThreshold + "/" + bitMaxVal
+                + ",approxDist=" + approxDistScaleFactor
+                + ",regionScale=" + regionDetectionScale
+                + ",rowTolerance=" + rowTolerance
+                + ",extractor=" + tableExtractor
+                + (autoExtractorSelection ? "/auto/" + extractorSamplePages + "/" + minExtractorAgreement : "")
+                + ",vector=" + vectorDetection
+                + ",preFilter=" + contentPreFilter
+                + ",lineArt=" + lineArtRendering;
+    }
+
     public double getDpiRatio() {
         return (double) defaultPdfDpi / pdfRenderingDpi;
     }
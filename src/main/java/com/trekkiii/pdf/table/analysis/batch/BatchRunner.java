@@ -0,0 +1,554 @@
+package com.trekkiii.pdf.table.analysis.batch;
+
+import com.trekkiii.pdf.table.analysis.ExtractorChoice;
+import com.trekkiii.pdf.table.analysis.PdfTableParser;
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.cache.PageResultCache;
+import com.trekkiii.pdf.table.analysis.extract.TableExtractors;
+import com.trekkiii.pdf.table.analysis.metrics.ParseListener;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import com.trekkiii.pdf.table.analysis.output.OutputFormat;
+import com.trekkiii.pdf.table.analysis.output.TablePageWriter;
+import com.trekkiii.pdf.table.analysis.output.TsvTablePageWriter;
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 批量解析目录或文件列表中的PDF文档。
+ * <p>
+ * 所有文档在同一个JVM中处理，OpenCV本地库只加载一次，JIT预热也只发生一次。
+ * 文档按文件大小从大到小提交到工作窃取(work-stealing)的{@link ForkJoinPool}，页数较多的文档再按页码拆分为若干段，
+ * 每段加载独立的PDDocument并行解析，因此大小文件混合时各线程的负载也能保持均衡。
+ * 每个文档解析完成后立即写出结果文件，运行期间定期打印吞吐量。
+ * <p>
+ * 用法：
+ * <pre>
+ * java -cp ... com.trekkiii.pdf.table.analysis.batch.BatchRunner [选项] &lt;目录|文件|@列表文件&gt;...
+ *
+ *   -o, --output DIR      结果输出目录（必填），每个PDF对应一个结果文件，保留输入目录下的相对路径；
+ *                         不同输入的结果文件同名时（例如列表中的a/report.pdf和b/report.pdf），这些输入改用完整路径
+ *   -f, --format FORMAT   结果格式：tsv（默认）、csv、jsonl或arrow，参见{@link OutputFormat}
+ *   -t, --threads N       工作线程数，默认为CPU核数
+ *   --chunk-pages N       超过该页数的文档按页码拆分，默认8
+ *   --dpi N               渲染DPI
+ *   --vector              开启矢量表格线检测
+ *   --adaptive-dpi        开启自适应DPI
+ *   --line-art            只渲染路径（不渲染文字和图像），直接渲染为灰度图像
+ *   --method NAME         识别方法：contours（默认）、morphology、vector或通过ServiceLoader注册的名称，参见{@link TableExtractors}
+ *   --auto-extractor      每个文档抽样比较所有识别方法，选用足够准确的最快方法（拆分的各段共用），结束时打印各方法被选中的次数
+ *   --pre-filter          渲染之前扫描内容流，跳过没有表格线和图像的页面，结束时打印跳过的页数
+ *   --progress SECONDS    打印进度的间隔，0表示不打印，默认10
+ *   --result-cache FILE   页面解析结果缓存文件，未修改的页面直接使用上次的结果
+ * </pre>
+ * 默认的tsv结果文件每行一个表格行：页码、表格序号、行号（均从1开始）以及各单元格文本，以制表符分隔，参见{@link TsvTablePageWriter}。
+ * <p>
+ * 所有文档都解析成功时退出码为0，有文档失败时为1，参数错误时为2。
+ */
+public class BatchRunner {
+
+    private static final Logger logger = Logger.getLogger(BatchRunner.class.getName());
+
+    private final PdfTableParser parser;// 线程安全，所有任务共用
+    private final Path outputDir;
+    private final int threads;
+    private final int chunkPages;
+    private final OutputFormat format;
+    private final PrintStream out;
+
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong failedDocuments = new AtomicLong();
+    private final AtomicLong pages = new AtomicLong();
+    private final AtomicLong cells = new AtomicLong();
+
+    /**
+     * @param settings   解析设置。{@code settings.getParallelism()}不起作用：每段页面在自己的任务中逐页顺序解析，并行由本类负责
+     * @param outputDir  结果输出目录
+     * @param threads    工作线程数
+     * @param chunkPages 超过该页数的文档按页码拆分
+     * @param out        打印进度和统计信息
+     */
+    public BatchRunner(Settings settings, Path outputDir, int threads, int chunkPages, PrintStream out) {
+        this(settings, outputDir, threads, chunkPages, OutputFormat.TSV, out);
+    }
+
+    /**
+     * @param settings   解析设置。{@code settings.getParallelism()}不起作用：每段页面在自己的任务中逐页顺序解析，并行由本类负责
+     * @param outputDir  结果输出目录
+     * @param threads    工作线程数
+     * @param chunkPages 超过该页数的文档按页码拆分
+     * @param format     结果格式
+     * @param out        打印进度和统计信息
+     */
+    public BatchRunner(Settings settings, Path outputDir, int threads, int chunkPages, OutputFormat format,
+                       PrintStream out) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be >= 1: " + threads);
+        }
+        if (chunkPages < 1) {
+            throw new IllegalArgumentException("chunkPages must be >= 1: " + chunkPages);
+        }
+        this.parser = new PdfTableParser(settings);
+        this.outputDir = outputDir;
+        this.threads = threads;
+        this.chunkPages = chunkPages;
+        this.format = format;
+        this.out = out;
+    }
+
+    public static void main(String[] args) {
+        System.exit(run(args, System.out, System.err));
+    }
+
+    /**
+     * 解析命令行参数并运行，返回退出码
+     */
+    static int run(String[] args, PrintStream out, PrintStream err) {
+        Settings.SettingsBuilder builder = Settings.builder();
+        Path outputDir = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int chunkPages = 8;
+        OutputFormat format = OutputFormat.TSV;
+        int progressSeconds = 10;
+        Path resultCacheFile = null;
+        boolean preFilter = false;
+        boolean autoExtractor = false;
+        List<String> inputs = new ArrayList<>();
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "-o":
+                    case "--output":
+                        outputDir = Paths.get(value(args, ++i));
+                        break;
+                    case "-f":
+                    case "--format":
+                        format = OutputFormat.of(value(args, ++i));
+                        break;
+                    case "-t":
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--chunk-pages":
+                        chunkPages = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--dpi":
+                        builder.setPdfRenderingDpi(Integer.parseInt(value(args, ++i)));
+                        break;
+                    case "--vector":
+                        builder.setVectorDetection(true);
+                        break;
+                    case "--adaptive-dpi":
+                        builder.setAdaptiveDpi(true);
+                        break;
+                    case "--line-art":
+                        builder.setLineArtRendering(true);
+                        break;
+                    case "--method":
+                        String method = value(args, ++i);
+                        if (!TableExtractors.names().contains(method)) {
+                            throw new IllegalArgumentException("unknown method: " + method + ", expected one of " + TableExtractors.names());
+                        }
+                        builder.setTableExtractor(method);
+                        break;
+                    case "--auto-extractor":
+                        builder.setAutoExtractorSelection(true);
+                        autoExtractor = true;
+                        break;
+                    case "--pre-filter":
+                        builder.setContentPreFilter(true);
+                        preFilter = true;
+                        break;
+                    case "--progress":
+                        progressSeconds = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--result-cache":
+                        resultCacheFile = Paths.get(value(args, ++i));
+                        break;
+                    default:
+                        if (args[i].startsWith("-")) {
+                            throw new IllegalArgumentException("unknown option: " + args[i]);
+                        }
+                        inputs.add(args[i]);
+                }
+            }
+            if (outputDir == null || inputs.isEmpty()) {
+                throw new IllegalArgumentException("an output directory and at least one input are required");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println("usage: BatchRunner -o <output dir> [-f tsv|csv|jsonl|arrow] [-t threads] [--chunk-pages n] [--dpi n] [--vector] "
+                    + "[--adaptive-dpi] [--line-art] [--method name] [--auto-extractor] [--pre-filter] [--progress seconds] [--result-cache file] <dir|file.pdf|@list.txt>...");
+            return 2;
+        }
+
+        PageResultCache resultCache = null;
+        if (resultCacheFile != null) {
+            try {
+                resultCache = new PageResultCache(resultCacheFile);
+            } catch (IOException e) {
+                err.println("cannot open result cache: " + e.getMessage());
+                return 2;
+            }
+            builder.setPageResultCache(resultCache);
+        }
+        CountingListener counts = null;
+        if (preFilter || autoExtractor) {
+            counts = new CountingListener();
+            builder.setParseListener(counts);
+        }
+        try {
+            List<Input> documents = collectInputs(inputs);
+            BatchRunner runner = new BatchRunner(builder.build(), outputDir, threads, chunkPages, format, out);
+            return runner.run(documents, progressSeconds) ? 0 : 1;
+        } catch (IOException | UncheckedIOException | IllegalArgumentException e) {
+            err.println("cannot read inputs: " + e.getMessage());
+            return 2;
+        } finally {
+            if (preFilter) {
+                out.println("pre-filter: " + counts.skippedPages.sum() + " pages without tables skipped");
+            }
+            if (autoExtractor) {
+                out.println("auto extractor: " + new TreeMap<>(counts.selections));
+            }
+            if (resultCache != null) {
+                out.println("result cache: " + resultCache.getHitCount() + " hits, " + resultCache.getMissCount() + " misses");
+                try {
+                    resultCache.close();
+                } catch (IOException e) {
+                    err.println("cannot close result cache: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 统计预过滤跳过的页数和自动选择识别方法的结果
+     */
+    private static class CountingListener implements ParseListener {
+
+        private final LongAdder skippedPages = new LongAdder();
+        private final Map<String, LongAdder> selections = new ConcurrentHashMap<>();
+
+        @Override
+        public void onPageSkipped(int pageNumber) {
+            skippedPages.increment();
+        }
+
+        @Override
+        public void onExtractorSelected(String extractor) {
+            selections.computeIfAbsent(extractor, k -> new LongAdder()).increment();
+        }
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException("missing value for " + args[i - 1]);
+        }
+        return args[i];
+    }
+
+    /**
+     * 展开输入：目录递归查找.pdf文件，以@开头的参数为每行一个路径的列表文件
+     *
+     * @throws IllegalArgumentException 同一个文件出现多次
+     */
+    static List<Input> collectInputs(List<String> args) throws IOException {
+        List<Input> out = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.startsWith("@")) {
+                for (String line : Files.readAllLines(Paths.get(arg.substring(1)), StandardCharsets.UTF_8)) {
+                    if (!line.trim().isEmpty()) {
+                        Path file = Paths.get(line.trim());
+                        out.add(new Input(file, file.getFileName()));
+                    }
+                }
+                continue;
+            }
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> files = Files.walk(path)) {
+                    for (Path file : files.filter(BatchRunner::isPdf).sorted().collect(Collectors.toList())) {
+                        out.add(new Input(file, path.relativize(file)));
+                    }
+                }
+            } else {
+                out.add(new Input(path, path.getFileName()));
+            }
+        }
+        return disambiguate(out);
+    }
+
+    /**
+     * 结果文件相同的输入改用去掉根目录的绝对路径作为相对路径，避免后写出的结果覆盖先写出的结果
+     *
+     * @throws IllegalArgumentException 改用绝对路径后仍然相同，即同一个文件出现多次
+     */
+    private static List<Input> disambiguate(List<Input> inputs) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (Input input : inputs) {
+            counts.merge(resultStem(input.relativePath), 1, Integer::sum);
+        }
+        List<Input> out = new ArrayList<>(inputs.size());
+        Map<String, Path> seen = new HashMap<>();
+        for (Input input : inputs) {
+            if (counts.get(resultStem(input.relativePath)) > 1) {
+                Path absolute = input.file.toAbsolutePath().normalize();
+                input = new Input(input.file, absolute.getRoot().relativize(absolute));
+            }
+            Path previous = seen.putIfAbsent(resultStem(input.relativePath), input.file);
+            if (previous != null) {
+                throw new IllegalArgumentException("inputs map to the same result file: " + previous + ", " + input.file);
+            }
+            out.add(input);
+        }
+        return out;
+    }
+
+    /**
+     * @return 结果文件相对于输出目录的路径，不含扩展名
+     */
+    private static String resultStem(Path relativePath) {
+        String name = relativePath.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        name = dot > 0 ? name.substring(0, dot) : name;
+        Path parent = relativePath.getParent();
+        return parent == null ? name : parent.resolve(name).toString();
+    }
+
+    private static boolean isPdf(Path file) {
+        return Files.isRegularFile(file) && file.getFileName().toString().toLowerCase().endsWith(".pdf");
+    }
+
+    /**
+     * 解析所有文档
+     *
+     * @param inputs          待解析的文档
+     * @param progressSeconds 打印进度的间隔，0表示不打印
+     * @return 所有文档是否都解析成功
+     */
+    public boolean run(List<Input> inputs, int progressSeconds) {
+        List<Input> sorted = new ArrayList<>(inputs);
+        sorted.sort(Comparator.comparingLong(Input::size).reversed());// 先提交大文件，减少结尾处的长尾
+
+        long start = System.nanoTime();
+        ScheduledExecutorService progress = null;
+        if (progressSeconds > 0) {
+            progress = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "batch-progress");
+                t.setDaemon(true);
+                return t;
+            });
+            progress.scheduleAtFixedRate(() -> printStats("progress", sorted.size(), start),
+                    progressSeconds, progressSeconds, TimeUnit.SECONDS);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            List<DocumentTask> tasks = new ArrayList<>(sorted.size());
+            for (Input input : sorted) {
+                tasks.add(new DocumentTask(input));
+            }
+            @SuppressWarnings("serial")// 任务不会被序列化，下同
+            RecursiveAction all = new RecursiveAction() {
+                @Override
+                protected void compute() {
+                    invokeAll(tasks);
+                }
+            };
+            pool.invoke(all);
+        } finally {
+            pool.shutdown();
+            if (progress != null) {
+                progress.shutdownNow();
+            }
+        }
+
+        printStats("done", sorted.size(), start);
+        return failedDocuments.get() == 0;
+    }
+
+    private void printStats(String label, int total, long start) {
+        double seconds = Math.max(1e-9, (System.nanoTime() - start) / 1e9);
+        out.printf("%s: documents %d/%d (failed %d), pages %d, cells %d, %.1fs, %.2f pages/s, %.2f documents/s%n",
+                label, documents.get(), total, failedDocuments.get(), pages.get(), cells.get(), seconds,
+                pages.get() / seconds, documents.get() / seconds);
+    }
+
+    /**
+     * 待解析的文档
+     */
+    public static class Input {
+
+        private final Path file;
+        private final Path relativePath;// 结果文件相对于输出目录的路径（扩展名替换前）
+        private final long size;
+
+        public Input(Path file, Path relativePath) {
+            this.file = file;
+            this.relativePath = relativePath;
+            long size;
+            try {
+                size = Files.size(file);
+            } catch (IOException e) {
+                size = 0;// 无法读取的文件在解析时报告错误
+            }
+            this.size = size;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        long size() {
+            return size;
+        }
+    }
+
+    /**
+     * 解析单个文档：页数不超过chunkPages时直接解析，否则为整个文档选择一次识别方法，
+     * 再拆分为多个{@link ChunkTask}并行解析，全部完成后写出结果
+     */
+    @SuppressWarnings("serial")
+    private class DocumentTask extends RecursiveAction {
+
+        private final Input input;
+
+        DocumentTask(Input input) {
+            this.input = input;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                List<ParsedTablePage> result = null;
+                int pageCount;
+                ExtractorChoice choice = null;
+                try (PDDocument document = parser.loadPdfDocument(input.file)) {
+                    pageCount = document.getNumberOfPages();
+                    if (pageCount <= chunkPages) {
+                        result = parse(document, 1, pageCount, null);
+                    } else {
+                        choice = parser.selectExtractor(document, 1, pageCount);
+                    }
+                }
+                if (result == null) {// 按页码拆分，各段加载独立的PDDocument
+                    List<ChunkTask> chunks = new ArrayList<>();
+                    for (int startPage = 1; startPage <= pageCount; startPage += chunkPages) {
+                        chunks.add(new ChunkTask(input, startPage, Math.min(pageCount, startPage + chunkPages - 1), choice));
+                    }
+                    invokeAll(chunks);
+                    result = new ArrayList<>(pageCount);
+                    for (ChunkTask chunk : chunks) {
+                        if (chunk.error != null) {
+                            throw chunk.error;
+                        }
+                        result.addAll(chunk.result);
+                    }
+                }
+                writeResult(input, result);
+                documents.incrementAndGet();
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "failed to parse " + input.file, e);
+                failedDocuments.incrementAndGet();
+                documents.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * 解析文档中的一段页面
+     */
+    @SuppressWarnings("serial")
+    private class ChunkTask extends RecursiveAction {
+
+        private final Input input;
+        private final int startPage;
+        private final int endPage;
+        private final ExtractorChoice choice;
+        private List<ParsedTablePage> result;
+        private IOException error;
+
+        ChunkTask(Input input, int startPage, int endPage, ExtractorChoice choice) {
+            this.input = input;
+            this.startPage = startPage;
+            this.endPage = endPage;
+            this.choice = choice;
+        }
+
+        @Override
+        protected void compute() {
+            try (PDDocument document = parser.loadPdfDocument(input.file)) {
+                result = parse(document, startPage, endPage, choice);
+            } catch (IOException e) {
+                error = e;
+            }
+        }
+    }
+
+    /**
+     * 在当前任务中逐页顺序解析一段页面，不使用解析器自己的并行解析
+     *
+     * @param choice 整个文档的识别方法，为null时由解析器为这段页面选择
+     */
+    private List<ParsedTablePage> parse(PDDocument document, int startPage, int endPage, ExtractorChoice choice)
+            throws IOException {
+        List<ParsedTablePage> result = new ArrayList<>(endPage - startPage + 1);
+        Consumer<ParsedTablePage> consumer = page -> {
+            result.add(page);
+            pages.incrementAndGet();
+            cells.addAndGet(page.getCellCount());
+        };
+        if (choice == null) {
+            parser.parsePdfPages(document, startPage, endPage, consumer);
+        } else {
+            parser.parsePdfPages(document, startPage, endPage, choice, consumer);
+        }
+        return result;
+    }
+
+    /**
+     * 写出单个文档的结果，先写临时文件再重命名，中断时不会留下不完整的结果文件
+     */
+    private void writeResult(Input input, List<ParsedTablePage> result) throws IOException {
+        Path file = outputDir.resolve(resultStem(input.relativePath) + format.getExtension());
+        Files.createDirectories(file.getParent());
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (TablePageWriter writer = format.open(FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING))) {
+            for (ParsedTablePage page : result) {
+                writer.write(page);
+            }
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
@@ -0,0 +1,35 @@
+package com.trekkiii.pdf.table.analysis.cache;
+
+/**
+ * 缓存的页面灰度图像，每个像素一个字节，按行连续存储
+ */
+public class CachedPageImage {
+
+    private final int width;
+    private final int height;
+    private final byte[] pixels;
+
+    public CachedPageImage(int width, int height, byte[] pixels) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("pixels too short for " + width + "x" + height + ": " + pixels.length);
+        }
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return 像素数据，调用方不应修改
+     */
+    public byte[] getPixels() {
+        return pixels;
+    }
+}
@@ -0,0 +1,190 @@
+package com.trekkiii.pdf.table.analysis.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 渲染并转换为灰度后的页面图像缓存，键为（页面键，渲染DPI）。
+ * <p>
+ * 页面键通常为{@link com.trekkiii.pdf.table.analysis.utils.CosDigest#hashPage}计算的页面内容哈希，
+ * 同一页面出现在不同文档中或文档被增量修改后，未变化的页面仍可命中。
+ * 调整{@code bitThreshold}、{@code approxDistScaleFactor}等参数后重复解析同一份文档时，可以跳过最耗时的页面渲染。
+ * <ul>
+ * <li>内存层：按最近最少使用(LRU)淘汰，总像素字节数不超过{@code maxMemoryBytes}</li>
+ * <li>磁盘层（可选）：每个页面一个原始灰度文件，写入时同步落盘，读取时使用内存映射；磁盘层不自动淘汰，由调用方管理目录</li>
+ * </ul>
+ * 线程安全，可以在多个解析器之间共享。
+ */
+public class PageImageCache {
+
+    private static final Logger logger = Logger.getLogger(PageImageCache.class.getName());
+
+    private static final int MAGIC = 0x50494D47;// "PIMG"
+    private static final int HEADER_BYTES = 12;// magic, width, height
+
+    private final long maxMemoryBytes;
+    private final Path diskDir;
+    private final LinkedHashMap<String, CachedPageImage> memory = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBytes;
+
+    /**
+     * 只使用内存层
+     *
+     * @param maxMemoryBytes 内存层最多保留的像素字节数
+     */
+    public PageImageCache(long maxMemoryBytes) {
+        this(maxMemoryBytes, null);
+    }
+
+    /**
+     * @param maxMemoryBytes 内存层最多保留的像素字节数
+     * @param diskDir        磁盘层目录，为null时不使用磁盘层
+     */
+    public PageImageCache(long maxMemoryBytes, Path diskDir) {
+        if (maxMemoryBytes < 0) {
+            throw new IllegalArgumentException("maxMemoryBytes must be >= 0: " + maxMemoryBytes);
+        }
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.diskDir = diskDir;
+    }
+
+    /**
+     * 查找缓存的页面图像，先查内存层，再查磁盘层（命中后放入内存层）
+     *
+     * @param pageKey 页面键
+     * @param dpi     渲染DPI
+     * @return 缓存的图像，未命中时返回null
+     */
+    public CachedPageImage get(String pageKey, int dpi) {
+        String key = key(pageKey, dpi);
+        synchronized (memory) {
+            CachedPageImage image = memory.get(key);
+            if (image != null) {
+                return image;
+            }
+        }
+        if (diskDir == null) {
+            return null;
+        }
+        CachedPageImage image = readFromDisk(key);
+        if (image != null) {
+            putInMemory(key, image);
+        }
+        return image;
+    }
+
+    /**
+     * 缓存页面图像，开启磁盘层时同时写入磁盘
+     *
+     * @param pageKey 页面键
+     * @param dpi     渲染DPI
+     * @param image   页面图像
+     */
+    public void put(String pageKey, int dpi, CachedPageImage image) {
+        String key = key(pageKey, dpi);
+        putInMemory(key, image);
+        if (diskDir != null) {
+            writeToDisk(key, image);
+        }
+    }
+
+    /**
+     * @return 内存层当前保留的像素字节数
+     */
+    public long getMemoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    /**
+     * 清空内存层，磁盘层文件保留
+     */
+    public void clearMemory() {
+        synchronized (memory) {
+            memory.clear();
+            memoryBytes = 0;
+        }
+    }
+
+    private void putInMemory(String key, CachedPageImage image) {
+        long size = image.getPixels().length;
+        if (size > maxMemoryBytes) {
+            return;
+        }
+        synchronized (memory) {
+            CachedPageImage previous = memory.put(key, image);
+            if (previous != null) {
+                memoryBytes -= previous.getPixels().length;
+            }
+            memoryBytes += size;
+
+            Iterator<Map.Entry<String, CachedPageImage>> it = memory.entrySet().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {// 按访问顺序淘汰最久未使用的页面
+                memoryBytes -= it.next().getValue().getPixels().length;
+                it.remove();
+            }
+        }
+    }
+
+    private CachedPageImage readFromDisk(String key) {
+        Path file = diskDir.resolve(key + ".gray");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_BYTES || buffer.getInt() != MAGIC) {
+                return null;
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            if (buffer.remaining() != width * height) {
+                return null;
+            }
+            byte[] pixels = new byte[width * height];
+            buffer.get(pixels);
+            return new CachedPageImage(width, height, pixels);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot read cached page image " + file, e);
+            return null;
+        }
+    }
+
+    private void writeToDisk(String key, CachedPageImage image) {
+        Path file = diskDir.resolve(key + ".gray");
+        try {
+            Files.createDirectories(diskDir);
+            Path tmp = Files.createTempFile(diskDir, key, ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(image.getWidth()).putInt(image.getHeight()).flip();
+                ByteBuffer pixels = ByteBuffer.wrap(image.getPixels(), 0, image.getWidth() * image.getHeight());
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                while (pixels.hasRemaining()) {
+                    channel.write(pixels);
+                }
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot write cached page image " + file, e);
+        }
+    }
+
+    private static String key(String pageKey, int dpi) {
+        return pageKey + "-" + dpi;
+    }
+}
@@ -0,0 +1,119 @@
+package com.trekkiii.pdf.table.analysis.cache;
+
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.ResourceCache;
+import org.apache.pdfbox.pdmodel.documentinterchange.markedcontent.PDPropertyList;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColorSpace;
+import org.apache.pdfbox.pdmodel.graphics.pattern.PDAbstractPattern;
+import org.apache.pdfbox.pdmodel.graphics.shading.PDShading;
+import org.apache.pdfbox.pdmodel.graphics.state.PDExtendedGraphicsState;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 只在单个页面内有效的PDF资源缓存。
+ * <p>
+ * PDFBox默认的{@link DefaultResourceCache}用软引用保留整个文档中用到的字体、图像等资源，直到内存不足时才释放，
+ * 处理大文档时堆内存随页数增长。解析器在处理完每个页面后调用{@link #clear()}，
+ * 同一页面内重复引用的资源仍然只解析一次，而堆内存只与单个页面有关。
+ * <p>
+ * 通过{@code document.setResourceCache(new PageResourceCache())}安装后，{@code PdfTableParser}会在每页结束时自动清空。
+ * 非线程安全，与PDDocument一样只能在一个线程中使用。
+ */
+public class PageResourceCache implements ResourceCache {
+
+    private final Map<COSObject, PDFont> fonts = new HashMap<>();
+    private final Map<COSObject, PDColorSpace> colorSpaces = new HashMap<>();
+    private final Map<COSObject, PDXObject> xobjects = new HashMap<>();
+    private final Map<COSObject, PDExtendedGraphicsState> extGStates = new HashMap<>();
+    private final Map<COSObject, PDShading> shadings = new HashMap<>();
+    private final Map<COSObject, PDAbstractPattern> patterns = new HashMap<>();
+    private final Map<COSObject, PDPropertyList> properties = new HashMap<>();
+
+    /**
+     * 释放当前页面缓存的所有资源
+     */
+    public void clear() {
+        fonts.clear();
+        colorSpaces.clear();
+        xobjects.clear();
+        extGStates.clear();
+        shadings.clear();
+        patterns.clear();
+        properties.clear();
+    }
+
+    @Override
+    public PDFont getFont(COSObject indirect) {
+        return fonts.get(indirect);
+    }
+
+    @Override
+    public PDColorSpace getColorSpace(COSObject indirect) {
+        return colorSpaces.get(indirect);
+    }
+
+    @Override
+    public PDExtendedGraphicsState getExtGState(COSObject indirect) {
+        return extGStates.get(indirect);
+    }
+
+    @Override
+    public PDShading getShading(COSObject indirect) {
+        return shadings.get(indirect);
+    }
+
+    @Override
+    public PDAbstractPattern getPattern(COSObject indirect) {
+        return patterns.get(indirect);
+    }
+
+    @Override
+    public PDPropertyList getProperties(COSObject indirect) {
+        return properties.get(indirect);
+    }
+
+    @Override
+    public PDXObject getXObject(COSObject indirect) {
+        return xobjects.get(indirect);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDFont font) {
+        fonts.put(indirect, font);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDColorSpace colorSpace) {
+        colorSpaces.put(indirect, colorSpace);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDExtendedGraphicsState extGState) {
+        extGStates.put(indirect, extGState);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDShading shading) {
+        shadings.put(indirect, shading);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDAbstractPattern pattern) {
+        patterns.put(indirect, pattern);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDPropertyList propertyList) {
+        properties.put(indirect, propertyList);
+    }
+
+    @Override
+    public void put(COSObject indirect, PDXObject xobject) {
+        xobjects.put(indirect, xobject);
+    }
+}
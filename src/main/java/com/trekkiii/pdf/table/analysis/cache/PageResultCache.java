@@ -0,0 +1,348 @@
+package com.trekkiii.pdf.table.analysis.cache;
+
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * 页面解析结果的磁盘缓存，键为页面指纹（页面内容流、资源以及影响识别结果的设置项的哈希）。
+ * <p>
+ * 重复解析只修改了少数页面的新版本文档时，未修改的页面直接读取上次的单元格文本和坐标，不再渲染、识别和提取文本。
+ * <ul>
+ * <li>数据文件只追加不修改，同一指纹再次写入时以最后一条记录为准；每条记录带CRC32校验</li>
+ * <li>索引（指纹到记录位置）保存在内存中，打开时顺序读取各记录头重建，不读取记录内容；
+ * 末尾不完整的记录（写入时进程退出）会被截掉</li>
+ * <li>解析失败的页面不缓存</li>
+ * </ul>
+ * 线程安全，可以在多个解析器之间共享；同一个文件同时只能由一个实例打开。
+ */
+public class PageResultCache implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(PageResultCache.class.getName());
+
+    private static final int FILE_MAGIC = 0x50524553;// "PRES"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER_BYTES = 8;// magic, version
+    private static final int RECORD_MAGIC = 0x52454331;// "REC1"
+    private static final int KEY_BYTES = 32;// SHA-256
+    private static final int RECORD_HEADER_BYTES = 4 + KEY_BYTES + 4 + 4;// magic, key, length, crc
+
+    private final Path file;
+    private final FileChannel channel;
+    private final Map<String, long[]> index = new HashMap<>();// 指纹 -> {记录内容位置, 长度}
+    private long size;
+    private long hits;
+    private long misses;
+
+    /**
+     * 打开缓存文件，文件不存在时创建
+     *
+     * @param file 缓存文件
+     * @throws IOException 无法读写文件，或文件不是缓存文件
+     */
+    public PageResultCache(Path file) throws IOException {
+        this.file = file;
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            load();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 查找页面的解析结果
+     *
+     * @param fingerprint 页面指纹，64位十六进制SHA-256
+     * @param pageNumber  返回结果使用的页码，第一页页码为1
+     * @return 缓存的解析结果，未命中或记录损坏时返回null
+     */
+    public ParsedTablePage get(String fingerprint, int pageNumber) {
+        long[] entry;
+        synchronized (index) {
+            entry = index.get(fingerprint);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) entry[1]);
+            readFully(buffer, entry[0]);
+            CRC32 crc = new CRC32();
+            crc.update(buffer.array(), 0, buffer.limit());
+            if ((int) crc.getValue() != readInt(entry[0] - 4)) {
+                logger.warning("corrupt page result record in " + file);
+                return miss(fingerprint);
+            }
+            ParsedTablePage page = decode(buffer.array(), pageNumber);
+            synchronized (index) {
+                hits++;
+            }
+            return page;
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "cannot read page result from " + file, e);
+            return miss(fingerprint);
+        }
+    }
+
+    /**
+     * 追加页面的解析结果，解析失败的页面被忽略
+     *
+     * @param fingerprint 页面指纹，64位十六进制SHA-256
+     * @param page        解析结果
+     */
+    public void put(String fingerprint, ParsedTablePage page) {
+        if (page.hasError()) {
+            return;
+        }
+        byte[] payload = encode(page);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        header.putInt(RECORD_MAGIC).put(hexToBytes(fingerprint)).putInt(payload.length).putInt((int) crc.getValue()).flip();
+        ByteBuffer body = ByteBuffer.wrap(payload);
+        synchronized (index) {
+            try {
+                long position = size;
+                while (header.hasRemaining()) {
+                    position += channel.write(header, position);
+                }
+                while (body.hasRemaining()) {
+                    position += channel.write(body, position);
+                }
+                index.put(fingerprint, new long[]{size + RECORD_HEADER_BYTES, payload.length});
+                size = position;
+            } catch (IOException e) {
+                logger.log(Level.WARNING, "cannot write page result to " + file, e);
+            }
+        }
+    }
+
+    /**
+     * @return 缓存的页面数量
+     */
+    public int size() {
+        synchronized (index) {
+            return index.size();
+        }
+    }
+
+    public long getHitCount() {
+        synchronized (index) {
+            return hits;
+        }
+    }
+
+    public long getMissCount() {
+        synchronized (index) {
+            return misses;
+        }
+    }
+
+    /**
+     * 将已追加的记录写入磁盘后关闭文件
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ParsedTablePage miss(String fingerprint) {
+        synchronized (index) {
+            misses++;
+            index.remove(fingerprint);
+        }
+        return null;
+    }
+
+    /**
+     * 校验文件头并从记录头重建索引
+     */
+    private void load() throws IOException {
+        long fileSize = channel.size();
+        if (fileSize == 0) {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_BYTES);
+            header.putInt(FILE_MAGIC).putInt(VERSION).flip();
+            while (header.hasRemaining()) {
+                channel.write(header, FILE_HEADER_BYTES - header.remaining());
+            }
+            size = FILE_HEADER_BYTES;
+            return;
+        }
+        if (fileSize < FILE_HEADER_BYTES || readInt(0) != FILE_MAGIC) {
+            throw new IOException("not a page result cache: " + file);
+        }
+        if (readInt(4) != VERSION) {
+            throw new IOException("unsupported page result cache version " + readInt(4) + ": " + file);
+        }
+
+        long position = FILE_HEADER_BYTES;
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        byte[] key = new byte[KEY_BYTES];
+        while (position + RECORD_HEADER_BYTES <= fileSize) {
+            header.clear();
+            readFully(header, position);
+            if (header.getInt() != RECORD_MAGIC) {
+                break;
+            }
+            header.get(key);
+            int length = header.getInt();
+            long end = position + RECORD_HEADER_BYTES + length;
+            if (length < 0 || end > fileSize) {
+                break;
+            }
+            index.put(bytesToHex(key), new long[]{position + RECORD_HEADER_BYTES, length});
+            position = end;
+        }
+        if (position < fileSize) {// 最后一条记录没有写完整
+            logger.warning("truncating incomplete page result record at " + position + " in " + file);
+            channel.truncate(position);
+        }
+        size = position;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int n = channel.read(buffer, position + buffer.position());
+            if (n < 0) {
+                throw new EOFException("unexpected end of " + file);
+            }
+        }
+        buffer.flip();
+    }
+
+    private int readInt(long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        readFully(buffer, position);
+        return buffer.getInt();
+    }
+
+    /**
+     * 记录内容：DPI、表格数；每个表格的外框、行数，每行的单元格数，每个单元格的坐标、网格位置和文本
+     */
+    private static byte[] encode(ParsedTablePage page) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + page.getCellCount() * 48);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(page.getDpi());
+            out.writeInt(page.getTables().size());
+            for (ParsedTable table : page.getTables()) {
+                out.writeInt(table.getX());
+                out.writeInt(table.getY());
+                out.writeInt(table.getWidth());
+                out.writeInt(table.getHeight());
+                CompactTable cells = table.getCells();
+                out.writeInt(cells.getRowCount());
+                for (int row = 0; row < cells.getRowCount(); row++) {
+                    int start = cells.getRowStart(row);
+                    int rowSize = cells.getRowSize(row);
+                    out.writeInt(rowSize);
+                    for (int cell = start; cell < start + rowSize; cell++) {
+                        out.writeInt(cells.getX(cell));
+                        out.writeInt(cells.getY(cell));
+                        out.writeInt(cells.getWidth(cell));
+                        out.writeInt(cells.getHeight(cell));
+                        out.writeInt(cells.getGridRow(cell));
+                        out.writeInt(cells.getGridColumn(cell));
+                        out.writeInt(cells.getRowSpan(cell));
+                        out.writeInt(cells.getColumnSpan(cell));
+                        int length = cells.getTextLength(cell);
+                        out.writeInt(length);
+                        for (int i = 0; i < length; i++) {
+                            out.writeChar(cells.getChar(cell, i));
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException(e);// ByteArrayOutputStream不会抛出IOException
+        }
+        return bytes.toByteArray();
+    }
+
+    private static ParsedTablePage decode(byte[] payload, int pageNumber) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        ParsedTablePage page = new ParsedTablePage(pageNumber);
+        page.setDpi(in.readInt());
+        int tableCount = in.readInt();
+        StringBuilder text = new StringBuilder();
+        for (int t = 0; t < tableCount; t++) {
+            ParsedTable table = page.addTable(in.readInt(), in.readInt(), in.readInt(), in.readInt());
+            CompactTable cells = table.getCells();
+            int rowCount = in.readInt();
+            for (int row = 0; row < rowCount; row++) {
+                cells.startRow();
+                int rowSize = in.readInt();
+                for (int c = 0; c < rowSize; c++) {
+                    int x = in.readInt();
+                    int y = in.readInt();
+                    int width = in.readInt();
+                    int height = in.readInt();
+                    int gridRow = in.readInt();
+                    int gridColumn = in.readInt();
+                    int rowSpan = in.readInt();
+                    int columnSpan = in.readInt();
+                    int length = in.readInt();
+                    text.setLength(0);
+                    for (int i = 0; i < length; i++) {
+                        text.append(in.readChar());
+                    }
+                    int cell = cells.addCell(text, x, y, width, height);
+                    cells.setGridPosition(cell, gridRow, gridColumn, rowSpan, columnSpan);
+                }
+            }
+            cells.trimToSize();
+        }
+        return page;
+    }
+
+    private static byte[] hexToBytes(String hex) {
+        if (hex.length() != KEY_BYTES * 2) {
+            throw new IllegalArgumentException("fingerprint must be " + KEY_BYTES * 2 + " hex digits: " + hex);
+        }
+        byte[] bytes = new byte[KEY_BYTES];
+        for (int i = 0; i < KEY_BYTES; i++) {
+            int hi = Character.digit(hex.charAt(2 * i), 16);
+            int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+            if (hi < 0 || lo < 0) {
+                throw new IllegalArgumentException("fingerprint must be hex: " + hex);
+            }
+            bytes[i] = (byte) (hi << 4 | lo);
+        }
+        return bytes;
+    }
+
+    private static String bytesToHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,291 @@
+package com.trekkiii.pdf.table.analysis.extract;
+
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 在文档中抽样的几个页面上试用所有候选的识别方法，选出足够准确的方法中最快的一个，用于文档的其余页面。
+ * <p>
+ * 没有标准答案，准确率以参考方法（{@code settings.getTableExtractor()}）的结果为准：两边的单元格IoU不小于{@link #MIN_IOU}
+ * 即视为一致，一致率为精确率和召回率的调和平均(F1)。耗时包括需要图像的方法的渲染时间，第一个抽样页面作为预热不计时。
+ * 以下情况直接使用参考方法：
+ * <ul>
+ * <li>参考方法在抽样页面中没有识别出单元格（没有判断准确率的依据）</li>
+ * <li>其它方法的一致率都低于下限，或识别时抛出异常</li>
+ * </ul>
+ */
+public class ExtractorSelector {
+
+    private static final Logger logger = Logger.getLogger(ExtractorSelector.class.getName());
+
+    // 两个单元格视为同一个单元格的最小IoU
+    static final double MIN_IOU = 0.5;
+
+    private final Map<String, TableExtractor> candidates;
+    private final String reference;
+    private final double minAgreement;
+
+    /**
+     * @param candidates   候选的识别方法，按名称；必须包含参考方法
+     * @param reference    参考方法的名称
+     * @param minAgreement 与参考方法的最低一致率，0到1之间
+     */
+    public ExtractorSelector(Map<String, TableExtractor> candidates, String reference, double minAgreement) {
+        if (!candidates.containsKey(reference)) {
+            throw new IllegalArgumentException("reference extractor is not a candidate: " + reference);
+        }
+        this.candidates = candidates;
+        this.reference = reference;
+        this.minAgreement = minAgreement;
+    }
+
+    /**
+     * @param samples 抽样页面
+     * @return 选择结果
+     */
+    public Selection select(List<Sample> samples) {
+        List<Score> scores = new ArrayList<>(candidates.size());
+        List<List<Rect>> expected = null;
+        List<List<List<Rect>>> results = new ArrayList<>(candidates.size());
+        Map<String, List<List<DetectedTable>>> tables = new HashMap<>();
+        for (Map.Entry<String, TableExtractor> candidate : candidates.entrySet()) {
+            List<List<DetectedTable>> pageTables = new ArrayList<>(samples.size());
+            long nanos = run(candidate.getKey(), candidate.getValue(), samples, pageTables);
+            scores.add(new Score(candidate.getKey(), nanos));
+            List<List<Rect>> cells = nanos < 0 ? null : cells(pageTables);
+            results.add(cells);
+            if (nanos >= 0) {
+                tables.put(candidate.getKey(), pageTables);
+            }
+            if (candidate.getKey().equals(reference)) {
+                expected = cells;
+            }
+        }
+        if (expected == null || count(expected) == 0) {
+            return new Selection(reference, candidates.get(reference), scores, tables.get(reference));
+        }
+
+        Score best = null;
+        for (int i = 0; i < scores.size(); i++) {
+            Score score = scores.get(i);
+            if (results.get(i) == null) {
+                continue;
+            }
+            score.agreement = agreement(expected, results.get(i));
+            if (score.agreement >= minAgreement && (best == null || score.nanos < best.nanos)) {
+                best = score;
+            }
+        }
+        String name = best == null ? reference : best.name;
+        return new Selection(name, candidates.get(name), scores, tables.get(name));
+    }
+
+    /**
+     * 在所有抽样页面上运行一个识别方法
+     *
+     * @param tables 输出每个页面识别出的表格
+     * @return 耗时（纳秒），识别失败时返回-1
+     */
+    private static long run(String name, TableExtractor extractor, List<Sample> samples, List<List<DetectedTable>> tables) {
+        long nanos = 0;
+        for (int i = 0; i < samples.size(); i++) {
+            Sample sample = samples.get(i);
+            long start = System.nanoTime();
+            List<DetectedTable> pageTables;
+            try {
+                pageTables = extractor.extract(sample.page, extractor.requiresImage() ? sample.image : null, null);
+            } catch (IOException | RuntimeException e) {
+                logger.log(Level.WARNING, "table extractor " + name + " failed on sample page", e);
+                return -1;
+            }
+            long elapsed = System.nanoTime() - start + (extractor.requiresImage() ? sample.renderNanos : 0);
+            if (i > 0 || samples.size() == 1) {// 第一个页面用于预热
+                nanos += elapsed;
+            }
+            tables.add(pageTables);
+        }
+        return nanos;
+    }
+
+    /**
+     * @return 每个页面所有表格的单元格
+     */
+    private static List<List<Rect>> cells(List<List<DetectedTable>> tables) {
+        List<List<Rect>> cells = new ArrayList<>(tables.size());
+        for (List<DetectedTable> pageTables : tables) {
+            List<Rect> pageCells = new ArrayList<>();
+            for (DetectedTable table : pageTables) {
+                pageCells.addAll(table.getCells());
+            }
+            cells.add(pageCells);
+        }
+        return cells;
+    }
+
+    /**
+     * @return 精确率和召回率的调和平均，两边都没有单元格时为1
+     */
+    static double agreement(List<List<Rect>> expected, List<List<Rect>> actual) {
+        int expectedCount = count(expected);
+        int actualCount = count(actual);
+        if (expectedCount == 0 || actualCount == 0) {
+            return expectedCount == actualCount ? 1 : 0;
+        }
+        int recalled = 0;
+        int precise = 0;
+        for (int page = 0; page < expected.size(); page++) {
+            recalled += matched(expected.get(page), actual.get(page));
+            precise += matched(actual.get(page), expected.get(page));
+        }
+        double recall = recalled / (double) expectedCount;
+        double precision = precise / (double) actualCount;
+        return recall + precision == 0 ? 0 : 2 * recall * precision / (recall + precision);
+    }
+
+    /**
+     * @return {@code cells}中与{@code others}的某个单元格IoU不小于{@link #MIN_IOU}的数量
+     */
+    private static int matched(List<Rect> cells, List<Rect> others) {
+        int count = 0;
+        for (Rect cell : cells) {
+            for (Rect other : others) {
+                if (iou(cell, other) >= MIN_IOU) {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static double iou(Rect a, Rect b) {
+        int x1 = Math.max(a.x, b.x);
+        int y1 = Math.max(a.y, b.y);
+        int x2 = Math.min(a.x + a.width, b.x + b.width);
+        int y2 = Math.min(a.y + a.height, b.y + b.height);
+        if (x2 <= x1 || y2 <= y1) {
+            return 0;
+        }
+        double intersection = (double) (x2 - x1) * (y2 - y1);
+        return intersection / (a.area() + b.area() - intersection);
+    }
+
+    private static int count(List<List<Rect>> cells) {
+        int count = 0;
+        for (List<Rect> page : cells) {
+            count += page.size();
+        }
+        return count;
+    }
+
+    /**
+     * 抽样页面：PDF页面、以{@code settings.getPdfRenderingDpi()}渲染的灰度图像以及渲染耗时
+     */
+    public static class Sample {
+
+        private final PDPage page;
+        private final Mat image;
+        private final long renderNanos;
+
+        public Sample(PDPage page, Mat image, long renderNanos) {
+            this.page = page;
+            this.image = image;
+            this.renderNanos = renderNanos;
+        }
+    }
+
+    /**
+     * 一个候选方法在抽样页面上的耗时和一致率
+     */
+    public static class Score {
+
+        private final String name;
+        private final long nanos;
+        private double agreement = Double.NaN;
+
+        Score(String name, long nanos) {
+            this.name = name;
+            this.nanos = nanos;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return 计时页面的总耗时（纳秒），识别失败时为-1
+         */
+        public long getNanos() {
+            return nanos;
+        }
+
+        /**
+         * @return 与参考方法的一致率，未比较时为NaN
+         */
+        public double getAgreement() {
+            return agreement;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %.1f ms, agreement %.3f", name, nanos / 1e6, agreement);
+        }
+    }
+
+    /**
+     * 选择结果
+     */
+    public static class Selection {
+
+        private final String name;
+        private final TableExtractor extractor;
+        private final List<Score> scores;
+        private final List<List<DetectedTable>> sampleTables;// 选中的方法在各抽样页面上的结果，识别失败时为null
+
+        Selection(String name, TableExtractor extractor, List<Score> scores, List<List<DetectedTable>> sampleTables) {
+            this.name = name;
+            this.extractor = extractor;
+            this.scores = Collections.unmodifiableList(scores);
+            this.sampleTables = sampleTables;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public TableExtractor getExtractor() {
+            return extractor;
+        }
+
+        /**
+         * @return 所有候选方法的得分，按候选顺序
+         */
+        public List<Score> getScores() {
+            return scores;
+        }
+
+        /**
+         * @param sample 抽样页面的序号，与{@link #select(List)}的参数顺序一致
+         * @return 选中的方法在该抽样页面上识别出的表格，选中的是参考方法且参考方法识别失败时返回null
+         */
+        public List<DetectedTable> getSampleTables(int sample) {
+            return sampleTables == null ? null : sampleTables.get(sample);
+        }
+
+        @Override
+        public String toString() {
+            return name + " " + scores;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.trekkiii.pdf.table.analysis.extract;
+
+import com.trekkiii.pdf.table.analysis.metrics.StageTimer;
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.opencv.core.Mat;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 单元格识别方法的扩展接口，由{@link TableExtractors}按名称注册和创建。
+ * <p>
+ * 输入为PDF页面和（{@link #requiresImage()}为true时）渲染后的页面灰度图像，输出为表格及其单元格的边界矩形，
+ * 单位为{@code settings.getPdfRenderingDpi()}下的像素。实现不能保存单个页面的状态，同一个实例会被多个线程共享。
+ */
+public interface TableExtractor {
+
+    /**
+     * @return 是否需要页面图像，返回false时解析器不渲染页面，{@link #extract}的图像参数为null
+     */
+    default boolean requiresImage() {
+        return true;
+    }
+
+    /**
+     * 识别页面中的表格。
+     * <p>
+     * 开启自适应DPI时图像可能是较低DPI下的整个页面，或只包含页面中的一个区域，返回的坐标均相对于图像本身
+     *
+     * @param page         PDF页面
+     * @param grayscaleMat 页面灰度图像，{@link #requiresImage()}为false时为null
+     * @param timer        当前页面的计时器，可以为null
+     * @return 按外框(y, x)排序的表格列表，不包含没有单元格的表格
+     * @throws IOException 无法读取页面内容
+     */
+    List<DetectedTable> extract(PDPage page, Mat grayscaleMat, StageTimer timer) throws IOException;
+}
@@ -0,0 +1,44 @@
+package com.trekkiii.pdf.table.analysis.extract;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+
+import java.util.function.Function;
+
+/**
+ * 创建{@link TableExtractor}的工厂。
+ * <p>
+ * 实现类在{@code META-INF/services/com.trekkiii.pdf.table.analysis.extract.TableExtractorProvider}中声明后，
+ * 由{@link TableExtractors}通过{@link java.util.ServiceLoader}自动注册；也可以调用{@link TableExtractors#register}注册
+ */
+public interface TableExtractorProvider {
+
+    /**
+     * @return 识别方法的名称，即{@code settings.getTableExtractor()}的取值
+     */
+    String getName();
+
+    /**
+     * @param settings 解析设置
+     * @return 识别器，可以被多个线程共享
+     */
+    TableExtractor create(Settings settings);
+
+    /**
+     * @param name    识别方法的名称
+     * @param factory 按解析设置创建识别器
+     * @return provider
+     */
+    static TableExtractorProvider of(String name, Function<Settings, ? extends TableExtractor> factory) {
+        return new TableExtractorProvider() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public TableExtractor create(Settings settings) {
+                return factory.apply(settings);
+            }
+        };
+    }
+}
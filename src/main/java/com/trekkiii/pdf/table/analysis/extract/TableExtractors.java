@@ -0,0 +1,90 @@
+package com.trekkiii.pdf.table.analysis.extract;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.opencv.ExtractionMethod;
+import com.trekkiii.pdf.table.analysis.vector.VectorExtractor;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * 按名称注册的{@link TableExtractor}。
+ * <p>
+ * 内置的识别方法：
+ * <ul>
+ * <li>{@code contours}：{@link com.trekkiii.pdf.table.analysis.opencv.OpenCVExtractor}，默认</li>
+ * <li>{@code morphology}：{@link com.trekkiii.pdf.table.analysis.opencv.MorphologyExtractor}</li>
+ * <li>{@code vector}：{@link VectorExtractor}，不渲染页面，只适用于表格线为矢量路径的PDF</li>
+ * </ul>
+ * 类路径中通过{@link ServiceLoader}声明的{@link TableExtractorProvider}在首次使用时注册，与内置方法同名时覆盖内置方法。
+ */
+public final class TableExtractors {
+
+    private static final Logger logger = Logger.getLogger(TableExtractors.class.getName());
+
+    public static final String VECTOR = "vector";
+
+    private static final Map<String, TableExtractorProvider> PROVIDERS = new LinkedHashMap<>();
+
+    static {
+        for (ExtractionMethod method : ExtractionMethod.values()) {
+            register(TableExtractorProvider.of(method.getName(), method::create));
+        }
+        register(TableExtractorProvider.of(VECTOR, VectorExtractor::new));
+        try {
+            for (TableExtractorProvider provider : ServiceLoader.load(TableExtractorProvider.class)) {
+                register(provider);
+            }
+        } catch (ServiceConfigurationError e) {
+            logger.log(Level.WARNING, "cannot load table extractor providers", e);
+        }
+    }
+
+    private TableExtractors() {
+    }
+
+    /**
+     * 注册识别方法，已有同名的方法时替换
+     *
+     * @param provider 识别方法
+     */
+    public static void register(TableExtractorProvider provider) {
+        synchronized (PROVIDERS) {
+            PROVIDERS.put(provider.getName(), provider);
+        }
+    }
+
+    /**
+     * @return 已注册的识别方法名称，按注册顺序
+     */
+    public static List<String> names() {
+        synchronized (PROVIDERS) {
+            return new ArrayList<>(PROVIDERS.keySet());
+        }
+    }
+
+    /**
+     * 创建识别器
+     *
+     * @param name     识别方法的名称
+     * @param settings 解析设置
+     * @return 识别器
+     * @throws IllegalArgumentException 没有注册该名称
+     */
+    public static TableExtractor create(String name, Settings settings) {
+        TableExtractorProvider provider;
+        synchronized (PROVIDERS) {
+            provider = PROVIDERS.get(name);
+        }
+        if (provider == null) {
+            throw new IllegalArgumentException("unknown table extractor: " + name + ", registered: " + names());
+        }
+        return provider.create(settings);
+    }
+}
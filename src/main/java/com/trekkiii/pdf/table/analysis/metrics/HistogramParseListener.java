@@ -0,0 +1,148 @@
+package com.trekkiii.pdf.table.analysis.metrics;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 将解析指标记录在内存直方图中的{@link ParseListener}，可以定期读取（抓取）后导出到监控系统。
+ * <p>
+ * 线程安全，同一个实例可以在多个解析器、多个线程之间共享。
+ */
+public class HistogramParseListener implements ParseListener {
+
+    private final Map<Stage, Histogram> stageNanos = new EnumMap<>(Stage.class);
+    private final Map<Stage, Histogram> stageBytes = new EnumMap<>(Stage.class);
+    private final Histogram pageNanos = new Histogram();
+    private final Histogram cellsPerPage = new Histogram();
+    private final Histogram tableContoursPerPage = new Histogram();
+    private final Histogram cellContoursPerPage = new Histogram();
+    private final Histogram pixelsPerPage = new Histogram();
+    private final AtomicLong skippedPages = new AtomicLong();
+
+    public HistogramParseListener() {
+        this(false);
+    }
+
+    /**
+     * @param recordAllocations 为true时开启JVM的线程内存分配统计（见{@link StageTimer#enableAllocationTracking()}，影响整个JVM），
+     *                          否则只在JVM已开启统计时记录各阶段的内存分配量
+     */
+    public HistogramParseListener(boolean recordAllocations) {
+        if (recordAllocations) {
+            StageTimer.enableAllocationTracking();
+        }
+        for (Stage stage : Stage.values()) {
+            stageNanos.put(stage, new Histogram());
+            stageBytes.put(stage, new Histogram());
+        }
+    }
+
+    @Override
+    public void onStage(int pageNumber, Stage stage, long durationNanos, long allocatedBytes) {
+        stageNanos.get(stage).record(durationNanos);
+        if (allocatedBytes >= 0) {
+            stageBytes.get(stage).record(allocatedBytes);
+        }
+    }
+
+    @Override
+    public void onPageRendered(int pageNumber, int width, int height) {
+        pixelsPerPage.record((long) width * height);
+    }
+
+    @Override
+    public void onContoursFound(int pageNumber, int tableContours, int cellContours) {
+        tableContoursPerPage.record(tableContours);
+        cellContoursPerPage.record(cellContours);
+    }
+
+    @Override
+    public void onPageSkipped(int pageNumber) {
+        skippedPages.incrementAndGet();
+    }
+
+    @Override
+    public void onPageParsed(int pageNumber, int cells, long durationNanos) {
+        pageNanos.record(durationNanos);
+        cellsPerPage.record(cells);
+    }
+
+    /**
+     * @param stage 阶段
+     * @return 该阶段每页耗时（纳秒）的直方图
+     */
+    public Histogram getStageNanos(Stage stage) {
+        return stageNanos.get(stage);
+    }
+
+    /**
+     * @param stage 阶段
+     * @return 该阶段每页分配的堆内存（字节）的直方图，未开启内存分配统计时为空
+     */
+    public Histogram getStageAllocatedBytes(Stage stage) {
+        return stageBytes.get(stage);
+    }
+
+    public Histogram getPageNanos() {
+        return pageNanos;
+    }
+
+    public Histogram getCellsPerPage() {
+        return cellsPerPage;
+    }
+
+    public Histogram getTableContoursPerPage() {
+        return tableContoursPerPage;
+    }
+
+    public Histogram getCellContoursPerPage() {
+        return cellContoursPerPage;
+    }
+
+    public Histogram getPixelsPerPage() {
+        return pixelsPerPage;
+    }
+
+    /**
+     * @return 预过滤跳过的页面数
+     */
+    public long getSkippedPageCount() {
+        return skippedPages.get();
+    }
+
+    /**
+     * 清空所有直方图
+     */
+    public void reset() {
+        for (Stage stage : Stage.values()) {
+            stageNanos.get(stage).reset();
+            stageBytes.get(stage).reset();
+        }
+        pageNanos.reset();
+        cellsPerPage.reset();
+        tableContoursPerPage.reset();
+        cellContoursPerPage.reset();
+        pixelsPerPage.reset();
+        skippedPages.set(0);
+    }
+
+    /**
+     * 以文本形式输出所有直方图，每行一个
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("page_nanos ").append(pageNanos).append('\n');
+        for (Stage stage : Stage.values()) {
+            sb.append("stage_nanos{").append(stage).append("} ").append(stageNanos.get(stage)).append('\n');
+            sb.append("stage_bytes{").append(stage).append("} ").append(stageBytes.get(stage)).append('\n');
+        }
+        sb.append("cells_per_page ").append(cellsPerPage).append('\n');
+        sb.append("table_contours_per_page ").append(tableContoursPerPage).append('\n');
+        sb.append("cell_contours_per_page ").append(cellContoursPerPage).append('\n');
+        sb.append("pixels_per_page ").append(pixelsPerPage).append('\n');
+        sb.append("skipped_pages ").append(skippedPages.get()).append('\n');
+        return sb.toString();
+    }
+}
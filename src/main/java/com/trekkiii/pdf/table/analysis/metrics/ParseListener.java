@@ -0,0 +1,87 @@
+package com.trekkiii.pdf.table.analysis.metrics;
+
+/**
+ * 页面解析过程的监听器，用于采集各阶段耗时、内存分配量以及识别结果的规模。
+ * <p>
+ * 所有回调都在解析页面的线程中同步调用，并行解析时会被多个线程同时调用，实现需保证线程安全。
+ * 回调中应只做计数之类的轻量操作。
+ * <p>
+ * {@link #NOOP}是默认实现，{@link #isEnabled()}返回false，解析器此时不会读取时钟或分配计数器。
+ */
+public interface ParseListener {
+
+    /**
+     * 不做任何事情的监听器
+     */
+    ParseListener NOOP = new ParseListener() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+    };
+
+    /**
+     * @return 是否需要采集数据，返回false时不会调用其它方法
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * 某个阶段完成
+     *
+     * @param pageNumber     页码，第一页页码为1
+     * @param stage          阶段
+     * @param durationNanos  耗时，单位纳秒
+     * @param allocatedBytes 当前线程在该阶段分配的Java堆内存（字节），JVM不支持或未开启统计时为-1。
+     *                       不包括OpenCV Mat的native内存
+     */
+    default void onStage(int pageNumber, Stage stage, long durationNanos, long allocatedBytes) {
+    }
+
+    /**
+     * 页面已渲染为图像
+     *
+     * @param pageNumber 页码
+     * @param width      图像宽度（像素）
+     * @param height     图像高度（像素）
+     */
+    default void onPageRendered(int pageNumber, int width, int height) {
+    }
+
+    /**
+     * OpenCV轮廓查找完成
+     *
+     * @param pageNumber    页码
+     * @param tableContours 第一次查找得到的轮廓数量（表格外框）
+     * @param cellContours  第二次查找得到的轮廓数量（单元格）
+     */
+    default void onContoursFound(int pageNumber, int tableContours, int cellContours) {
+    }
+
+    /**
+     * 预过滤判断页面中没有表格，跳过了渲染、识别和文本提取，之后仍会调用{@link #onPageParsed(int, int, long)}
+     *
+     * @param pageNumber 页码
+     */
+    default void onPageSkipped(int pageNumber) {
+    }
+
+    /**
+     * 开启自动选择识别方法时，抽样比较完成，在解析第一个页面之前调用，每次解析调用一次
+     *
+     * @param extractor 选中的识别方法在{@link com.trekkiii.pdf.table.analysis.extract.TableExtractors}中的名称
+     */
+    default void onExtractorSelected(String extractor) {
+    }
+
+    /**
+     * 页面解析完成
+     *
+     * @param pageNumber    页码
+     * @param cells         识别出的单元格数量
+     * @param durationNanos 整个页面的耗时，单位纳秒
+     */
+    default void onPageParsed(int pageNumber, int cells, long durationNanos) {
+    }
+}
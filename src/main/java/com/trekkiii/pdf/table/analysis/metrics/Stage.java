@@ -0,0 +1,31 @@
+package com.trekkiii.pdf.table.analysis.metrics;
+
+/**
+ * 页面解析的各个阶段
+ */
+public enum Stage {
+    /**
+     * 渲染之前扫描内容流，判断页面中是否可能有表格（{@link com.trekkiii.pdf.table.analysis.vector.ContentPreFilter}）
+     */
+    PRE_FILTER,
+    /**
+     * 从页面绘图指令中识别表格线（{@link com.trekkiii.pdf.table.analysis.vector.VectorExtractor}）
+     */
+    VECTOR_EXTRACT,
+    /**
+     * 使用PDFRenderer渲染页面图像
+     */
+    RENDER,
+    /**
+     * 页面图像转换为灰度Mat
+     */
+    CONVERT,
+    /**
+     * OpenCV识别单元格（阈值化、轮廓查找等）
+     */
+    EXTRACT,
+    /**
+     * 按单元格提取文本
+     */
+    TEXT_STRIP
+}
@@ -0,0 +1,110 @@
+package com.trekkiii.pdf.table.analysis.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 记录单个页面各阶段的耗时和内存分配量，并报告给{@link ParseListener}。
+ * <p>
+ * 监听器未启用时{@link #start()}/{@link #stop(Stage)}直接返回，不读取时钟。非线程安全，每个页面使用一个实例。
+ * <p>
+ * 内存分配量只在JVM已开启线程内存分配统计时读取，本类不会修改这一JVM全局设置，
+ * 需要时调用{@link #enableAllocationTracking()}或使用{@link HistogramParseListener#HistogramParseListener(boolean)}开启。
+ */
+public class StageTimer {
+
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN = allocationBean();
+
+    private final ParseListener listener;
+    private final int pageNumber;
+    private final boolean enabled;
+
+    private long startNanos;
+    private long startBytes;
+
+    public StageTimer(ParseListener listener, int pageNumber) {
+        this.listener = listener;
+        this.pageNumber = pageNumber;
+        this.enabled = listener.isEnabled();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ParseListener getListener() {
+        return listener;
+    }
+
+    public int getPageNumber() {
+        return pageNumber;
+    }
+
+    /**
+     * 开始计时
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        startBytes = allocatedBytes();
+        startNanos = System.nanoTime();
+    }
+
+    /**
+     * 结束计时并报告阶段{@code stage}
+     *
+     * @param stage 刚完成的阶段
+     */
+    public void stop(Stage stage) {
+        if (!enabled) {
+            return;
+        }
+        long duration = System.nanoTime() - startNanos;
+        long endBytes = startBytes < 0 ? -1 : allocatedBytes();
+        long bytes = endBytes < 0 ? -1 : endBytes - startBytes;
+        listener.onStage(pageNumber, stage, duration, bytes);
+    }
+
+    /**
+     * 开启JVM的线程内存分配统计。这是JVM全局设置，会影响同一JVM中的其他代码，且开启后所有线程分配内存时都有少量额外开销。
+     *
+     * @return JVM支持统计时返回true
+     */
+    public static boolean enableAllocationTracking() {
+        if (ALLOCATION_BEAN == null) {
+            return false;
+        }
+        try {
+            ALLOCATION_BEAN.setThreadAllocatedMemoryEnabled(true);
+            return true;
+        } catch (UnsupportedOperationException | SecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * 当前线程累计分配的堆内存，不支持或未开启统计时返回-1
+     */
+    private static long allocatedBytes() {
+        if (ALLOCATION_BEAN == null || !ALLOCATION_BEAN.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    private static com.sun.management.ThreadMXBean allocationBean() {
+        try {
+            ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+            if (bean instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+                if (sunBean.isThreadAllocatedMemorySupported()) {
+                    return sunBean;
+                }
+            }
+        } catch (LinkageError | UnsupportedOperationException | SecurityException e) {
+            // 非HotSpot JVM，不统计内存分配
+        }
+        return null;
+    }
+}
@@ -0,0 +1,375 @@
+package com.trekkiii.pdf.table.analysis.models;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * 紧凑的列式单元格存储。
+ * <p>
+ * 所有单元格的文本连续存放在一个{@code char[]}中，每个单元格只占用若干个int：文本偏移、边界矩形（x, y, width, height）、
+ * 行号和列号，不再为每个单元格创建String和List，百万级单元格时对象头的开销可以忽略，序列化时也可以直接读取底层数组。
+ * 单元格编号从0开始，按行优先、行内从左到右的顺序递增。
+ * <p>
+ * 行号、列号是单元格按行分组后在表格中的位置：合并单元格会使各行的单元格数量不同。
+ * 网格位置（网格行、网格列以及跨越的行数、列数）描述单元格在整个表格网格中的位置，
+ * 可以通过{@link #getCellAt(int, int)}按网格坐标查找单元格；未设置时等于行号、列号，跨度为1。
+ * <p>
+ * 边界矩形的单位为1/72英寸，原点在页面左上角，与提取文本时使用的区域相同；通过{@link ParsedTablePage#addRow(java.util.List)}
+ * 添加的单元格没有几何信息，边界矩形为0。
+ * <p>
+ * 只能追加，非线程安全；解析完成后可以在多个线程中只读访问。
+ */
+public class CompactTable {
+
+    private static final int BOUNDS_PER_CELL = 4;
+    private static final int GRID_PER_CELL = 4;
+    // 网格很稀疏（例如各列没有对齐）时不建立占用表，按网格坐标查找时遍历所有单元格
+    private static final int MAX_GRID_SLOTS_PER_CELL = 64;
+
+    private char[] text = new char[256];
+    private int textLength;
+    private int[] textOffsets = new int[17];// 第i个单元格的文本为[textOffsets[i], textOffsets[i + 1])
+    private int[] bounds = new int[16 * BOUNDS_PER_CELL];
+    private int[] rows = new int[16];
+    private int[] columns = new int[16];
+    private int[] grid = new int[16 * GRID_PER_CELL];// 网格行、网格列、跨行数、跨列数
+    private int cellCount;
+
+    private int[] rowOffsets = new int[9];// 第r行的单元格编号为[rowOffsets[r], rowOffsets[r + 1])
+    private int rowCount;
+
+    private volatile GridIndex gridIndex;// 按需建立，修改单元格时清空
+
+    /**
+     * 开始新的一行，之后添加的单元格属于该行
+     *
+     * @return 行号
+     */
+    public int startRow() {
+        if (rowCount + 2 > rowOffsets.length) {
+            rowOffsets = Arrays.copyOf(rowOffsets, rowOffsets.length * 2);
+        }
+        rowCount++;
+        rowOffsets[rowCount] = cellCount;
+        return rowCount - 1;
+    }
+
+    /**
+     * 在当前行末尾添加单元格
+     *
+     * @param cellText 单元格文本
+     * @param x        左上角x坐标
+     * @param y        左上角y坐标
+     * @param width    宽度
+     * @param height   高度
+     * @return 单元格编号
+     */
+    public int addCell(CharSequence cellText, int x, int y, int width, int height) {
+        if (rowCount == 0) {
+            throw new IllegalStateException("startRow() must be called before addCell()");
+        }
+        ensureCellCapacity(cellCount + 1);
+        ensureTextCapacity(textLength + cellText.length());
+        for (int i = 0; i < cellText.length(); i++) {
+            text[textLength++] = cellText.charAt(i);
+        }
+
+        int cell = cellCount++;
+        textOffsets[cell + 1] = textLength;
+        bounds[cell * BOUNDS_PER_CELL] = x;
+        bounds[cell * BOUNDS_PER_CELL + 1] = y;
+        bounds[cell * BOUNDS_PER_CELL + 2] = width;
+        bounds[cell * BOUNDS_PER_CELL + 3] = height;
+        rows[cell] = rowCount - 1;
+        columns[cell] = cell - rowOffsets[rowCount - 1];
+        grid[cell * GRID_PER_CELL] = rows[cell];
+        grid[cell * GRID_PER_CELL + 1] = columns[cell];
+        grid[cell * GRID_PER_CELL + 2] = 1;
+        grid[cell * GRID_PER_CELL + 3] = 1;
+        rowOffsets[rowCount] = cellCount;
+        gridIndex = null;
+        return cell;
+    }
+
+    /**
+     * 设置单元格在表格网格中的位置
+     *
+     * @param cell       单元格编号
+     * @param gridRow    网格行
+     * @param gridColumn 网格列
+     * @param rowSpan    跨越的行数，至少为1
+     * @param columnSpan 跨越的列数，至少为1
+     */
+    public void setGridPosition(int cell, int gridRow, int gridColumn, int rowSpan, int columnSpan) {
+        checkCell(cell);
+        if (gridRow < 0 || gridColumn < 0 || rowSpan < 1 || columnSpan < 1) {
+            throw new IllegalArgumentException(String.format("invalid grid position (%d, %d) span (%d, %d)",
+                    gridRow, gridColumn, rowSpan, columnSpan));
+        }
+        grid[cell * GRID_PER_CELL] = gridRow;
+        grid[cell * GRID_PER_CELL + 1] = gridColumn;
+        grid[cell * GRID_PER_CELL + 2] = rowSpan;
+        grid[cell * GRID_PER_CELL + 3] = columnSpan;
+        gridIndex = null;
+    }
+
+    /**
+     * 释放底层数组的空余容量，解析完成后调用以减少常驻内存
+     */
+    public void trimToSize() {
+        text = Arrays.copyOf(text, textLength);
+        textOffsets = Arrays.copyOf(textOffsets, cellCount + 1);
+        bounds = Arrays.copyOf(bounds, cellCount * BOUNDS_PER_CELL);
+        rows = Arrays.copyOf(rows, cellCount);
+        columns = Arrays.copyOf(columns, cellCount);
+        grid = Arrays.copyOf(grid, cellCount * GRID_PER_CELL);
+        rowOffsets = Arrays.copyOf(rowOffsets, rowCount + 1);
+    }
+
+    public int getCellCount() {
+        return cellCount;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * @param row 行号
+     * @return 该行第一个单元格的编号
+     */
+    public int getRowStart(int row) {
+        checkRow(row);
+        return rowOffsets[row];
+    }
+
+    /**
+     * @param row 行号
+     * @return 该行的单元格数量
+     */
+    public int getRowSize(int row) {
+        checkRow(row);
+        return rowOffsets[row + 1] - rowOffsets[row];
+    }
+
+    /**
+     * @param row    行号
+     * @param column 行内的列号
+     * @return 单元格编号
+     */
+    public int getCell(int row, int column) {
+        if (column < 0 || column >= getRowSize(row)) {
+            throw new IndexOutOfBoundsException("column " + column + " of row " + row);
+        }
+        return rowOffsets[row] + column;
+    }
+
+    /**
+     * @param column 列号
+     * @return 列号为column的所有单元格编号，按行号排序
+     */
+    public IntStream getColumnCells(int column) {
+        return IntStream.range(0, cellCount).filter(cell -> columns[cell] == column);
+    }
+
+    public String getText(int cell) {
+        checkCell(cell);
+        return new String(text, textOffsets[cell], textOffsets[cell + 1] - textOffsets[cell]);
+    }
+
+    public int getTextLength(int cell) {
+        checkCell(cell);
+        return textOffsets[cell + 1] - textOffsets[cell];
+    }
+
+    /**
+     * @param cell  单元格编号
+     * @param index 字符在单元格文本中的位置
+     * @return 单元格文本中的字符，逐个读取时不创建String
+     */
+    public char getChar(int cell, int index) {
+        checkCell(cell);
+        if (index < 0 || index >= textOffsets[cell + 1] - textOffsets[cell]) {
+            throw new IndexOutOfBoundsException("index " + index + " of cell " + cell);
+        }
+        return text[textOffsets[cell] + index];
+    }
+
+    /**
+     * 将单元格文本直接写入writer，不创建String
+     *
+     * @param cell   单元格编号
+     * @param writer 输出
+     * @throws IOException
+     */
+    public void writeText(int cell, Writer writer) throws IOException {
+        checkCell(cell);
+        writer.write(text, textOffsets[cell], textOffsets[cell + 1] - textOffsets[cell]);
+    }
+
+    public int getX(int cell) {
+        checkCell(cell);
+        return bounds[cell * BOUNDS_PER_CELL];
+    }
+
+    public int getY(int cell) {
+        checkCell(cell);
+        return bounds[cell * BOUNDS_PER_CELL + 1];
+    }
+
+    public int getWidth(int cell) {
+        checkCell(cell);
+        return bounds[cell * BOUNDS_PER_CELL + 2];
+    }
+
+    public int getHeight(int cell) {
+        checkCell(cell);
+        return bounds[cell * BOUNDS_PER_CELL + 3];
+    }
+
+    public int getRow(int cell) {
+        checkCell(cell);
+        return rows[cell];
+    }
+
+    public int getColumn(int cell) {
+        checkCell(cell);
+        return columns[cell];
+    }
+
+    public int getGridRow(int cell) {
+        checkCell(cell);
+        return grid[cell * GRID_PER_CELL];
+    }
+
+    public int getGridColumn(int cell) {
+        checkCell(cell);
+        return grid[cell * GRID_PER_CELL + 1];
+    }
+
+    public int getRowSpan(int cell) {
+        checkCell(cell);
+        return grid[cell * GRID_PER_CELL + 2];
+    }
+
+    public int getColumnSpan(int cell) {
+        checkCell(cell);
+        return grid[cell * GRID_PER_CELL + 3];
+    }
+
+    /**
+     * @return 网格的行数
+     */
+    public int getGridRowCount() {
+        return gridIndex().rowCount;
+    }
+
+    /**
+     * @return 网格的列数
+     */
+    public int getGridColumnCount() {
+        return gridIndex().columnCount;
+    }
+
+    /**
+     * 按网格坐标查找单元格，合并单元格覆盖的每个网格位置都返回该单元格
+     *
+     * @param gridRow    网格行
+     * @param gridColumn 网格列
+     * @return 单元格编号，该位置没有单元格时返回-1
+     */
+    public int getCellAt(int gridRow, int gridColumn) {
+        GridIndex index = gridIndex();
+        if (gridRow < 0 || gridRow >= index.rowCount || gridColumn < 0 || gridColumn >= index.columnCount) {
+            return -1;
+        }
+        if (index.slots != null) {
+            return index.slots[gridRow * index.columnCount + gridColumn];
+        }
+        for (int cell = 0; cell < cellCount; cell++) {
+            if (covers(cell, gridRow, gridColumn)) {
+                return cell;
+            }
+        }
+        return -1;
+    }
+
+    private boolean covers(int cell, int gridRow, int gridColumn) {
+        int g = cell * GRID_PER_CELL;
+        return gridRow >= grid[g] && gridRow < grid[g] + grid[g + 2]
+                && gridColumn >= grid[g + 1] && gridColumn < grid[g + 1] + grid[g + 3];
+    }
+
+    private GridIndex gridIndex() {
+        GridIndex index = gridIndex;
+        if (index == null) {
+            index = new GridIndex();
+            gridIndex = index;
+        }
+        return index;
+    }
+
+    /**
+     * 网格尺寸以及网格位置到单元格编号的占用表，重叠的单元格只记录编号较小的一个
+     */
+    private class GridIndex {
+        final int rowCount;
+        final int columnCount;
+        final int[] slots;
+
+        GridIndex() {
+            int maxRow = 0, maxColumn = 0;
+            for (int g = 0; g < cellCount * GRID_PER_CELL; g += GRID_PER_CELL) {
+                maxRow = Math.max(maxRow, grid[g] + grid[g + 2]);
+                maxColumn = Math.max(maxColumn, grid[g + 1] + grid[g + 3]);
+            }
+            rowCount = maxRow;
+            columnCount = maxColumn;
+
+            if ((long) maxRow * maxColumn > (long) Math.max(cellCount, 16) * MAX_GRID_SLOTS_PER_CELL) {
+                slots = null;
+                return;
+            }
+            slots = new int[maxRow * maxColumn];
+            Arrays.fill(slots, -1);
+            for (int cell = cellCount - 1; cell >= 0; cell--) {// 倒序填充，重叠时保留编号较小的单元格
+                int g = cell * GRID_PER_CELL;
+                for (int r = grid[g]; r < grid[g] + grid[g + 2]; r++) {
+                    Arrays.fill(slots, r * maxColumn + grid[g + 1], r * maxColumn + grid[g + 1] + grid[g + 3], cell);
+                }
+            }
+        }
+    }
+
+    private void checkCell(int cell) {
+        if (cell < 0 || cell >= cellCount) {
+            throw new IndexOutOfBoundsException("cell " + cell + ", cell count " + cellCount);
+        }
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= rowCount) {
+            throw new IndexOutOfBoundsException("row " + row + ", row count " + rowCount);
+        }
+    }
+
+    private void ensureCellCapacity(int capacity) {
+        if (capacity < rows.length) {// textOffsets比其它数组多一个元素
+            return;
+        }
+        int newCapacity = Math.max(capacity, rows.length * 2);
+        textOffsets = Arrays.copyOf(textOffsets, newCapacity + 1);
+        bounds = Arrays.copyOf(bounds, newCapacity * BOUNDS_PER_CELL);
+        rows = Arrays.copyOf(rows, newCapacity);
+        columns = Arrays.copyOf(columns, newCapacity);
+        grid = Arrays.copyOf(grid, newCapacity * GRID_PER_CELL);
+    }
+
+    private void ensureTextCapacity(int capacity) {
+        if (capacity > text.length) {
+            text = Arrays.copyOf(text, Math.max(capacity, text.length * 2));
+        }
+    }
+}
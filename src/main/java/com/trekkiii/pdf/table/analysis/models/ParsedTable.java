@@ -0,0 +1,54 @@
+package com.trekkiii.pdf.table.analysis.models;
+
+/**
+ * 页面中的一个表格：表格外框的边界矩形以及框内的单元格。
+ * <p>
+ * 边界矩形与单元格坐标的单位相同，为1/72英寸，原点在页面左上角。同一页面的各个表格互相独立，可以分别处理或输出。
+ */
+public class ParsedTable {
+
+    private final int index;// 在页面中的序号，从0开始
+    private final int x;
+    private final int y;
+    private final int width;
+    private final int height;
+    private final CompactTable cells = new CompactTable();
+
+    public ParsedTable(int index, int x, int y, int width, int height) {
+        this.index = index;
+        this.x = x;
+        this.y = y;
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * @return 在页面中的序号，从0开始，按表格外框的(y, x)排序
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public int getX() {
+        return x;
+    }
+
+    public int getY() {
+        return y;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    /**
+     * @return 表格的单元格，行号和网格位置都相对于本表格
+     */
+    public CompactTable getCells() {
+        return cells;
+    }
+}
@@ -2,8 +2,10 @@ package com.trekkiii.pdf.table.analysis.models;
 
 import org.apache.commons.lang3.StringEscapeUtils;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -12,34 +14,51 @@ import java.util.stream.Collectors;
  */
 public class ParsedTablePage {
 
+    /**
+     * 表格行，是{@link CompactTable}中一行的视图，不复制单元格文本
+     */
     public class ParsedTableRow {
-        private List<String> cells;
+        private final CompactTable table;
+        private final int row;
 
-        public ParsedTableRow(List<String> cells) {
-            this.cells = cells;
+        ParsedTableRow(CompactTable table, int row) {
+            this.table = table;
+            this.row = row;
         }
 
         public List<String> getCells() {
-            return this.cells;
+            return new AbstractList<String>() {
+                @Override
+                public String get(int index) {
+                    return getCell(index);
+                }
+
+                @Override
+                public int size() {
+                    return table.getRowSize(row);
+                }
+            };
         }
 
         public String getCell(int index) {
-            return this.cells.get(index);
+            return table.getText(table.getCell(row, index));
         }
 
         @Override
         public String toString() {
-            List<String> escapedCells = cells.stream().map(c -> StringEscapeUtils.escapeJava(c)).collect(Collectors.toList());
+            List<String> escapedCells = getCells().stream().map(c -> StringEscapeUtils.escapeJava(c)).collect(Collectors.toList());
             return String.format("<%s@%s; cells:%s>",
                     this.getClass().getSimpleName(), System.identityHashCode(this), Arrays.toString(escapedCells.toArray()));
         }
     }
 
-    private List<ParsedTableRow> rows;
+    private final List<ParsedTable> tables;// 各表格的单元格，getRows()等方法按表格顺序拼接
     private int pageNum;
+    private int dpi;// 识别单元格时页面图像的DPI，单元格坐标按此DPI换算
+    private Throwable error;// 并行解析时单个页面的解析异常
 
     private ParsedTablePage() {
-        rows = new ArrayList<>();
+        tables = new ArrayList<>(1);
     }
 
     public ParsedTablePage(int pageNumber) {
@@ -47,25 +66,133 @@ public class ParsedTablePage {
         pageNum = pageNumber;
     }
 
+    /**
+     * @return 页面中所有表格的行，按表格顺序拼接
+     */
     public List<ParsedTableRow> getRows() {
-        return rows;
+        return new AbstractList<ParsedTableRow>() {
+            @Override
+            public ParsedTableRow get(int index) {
+                return getRow(index);
+            }
+
+            @Override
+            public int size() {
+                int rows = 0;
+                for (ParsedTable table : tables) {
+                    rows += table.getCells().getRowCount();
+                }
+                return rows;
+            }
+        };
     }
 
+    /**
+     * 添加没有坐标信息的一行，属于最后一个表格（没有表格时新建一个）；需要坐标时使用{@link #addTable(int, int, int, int)}
+     *
+     * @param cells 单元格文本
+     */
     public void addRow(List<String> cells) {
-        rows.add(new ParsedTableRow(cells));
+        if (tables.isEmpty()) {
+            addTable(0, 0, 0, 0);
+        }
+        CompactTable table = tables.get(tables.size() - 1).getCells();
+        table.startRow();
+        for (String cell : cells) {
+            table.addCell(cell, 0, 0, 0, 0);
+        }
     }
 
+    /**
+     * @param index 页面中所有表格的行按表格顺序拼接后的行号
+     * @return 表格行
+     */
     public ParsedTableRow getRow(int index) {
-        return rows.get(index);
+        int row = index;
+        for (ParsedTable table : tables) {
+            CompactTable cells = table.getCells();
+            if (row >= 0 && row < cells.getRowCount()) {
+                return new ParsedTableRow(cells, row);
+            }
+            row -= cells.getRowCount();
+        }
+        throw new IndexOutOfBoundsException("row " + index + ", row count " + getRows().size());
+    }
+
+    public String getCell(int row, int column) {
+        return getRow(row).getCell(column);
+    }
+
+    /**
+     * 在页面末尾添加一个表格
+     *
+     * @param x      表格外框左上角x坐标（1/72英寸）
+     * @param y      表格外框左上角y坐标
+     * @param width  宽度
+     * @param height 高度
+     * @return 新的表格，通过{@link ParsedTable#getCells()}添加单元格
+     */
+    public ParsedTable addTable(int x, int y, int width, int height) {
+        ParsedTable table = new ParsedTable(tables.size(), x, y, width, height);
+        tables.add(table);
+        return table;
+    }
+
+    /**
+     * @return 页面中的表格，按外框的(y, x)排序
+     */
+    public List<ParsedTable> getTables() {
+        return Collections.unmodifiableList(tables);
+    }
+
+    /**
+     * @return 页面中所有表格的单元格总数
+     */
+    public int getCellCount() {
+        int cells = 0;
+        for (ParsedTable table : tables) {
+            cells += table.getCells().getCellCount();
+        }
+        return cells;
     }
 
     public int getPageNum() {
         return pageNum;
     }
 
+    /**
+     * 识别单元格时使用的渲染DPI。开启自适应DPI时每个页面可能不同
+     *
+     * @return DPI，解析失败的页面为0
+     */
+    public int getDpi() {
+        return dpi;
+    }
+
+    public void setDpi(int dpi) {
+        this.dpi = dpi;
+    }
+
+    /**
+     * 页面解析失败时返回对应的异常，否则返回null
+     *
+     * @return 解析异常
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    public void setError(Throwable error) {
+        this.error = error;
+    }
+
+    public boolean hasError() {
+        return error != null;
+    }
+
     @Override
     public String toString() {
         return String.format("<%s@%s; rows:%s>",
-                this.getClass().getSimpleName(), System.identityHashCode(this), Arrays.toString(rows.toArray()));
+                this.getClass().getSimpleName(), System.identityHashCode(this), Arrays.toString(getRows().toArray()));
     }
 }
@@ -0,0 +1,46 @@
+package com.trekkiii.pdf.table.analysis.opencv;
+
+import com.trekkiii.pdf.table.analysis.extract.TableExtractor;
+import com.trekkiii.pdf.table.analysis.metrics.StageTimer;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 只使用页面灰度图像识别表格和单元格的{@link TableExtractor}，内置的实现见{@link ExtractionMethod}。
+ * <p>
+ * 实现不能保存单个页面的状态，同一个实例会被多个线程共享
+ */
+public interface CellExtractionStrategy extends TableExtractor {
+
+    /**
+     * 识别页面图像中的表格
+     *
+     * @param grayscaleMat 灰度图像
+     * @param timer        当前页面的计时器，可以为null
+     * @return 按外框(y, x)排序的表格列表，坐标为图像像素，不包含没有单元格的表格
+     */
+    List<DetectedTable> getTables(Mat grayscaleMat, StageTimer timer);
+
+    @Override
+    default List<DetectedTable> extract(PDPage page, Mat grayscaleMat, StageTimer timer) {
+        return getTables(grayscaleMat, timer);
+    }
+
+    /**
+     * 与{@link #getTables(Mat, StageTimer)}相同，但不按表格分组
+     *
+     * @param grayscaleMat 灰度图像
+     * @return 所有表格的单元格边界矩形
+     */
+    default List<Rect> getTableBoundingRectangles(Mat grayscaleMat) {
+        List<Rect> out = new ArrayList<>();
+        for (DetectedTable table : getTables(grayscaleMat, null)) {
+            out.addAll(table.getCells());
+        }
+        return out;
+    }
+}
@@ -0,0 +1,166 @@
+package com.trekkiii.pdf.table.analysis.opencv;
+
+import org.opencv.core.Mat;
+
+import java.io.Closeable;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.opencv.imgcodecs.Imgcodecs.imwrite;
+
+/**
+ * 在后台线程中编码并写出debug图像。
+ * <p>
+ * {@link #write(String, Mat)}只复制图像并放入有界队列，PNG编码和写文件由后台线程完成，解析线程不会等待磁盘；
+ * 队列已满时直接丢弃该图像并计入{@link #getDroppedCount()}，内存占用不超过(线程数 + 队列长度)张图像。
+ * 不能丢弃图像时使用{@link #write(String, Mat, boolean)}，队列已满时在调用线程中直接写出。
+ * 后台线程不是守护线程，JVM退出前会写完已经入队的图像；线程空闲1秒后自动结束，之后不再阻止JVM退出。
+ * <p>
+ * 线程安全，可以被多个解析器共享；需要确认图像已写出时调用{@link #flush()}。
+ */
+public class DebugImageWriter implements Closeable {
+
+    private static final Logger logger = Logger.getLogger(DebugImageWriter.class.getName());
+
+    private static final DebugImageWriter SHARED = new DebugImageWriter(1, 64);
+
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final Object idle = new Object();
+    private int pending;// 已入队但尚未写完的图像数量，由idle保护
+
+    /**
+     * @param threads   后台线程数
+     * @param queueSize 等待写出的图像数量上限
+     */
+    public DebugImageWriter(int threads, int queueSize) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("threads must be >= 1: " + threads);
+        }
+        if (queueSize < 1) {
+            throw new IllegalArgumentException("queueSize must be >= 1: " + queueSize);
+        }
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadFactory threadFactory = r -> new Thread(r, "debug-image-writer-" + threadIndex.incrementAndGet());
+        executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueSize), threadFactory, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return 未在{@link com.trekkiii.pdf.table.analysis.Settings}中指定时使用的共享实例：1个后台线程，队列长度64
+     */
+    public static DebugImageWriter shared() {
+        return SHARED;
+    }
+
+    /**
+     * 复制图像并提交写出，调用后可以立即修改或释放image
+     *
+     * @param file  输出文件路径，扩展名决定图像格式
+     * @param image 图像
+     * @return 是否已入队，队列已满或已关闭时返回false
+     */
+    public boolean write(String file, Mat image) {
+        return write(file, image, true);
+    }
+
+    /**
+     * 复制图像并提交写出，调用后可以立即修改或释放image
+     *
+     * @param file         输出文件路径，扩展名决定图像格式
+     * @param image        图像
+     * @param dropWhenFull 队列已满或已关闭时，为true丢弃图像，为false在调用线程中直接写出
+     * @return 是否已入队或写出
+     */
+    public boolean write(String file, Mat image, boolean dropWhenFull) {
+        boolean queued;
+        synchronized (idle) {
+            queued = !executor.isShutdown() && executor.getQueue().remainingCapacity() > 0;
+            if (queued) {
+                pending++;
+            }
+        }
+        if (queued) {
+            Mat copy = image.clone();
+            try {
+                executor.execute(() -> {
+                    try {
+                        writeNow(file, copy);
+                    } finally {
+                        copy.release();
+                        done();
+                    }
+                });
+                return true;
+            } catch (RuntimeException e) {// 检查容量后其它线程抢先入队
+                copy.release();
+                done();
+            }
+        }
+        if (dropWhenFull) {
+            dropped.incrementAndGet();
+            logger.fine("debug image queue is full, dropped " + file);
+            return false;
+        }
+        writeNow(file, image);
+        return true;
+    }
+
+    private void writeNow(String file, Mat image) {
+        try {
+            imwrite(file, image);
+            written.incrementAndGet();
+        } catch (RuntimeException e) {
+            logger.log(Level.WARNING, "failed to write debug image " + file, e);
+        }
+    }
+
+    /**
+     * 等待所有已入队的图像写出
+     *
+     * @throws InterruptedException 等待时被中断
+     */
+    public void flush() throws InterruptedException {
+        synchronized (idle) {
+            while (pending > 0) {
+                idle.wait();
+            }
+        }
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * 写出已入队的图像后停止后台线程，之后提交的图像会被丢弃
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void done() {
+        synchronized (idle) {
+            pending--;
+            idle.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.trekkiii.pdf.table.analysis.opencv;
+
+import org.opencv.core.Rect;
+
+import java.util.List;
+
+/**
+ * 页面中识别出的一个表格：表格外框的边界矩形以及框内单元格的边界矩形，单位为渲染像素
+ */
+public class DetectedTable {
+
+    private final Rect bounds;
+    private final List<Rect> cells;
+
+    public DetectedTable(Rect bounds, List<Rect> cells) {
+        this.bounds = bounds;
+        this.cells = cells;
+    }
+
+    /**
+     * 以单元格的外接矩形作为表格边界
+     *
+     * @param cells 单元格，不能为空
+     * @return 表格
+     */
+    public static DetectedTable of(List<Rect> cells) {
+        int x1 = Integer.MAX_VALUE, y1 = Integer.MAX_VALUE, x2 = Integer.MIN_VALUE, y2 = Integer.MIN_VALUE;
+        for (Rect cell : cells) {
+            x1 = Math.min(x1, cell.x);
+            y1 = Math.min(y1, cell.y);
+            x2 = Math.max(x2, cell.x + cell.width);
+            y2 = Math.max(y2, cell.y + cell.height);
+        }
+        return new DetectedTable(new Rect(x1, y1, x2 - x1, y2 - y1), cells);
+    }
+
+    public Rect getBounds() {
+        return bounds;
+    }
+
+    public List<Rect> getCells() {
+        return cells;
+    }
+
+    /**
+     * 平移表格边界和所有单元格，例如将区域图像中的坐标映射回整个页面
+     */
+    public void translate(int dx, int dy) {
+        bounds.x += dx;
+        bounds.y += dy;
+        for (Rect cell : cells) {
+            cell.x += dx;
+            cell.y += dy;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.trekkiii.pdf.table.analysis.opencv;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+
+import java.util.Locale;
+
+/**
+ * 渲染页面后使用的单元格识别方法
+ */
+public enum ExtractionMethod {
+
+    /**
+     * 查找表格外框轮廓，与二值图像异或后再查找单元格轮廓，参见{@link OpenCVExtractor}
+     */
+    CONTOURS,
+
+    /**
+     * 用长条结构元素的开运算分离水平和竖直表格线，再由表格线的交点构成网格，参见{@link MorphologyExtractor}
+     */
+    MORPHOLOGY;
+
+    /**
+     * 创建使用该方法的识别器
+     *
+     * @param settings 解析设置
+     * @return 识别器，可以被多个线程共享
+     */
+    public CellExtractionStrategy create(Settings settings) {
+        switch (this) {
+            case MORPHOLOGY:
+                return new MorphologyExtractor(settings);
+            default:
+                return new OpenCVExtractor(settings);
+        }
+    }
+
+    /**
+     * @return 在{@link com.trekkiii.pdf.table.analysis.extract.TableExtractors}中注册的名称，即小写的枚举名
+     */
+    public String getName() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,498 @@
+package com.trekkiii.pdf.table.analysis.opencv;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.metrics.StageTimer;
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Scalar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.opencv.core.Core.bitwise_or;
+import static org.opencv.imgproc.Imgproc.*;
+
+/**
+ * 基于形态学运算的单元格识别。
+ * <p>
+ * 二值化后分别用1×L和L×1的结构元素做开运算，只保留长度不小于{@link OpenCVExtractor#MIN_LINE_LENGTH_PT}的
+ * 水平线和竖直线，文字等短笔画被去掉。两个方向的线合并后，每个连通的线网格作为一个表格：
+ * <ol>
+ * <li>网格内的水平线按所在的行、竖直线按所在的列聚成表格线，只保留与至少两条另一方向的表格线相交的
+ * （单元格内的下划线不参与划分）</li>
+ * <li>相邻表格线围成格子，两个格子之间的边框缺失一半以上时合并为同一个单元格（合并单元格）</li>
+ * <li>外侧边框缺失的单元格没有闭合，不返回</li>
+ * </ol>
+ * 与{@link OpenCVExtractor}相比不需要两次轮廓查找和蒙版异或，边框上的小缺口也不会使相邻单元格连成一片；
+ * 但长度不足L的一段表格线（例如很窄的列中单独的一段横线）会被开运算去掉。
+ */
+public class MorphologyExtractor implements CellExtractionStrategy {
+
+    // 边框存在时至少覆盖的比例，缺失更多时两侧的格子合并
+    private static final double MIN_BORDER_COVERAGE = 0.5;
+
+    // 判断两条表格线相交时允许的间隙（像素）
+    private static final int JOINT_TOLERANCE = 2;
+
+    // 单元格内部的最小宽高（像素），更小的是双线边框之间的缝隙
+    private static final int MIN_CELL_SIZE = 3;
+
+    private static final Scalar BLACK = new Scalar(0);
+
+    // 每个线程一份中间图像，MorphologyExtractor可以被多个线程共享；页面之间复用，解析调用结束时由releaseWorkspace()释放
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private final Settings settings;
+
+    static {
+        // 加载图像处理库
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    public MorphologyExtractor(Settings settings) {
+        this.settings = settings;
+    }
+
+    /**
+     * 识别页面图像中的表格，{@code settings.hasDebugImages()}为true时输出表格线图像和所有单元格的图像
+     *
+     * @param grayscaleMat 灰度图像
+     * @param timer        当前页面的计时器，可以为null；报告的轮廓数量为线网格数和单元格数
+     * @return 按外框(y, x)排序的表格列表
+     */
+    @Override
+    public List<DetectedTable> getTables(Mat grayscaleMat, StageTimer timer) {
+        Workspace ws = WORKSPACE.get();
+
+        /**
+         * 1. 二值化，开运算分离水平线和竖直线
+         */
+        threshold(grayscaleMat, ws.bit, settings.getBitThreshold(), settings.getBitMaxVal(), THRESH_BINARY_INV);
+        int lineLength = Math.max(2, (int) Math.round(OpenCVExtractor.MIN_LINE_LENGTH_PT * settings.getPdfRenderingDpi() / 72.0));
+        open(ws.bit, ws.horizontal, lineLength, true, ws);
+        open(ws.bit, ws.vertical, lineLength, false, ws);
+        bitwise_or(ws.horizontal, ws.vertical, ws.grid);
+        if (settings.hasDebugImages()) {
+            writeDebugImage("lines", ws.grid);
+        }
+
+        /**
+         * 2. 线网格的连通域，每个连通域内单独划分单元格
+         */
+        // connectedComponentsWithStats统计各连通域的耗时是标记本身的数倍，边界矩形改为在Java数组上计算
+        int labelCount = connectedComponents(ws.grid, ws.labels, 8, CvType.CV_32S);
+        List<DetectedTable> out = new ArrayList<>();
+        int cellCount = 0;
+        if (labelCount > 1) {
+            Grid grid = ws.load();
+            Rect[] components = grid.bounds(labelCount);
+            for (int label = 1; label < labelCount; label++) {// 0为背景
+                Rect bounds = components[label];
+                if (bounds.width < lineLength || bounds.height < lineLength) {
+                    continue;
+                }
+                DetectedTable table = grid.table(label, bounds);
+                if (table != null) {
+                    out.add(table);
+                    cellCount += table.getCells().size();
+                }
+            }
+        }
+        out.sort((a, b) -> a.getBounds().y != b.getBounds().y
+                ? Integer.compare(a.getBounds().y, b.getBounds().y) : Integer.compare(a.getBounds().x, b.getBounds().x));
+        if (timer != null && timer.isEnabled()) {
+            timer.getListener().onContoursFound(timer.getPageNumber(), Math.max(0, labelCount - 1), cellCount);
+        }
+
+        if (settings.hasDebugImages()) {
+            OpenCVExtractor.drawTables(grayscaleMat, out, ws.debug);
+            writeDebugImage("boxes", ws.debug);
+            ws.debug.release();// debug图像只在调试时使用，不常驻
+        }
+        return out;
+    }
+
+    /**
+     * 用1×length（或length×1）的矩形结构元素做开运算，结果与{@code morphologyEx(MORPH_OPEN)}相同。
+     * <p>
+     * OpenCV的腐蚀和膨胀对每个像素比较整个结构元素，耗时与length成正比；这里按倍增的步长把图像与平移后的自身取最小值
+     * （腐蚀）或最大值（膨胀），每步覆盖的长度翻倍，只需要log2(length)次逐像素运算
+     *
+     * @param src        二值图像
+     * @param dst        输出图像
+     * @param length     结构元素的长度
+     * @param horizontal 为true时沿水平方向
+     */
+    private static void open(Mat src, Mat dst, int length, boolean horizontal, Workspace ws) {
+        Mat[] buffers = {ws.eroded, ws.temp};
+        Mat cur = src;
+        int next = 0;
+        for (boolean erode : new boolean[]{true, false}) {
+            // 腐蚀：e(i) = min(src[i, i + length))；膨胀：dst(i) = max(e(i - length, i])
+            for (int covered = 1; covered < length; ) {
+                int step = Math.min(covered, length - covered);
+                shift(cur, buffers[next], step, horizontal, erode);
+                cur = buffers[next];
+                next ^= 1;
+                covered += step;
+            }
+        }
+        cur.copyTo(dst);
+    }
+
+    /**
+     * 腐蚀时dst(i) = min(src(i), src(i + step))，膨胀时dst(i) = max(src(i), src(i - step))，超出图像的部分按0计算
+     */
+    private static void shift(Mat src, Mat dst, int step, boolean horizontal, boolean erode) {
+        dst.create(src.size(), src.type());
+        int n = horizontal ? src.cols() : src.rows();
+        if (step >= n) {
+            dst.setTo(BLACK);
+            return;
+        }
+        Mat a = range(src, 0, n - step, horizontal);
+        Mat b = range(src, step, n, horizontal);
+        Mat out = range(dst, erode ? 0 : step, erode ? n - step : n, horizontal);
+        Mat rest = erode ? range(dst, n - step, n, horizontal) : range(dst, 0, step, horizontal);
+        if (erode) {
+            Core.min(a, b, out);
+        } else {
+            Core.max(a, b, out);
+        }
+        rest.setTo(BLACK);
+        a.release();
+        b.release();
+        out.release();
+        rest.release();
+    }
+
+    private static Mat range(Mat mat, int start, int end, boolean columns) {
+        return columns ? mat.colRange(start, end) : mat.rowRange(start, end);
+    }
+
+    /**
+     * 释放当前线程的工作区占用的内存。
+     * <p>
+     * {@link com.trekkiii.pdf.table.analysis.PdfTableParser}在每次公开的解析调用结束时调用；之后再次解析时会重新分配
+     */
+    public static void releaseWorkspace() {
+        WORKSPACE.get().release();
+        WORKSPACE.remove();
+    }
+
+    /**
+     * 页面的水平线、竖直线和连通域标记，按行存放在Java数组中，逐像素扫描时不再调用native方法
+     */
+    static class Grid {
+
+        private final byte[] horizontal;
+        private final byte[] vertical;
+        private final int[] labels;
+        private final int stride;
+
+        Grid(byte[] horizontal, byte[] vertical, int[] labels, int stride) {
+            this.horizontal = horizontal;
+            this.vertical = vertical;
+            this.labels = labels;
+            this.stride = stride;
+        }
+
+        /**
+         * @param labelCount 连通域数量，包括背景
+         * @return 各连通域的边界矩形，下标为连通域标记
+         */
+        Rect[] bounds(int labelCount) {
+            int[] x1 = new int[labelCount];
+            int[] y1 = new int[labelCount];
+            int[] x2 = new int[labelCount];
+            int[] y2 = new int[labelCount];
+            Arrays.fill(x1, Integer.MAX_VALUE);
+            Arrays.fill(y1, Integer.MAX_VALUE);
+            Arrays.fill(x2, -1);
+            Arrays.fill(y2, -1);
+            for (int index = 0; index < labels.length; index++) {
+                int label = labels[index];
+                if (label == 0) {
+                    continue;
+                }
+                int y = index / stride;
+                int x = index - y * stride;
+                x1[label] = Math.min(x1[label], x);
+                x2[label] = Math.max(x2[label], x);
+                y1[label] = Math.min(y1[label], y);
+                y2[label] = Math.max(y2[label], y);
+            }
+            Rect[] out = new Rect[labelCount];
+            for (int label = 0; label < labelCount; label++) {
+                out[label] = x2[label] < 0 ? new Rect() : new Rect(x1[label], y1[label], x2[label] - x1[label] + 1, y2[label] - y1[label] + 1);
+            }
+            return out;
+        }
+
+        /**
+         * 在一个线网格内划分单元格
+         *
+         * @param label  连通域标记
+         * @param bounds 连通域的边界矩形
+         * @return 表格，网格不足2×2条表格线或没有闭合的单元格时返回null
+         */
+        DetectedTable table(int label, Rect bounds) {
+            List<int[]> rows = bands(horizontal, label, bounds, true);
+            List<int[]> columns = bands(vertical, label, bounds, false);
+            if (rows.size() < 2 || columns.size() < 2) {
+                return null;
+            }
+
+            // 只保留与另一方向的表格线有两个以上交点的表格线
+            int[] rowJoints = new int[rows.size()];
+            int[] columnJoints = new int[columns.size()];
+            for (int j = 0; j < rows.size(); j++) {
+                for (int i = 0; i < columns.size(); i++) {
+                    if (joint(label, bounds, columns.get(i), rows.get(j))) {
+                        rowJoints[j]++;
+                        columnJoints[i]++;
+                    }
+                }
+            }
+            rows = retain(rows, rowJoints);
+            columns = retain(columns, columnJoints);
+            if (rows.size() < 2 || columns.size() < 2) {
+                return null;
+            }
+
+            // 格子之间的边框：vBorder[i][j]为第i条竖线在第j行格子旁的一段，hBorder[j][i]为第j条横线在第i列格子旁的一段
+            int nx = columns.size() - 1;
+            int ny = rows.size() - 1;
+            boolean[][] vBorder = new boolean[nx + 1][ny];
+            boolean[][] hBorder = new boolean[ny + 1][nx];
+            for (int i = 0; i <= nx; i++) {
+                for (int j = 0; j < ny; j++) {
+                    vBorder[i][j] = covered(vertical, label, columns.get(i), rows.get(j)[1] + 1, rows.get(j + 1)[0] - 1, false);
+                }
+            }
+            for (int j = 0; j <= ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    hBorder[j][i] = covered(horizontal, label, rows.get(j), columns.get(i)[1] + 1, columns.get(i + 1)[0] - 1, true);
+                }
+            }
+
+            // 合并边框缺失的相邻格子，外侧边框缺失的单元格标记为未闭合
+            int[] parent = new int[nx * ny];
+            for (int k = 0; k < parent.length; k++) {
+                parent[k] = k;
+            }
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    if (i + 1 < nx && !vBorder[i + 1][j]) {
+                        union(parent, j * nx + i, j * nx + i + 1);
+                    }
+                    if (j + 1 < ny && !hBorder[j + 1][i]) {
+                        union(parent, j * nx + i, (j + 1) * nx + i);
+                    }
+                }
+            }
+            boolean[] open = new boolean[nx * ny];
+            int[] minI = new int[nx * ny];
+            int[] minJ = new int[nx * ny];
+            int[] maxI = new int[nx * ny];
+            int[] maxJ = new int[nx * ny];
+            Arrays.fill(minI, Integer.MAX_VALUE);
+            Arrays.fill(minJ, Integer.MAX_VALUE);
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    int root = find(parent, j * nx + i);
+                    if ((i == 0 && !vBorder[0][j]) || (i == nx - 1 && !vBorder[nx][j])
+                            || (j == 0 && !hBorder[0][i]) || (j == ny - 1 && !hBorder[ny][i])) {
+                        open[root] = true;
+                    }
+                    minI[root] = Math.min(minI[root], i);
+                    minJ[root] = Math.min(minJ[root], j);
+                    maxI[root] = Math.max(maxI[root], i);
+                    maxJ[root] = Math.max(maxJ[root], j);
+                }
+            }
+
+            // 按左上角格子的行优先顺序输出单元格内部（不含表格线）
+            List<Rect> cells = new ArrayList<>();
+            for (int j = 0; j < ny; j++) {
+                for (int i = 0; i < nx; i++) {
+                    int root = find(parent, j * nx + i);
+                    if (open[root] || minI[root] != i || minJ[root] != j) {
+                        continue;
+                    }
+                    int x1 = columns.get(i)[1] + 1;
+                    int y1 = rows.get(j)[1] + 1;
+                    int x2 = columns.get(maxI[root] + 1)[0];
+                    int y2 = rows.get(maxJ[root] + 1)[0];
+                    if (x2 - x1 >= MIN_CELL_SIZE && y2 - y1 >= MIN_CELL_SIZE) {
+                        cells.add(new Rect(x1, y1, x2 - x1, y2 - y1));
+                    }
+                }
+            }
+            if (cells.isEmpty()) {
+                return null;
+            }
+            int x1 = columns.get(0)[0];
+            int y1 = rows.get(0)[0];
+            int x2 = columns.get(nx)[1] + 1;
+            int y2 = rows.get(ny)[1] + 1;
+            return new DetectedTable(new Rect(x1, y1, x2 - x1, y2 - y1), cells);
+        }
+
+        /**
+         * 把包含表格线像素的行（或列）聚成表格线，相邻的行属于同一条粗线
+         *
+         * @return 每条表格线的{起始, 结束}坐标，包含两端
+         */
+        private List<int[]> bands(byte[] mask, int label, Rect bounds, boolean horizontalLines) {
+            boolean[] on = new boolean[horizontalLines ? bounds.height : bounds.width];
+            for (int y = bounds.y; y < bounds.y + bounds.height; y++) {
+                int row = y * stride;
+                for (int x = bounds.x; x < bounds.x + bounds.width; x++) {
+                    if (mask[row + x] != 0 && labels[row + x] == label) {
+                        on[horizontalLines ? y - bounds.y : x - bounds.x] = true;
+                    }
+                }
+            }
+            int offset = horizontalLines ? bounds.y : bounds.x;
+            List<int[]> out = new ArrayList<>();
+            for (int k = 0; k < on.length; k++) {
+                if (!on[k]) {
+                    continue;
+                }
+                int start = k;
+                while (k + 1 < on.length && on[k + 1]) {
+                    k++;
+                }
+                out.add(new int[]{start + offset, k + offset});
+            }
+            return out;
+        }
+
+        /**
+         * 竖线经过横线所在的行，并且横线延伸到竖线所在的列
+         */
+        private boolean joint(int label, Rect bounds, int[] column, int[] row) {
+            return any(vertical, label, bounds, column[0], column[1], row[0] - JOINT_TOLERANCE, row[1] + JOINT_TOLERANCE)
+                    && any(horizontal, label, bounds, column[0] - JOINT_TOLERANCE, column[1] + JOINT_TOLERANCE, row[0], row[1]);
+        }
+
+        private boolean any(byte[] mask, int label, Rect bounds, int x1, int x2, int y1, int y2) {
+            x1 = Math.max(x1, bounds.x);
+            y1 = Math.max(y1, bounds.y);
+            x2 = Math.min(x2, bounds.x + bounds.width - 1);
+            y2 = Math.min(y2, bounds.y + bounds.height - 1);
+            for (int y = y1; y <= y2; y++) {
+                int row = y * stride;
+                for (int x = x1; x <= x2; x++) {
+                    if (mask[row + x] != 0 && labels[row + x] == label) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * 表格线band在[from, to]之间的一段是否存在：有线像素的位置不少于{@link #MIN_BORDER_COVERAGE}
+         *
+         * @param horizontalLine band为横线时按列统计，为竖线时按行统计
+         */
+        private boolean covered(byte[] mask, int label, int[] band, int from, int to, boolean horizontalLine) {
+            if (to < from) {// 两条表格线紧挨着
+                return true;
+            }
+            int hits = 0;
+            for (int k = from; k <= to; k++) {
+                boolean hit = false;
+                for (int b = band[0]; b <= band[1] && !hit; b++) {
+                    int index = horizontalLine ? b * stride + k : k * stride + b;
+                    hit = mask[index] != 0 && labels[index] == label;
+                }
+                if (hit) {
+                    hits++;
+                }
+            }
+            return hits >= (to - from + 1) * MIN_BORDER_COVERAGE;
+        }
+
+        private static List<int[]> retain(List<int[]> bands, int[] joints) {
+            List<int[]> out = new ArrayList<>(bands.size());
+            for (int k = 0; k < bands.size(); k++) {
+                if (joints[k] >= 2) {
+                    out.add(bands.get(k));
+                }
+            }
+            return out;
+        }
+
+        private static int find(int[] parent, int k) {
+            while (parent[k] != k) {
+                parent[k] = parent[parent[k]];
+                k = parent[k];
+            }
+            return k;
+        }
+
+        private static void union(int[] parent, int a, int b) {
+            parent[find(parent, a)] = find(parent, b);
+        }
+    }
+
+    /**
+     * 单个线程复用的中间图像和像素数组，连续解析相同尺寸的页面时不再分配内存
+     */
+    private static class Workspace {
+
+        final Mat bit = new Mat();
+        final Mat horizontal = new Mat();// 开运算后的水平线
+        final Mat vertical = new Mat();// 开运算后的竖直线
+        final Mat eroded = new Mat();
+        final Mat temp = new Mat();
+        final Mat grid = new Mat();
+        final Mat labels = new Mat();
+        final Mat debug = new Mat();
+        byte[] horizontalPixels = new byte[0];
+        byte[] verticalPixels = new byte[0];
+        int[] labelPixels = new int[0];
+
+        /**
+         * 把水平线、竖直线和连通域标记复制到Java数组
+         */
+        Grid load() {
+            int size = grid.rows() * grid.cols();
+            if (horizontalPixels.length != size) {
+                horizontalPixels = new byte[size];
+                verticalPixels = new byte[size];
+                labelPixels = new int[size];
+            }
+            horizontal.get(0, 0, horizontalPixels);
+            vertical.get(0, 0, verticalPixels);
+            labels.get(0, 0, labelPixels);
+            return new Grid(horizontalPixels, verticalPixels, labelPixels, grid.cols());
+        }
+
+        void release() {
+            bit.release();
+            horizontal.release();
+            vertical.release();
+            eroded.release();
+            temp.release();
+            grid.release();
+            labels.release();
+            debug.release();
+            horizontalPixels = new byte[0];
+            verticalPixels = new byte[0];
+            labelPixels = new int[0];
+        }
+    }
+
+    private void writeDebugImage(String suffix, Mat image) {
+        settings.getDebugImageWriter().write(settings.getDebugFileOutputDir()
+                .resolve(settings.getDebugFilename() + "_morphology_" + suffix + ".png").toString(), image,
+                !settings.hasCompleteDebugImages());
+    }
+}
@@ -1,23 +1,38 @@
 package com.trekkiii.pdf.table.analysis.opencv;
 
 import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.metrics.StageTimer;
 import org.opencv.core.*;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
+import static org.opencv.core.Core.bitwise_or;
 import static org.opencv.core.Core.bitwise_xor;
-import static org.opencv.imgcodecs.Imgcodecs.imwrite;
 import static org.opencv.imgproc.Imgproc.*;
 
 /**
  * Created by 刘春龙 on 2017/10/24.
  * 负责确定表格单元格界限框的类应该用作静态的
  */
-public class OpenCVExtractor {
+public class OpenCVExtractor implements CellExtractionStrategy {
 
-    private Settings settings;
+    // 表格线的最小长度（单位为1/72英寸），略小于单行文字表格的行高
+    static final double MIN_LINE_LENGTH_PT = 14;
+
+    private static final Scalar WHITE = new Scalar(255, 255, 255);
+    private static final Scalar TABLE_COLOR = new Scalar(255, 0, 0);// BGR蓝色
+    private static final Scalar CELL_COLOR = new Scalar(0, 0, 255);// BGR红色
+
+    // 每个线程一份中间图像，OpenCVExtractor可以被多个线程共享；页面之间复用，解析调用结束时由releaseWorkspace()释放
+    private static final ThreadLocal<Workspace> WORKSPACE = ThreadLocal.withInitial(Workspace::new);
+
+    private final Settings settings;
 
     static {
         // 加载图像处理库
@@ -29,10 +44,6 @@ public class OpenCVExtractor {
         this.settings = settings;
     }
 
-    public void setSettings(Settings settings) {
-        this.settings = settings;
-    }
-
     /**
      * 在页面图像上应用一系列过滤器，并提取表格单元格的边界矩形(Rectangle)。
      * <p>
@@ -41,149 +52,483 @@ public class OpenCVExtractor {
      * @param grayscaleMat 灰度图像
      * @return 表示单元格边界矩形的org.opencv.core.Rect对象的列表
      */
+    @Override
     public List<Rect> getTableBoundingRectangles(Mat grayscaleMat) {
+        return getTableBoundingRectangles(grayscaleMat, null);
+    }
+
+    /**
+     * 与{@link #getTableBoundingRectangles(Mat)}相同，并将两次轮廓查找得到的轮廓数量报告给{@code timer}的监听器
+     * <p>
+     * 识别分两个阶段：先在缩小的二值图像上找出可能包含表格的区域（{@link #findTableRegions(Workspace)}），
+     * 再只在这些区域内查找轮廓、生成蒙版并异或，没有表格的页面只需一次二值化和一次缩小图像上的轮廓查找
+     *
+     * @param grayscaleMat 灰度图像
+     * @param timer        当前页面的计时器，可以为null
+     * @return 表示单元格边界矩形的org.opencv.core.Rect对象的列表
+     */
+    public List<Rect> getTableBoundingRectangles(Mat grayscaleMat, StageTimer timer) {
         List<Rect> out = new ArrayList<>();
+        for (DetectedTable table : getTables(grayscaleMat, timer)) {
+            out.addAll(table.getCells());
+        }
+        return out;
+    }
+
+    /**
+     * 与{@link #getTableBoundingRectangles(Mat, StageTimer)}相同，但按所属的表格对单元格分组。
+     * <p>
+     * 第一次轮廓查找得到的外轮廓就是各个表格的外框，每个单元格归入包含其中心点的最小外框，
+     * 因此并排或上下排列的多个表格会分别返回，不需要再按区域重新识别
+     *
+     * @param grayscaleMat 灰度图像
+     * @param timer        当前页面的计时器，可以为null
+     * @return 按外框(y, x)排序的表格列表，不包含没有单元格的外框
+     */
+    @Override
+    public List<DetectedTable> getTables(Mat grayscaleMat, StageTimer timer) {
+        List<DetectedTable> out = new ArrayList<>();
+        Workspace ws = WORKSPACE.get();
 
         if (settings.hasDebugImages()) {// 输出灰度图像
-            imwrite(buildDebugFilename("original_grayscaled"), grayscaleMat);
+            writeDebugImage("original_grayscaled", grayscaleMat);
         }
 
         /**
          * 1. 图像二值化
          */
-        Mat bit = binaryInvertedThreshold(grayscaleMat);
+        binaryInvertedThreshold(grayscaleMat, ws.bit);
         if (settings.hasDebugImages()) {// 输出二值化图像
-            imwrite(buildDebugFilename("binary_inverted_threshold"), bit);
+            writeDebugImage("binary_inverted_threshold", ws.bit);
         }
 
         /**
-         * 2. 查找轮廓
+         * 2. 在缩小的二值图像上查找可能包含表格的区域，没有候选区域的页面到此结束
          */
-        List<MatOfPoint> contours = new ArrayList<>();
+        List<Rect> regions = findTableRegions(ws);
+        if (settings.hasDebugImages()) {
+            grayscaleMat.copyTo(ws.debug);
+            for (Rect region : regions) {
+                rectangle(ws.debug, region.tl(), region.br(), new Scalar(0, 0, 0, 255), 3);
+            }
+            writeDebugImage("table_regions", ws.debug);
+        }
+
+        /**
+         * 3. 只在候选区域内运行完整的单元格识别
+         */
+        ws.mask.create(ws.bit.size(), ws.bit.type());
         if (settings.hasCannyFiltering()) {
+            ws.canny.create(ws.bit.size(), ws.bit.type());
+        }
+        int[] contourCounts = new int[2];
+        for (int i = 0; i < regions.size(); i++) {
+            out.addAll(getCellRectangles(grayscaleMat, regions.get(i), i, ws, contourCounts));
+        }
+        out.sort((a, b) -> a.getBounds().y != b.getBounds().y
+                ? Integer.compare(a.getBounds().y, b.getBounds().y) : Integer.compare(a.getBounds().x, b.getBounds().x));
+        if (timer != null && timer.isEnabled()) {
+            timer.getListener().onContoursFound(timer.getPageNumber(), contourCounts[0], contourCounts[1]);
+        }
 
-            // 2.1 基于边缘检测图像
-            Mat canny = cannyFilter(grayscaleMat);
-            if (settings.hasDebugImages()) {// 输出边缘检测图像
-                imwrite(buildDebugFilename("canny1"), canny);
+        if (settings.hasDebugImages() && settings.hasCompactDebugImages()) {// 所有外框和单元格画在同一张图像上
+            drawTables(grayscaleMat, out, ws.debug);
+            writeDebugImage("boxes", ws.debug);
+            ws.debug.release();
+        } else if (settings.hasDebugImages()) {
+            int index = 0;
+            for (DetectedTable table : out) {
+                for (Rect rect : table.getCells()) {
+                    grayscaleMat.copyTo(ws.debug);
+
+                    Point p1 = new Point(rect.x, rect.y);
+                    Point p2 = new Point(rect.x + rect.width, rect.y + rect.height);
+                    rectangle(ws.debug, p1, p2, new Scalar(0, 0, 0, 255), 3);
+                    writeDebugImage(String.format("box_%03d", index), ws.debug);
+                    index++;
+                }
             }
+            ws.debug.release();// debug图像只在调试时使用，不常驻
+        }
 
+        return out;
+    }
 
-            // Mat image：输入图像，必须为一个8位的二值图像
-            // List<MatOfPoint> contours：用于存储轮廓的容器
-            // Mat hierarchy：
-            //      hiararchy参数和轮廓个数相同，每个轮廓contours[ i ]对应4个hierarchy元素hierarchy[ i ][ 0 ] ~hierarchy[ i ][ 3 ]，分别表示后一个轮廓、前一个轮廓、父轮廓、内嵌轮廓的索引编号，如果没有对应项，该值设置为负数。
-            // int mode：轮廓检测的模式
-            //      RETR_EXTERNAL：只提取最外层的轮廓，查找外边缘，各边缘以指针h_next相连；
-            // int method：轮廓边缘的近似方法
-            //      CHAIN_APPROX_SIMPLE：压缩水平方向，垂直方向，对角线方向的元素，只保留该方向的终点坐标，例如一个矩形轮廓只需4个点来保存轮廓信息；
-            findContours(canny, contours, new Mat(), RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
-        } else {
-            // 2.2 基于二值化图像
-            findContours(bit, contours, new Mat(), RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+    /**
+     * 在按{@code settings.getRegionDetectionScale()}缩小的二值图像上查找表格候选区域。
+     * <p>
+     * 缩小时任何一个前景像素都会保留为前景（相当于最大值池化），细的表格线不会丢失。
+     * 然后用水平和竖直方向的开运算只保留长度不小于{@link #MIN_LINE_LENGTH_PT}的线段，文字被去掉（缩小后连成一片的文字行
+     * 只能通过水平开运算，不会形成封闭区域）。表格的外框线内一定有单元格，即线段的外轮廓包含孔洞，据此挑选候选区域。
+     * 候选区域映射回原图后向外扩展一个缩放倍数的边距，相互重叠的区域会被合并。
+     *
+     * @param ws 当前线程的工作区，{@code ws.bit}为二值化后的页面图像
+     * @return 按(y, x)排序的候选区域，坐标为原图像素；缩放倍数为1时返回整个页面
+     */
+    private List<Rect> findTableRegions(Workspace ws) {
+        int scale = settings.getRegionDetectionScale();
+        Rect page = new Rect(0, 0, ws.bit.cols(), ws.bit.rows());
+        if (scale <= 1 || page.width < scale || page.height < scale) {
+            return Collections.singletonList(page);
         }
 
-        /**
-         * 3. 用`CV_FILLED`(填充轮廓内部)绘制轮廓，得到表格的蒙版(mask)
-         */
-        // Mat image：输入图像，函数将在这张图像上绘制轮廓
-        // List<MatOfPoint> contours： 轮廓链表
-        // int contourIdx：绘制轮廓的最大层数
-        // Scalar color：颜色
-        // int thickness：轮廓线的宽度，如果为`CV_FILLED`则会填充轮廓内部
-        Mat contourMask = bit.clone();
-        drawContours(contourMask, contours, -1, new Scalar(255, 255, 255), Core.FILLED);
-        if (settings.hasDebugImages()) {
-            imwrite(buildDebugFilename("contour_mask"), contourMask);
+        // 裁剪为缩放倍数的整数倍，INTER_AREA在整数倍缩小时使用快速路径
+        Mat cropped = ws.bit.submat(0, page.height / scale * scale, 0, page.width / scale * scale);
+        resize(cropped, ws.small, new Size(page.width / scale, page.height / scale), 0, 0, INTER_AREA);
+        cropped.release();
+        threshold(ws.small, ws.small, 0, 255, THRESH_BINARY);
+
+        int lineLength = Math.max(2, (int) Math.round(MIN_LINE_LENGTH_PT * settings.getPdfRenderingDpi() / 72.0 / scale));
+        Mat horizontal = getStructuringElement(MORPH_RECT, new Size(lineLength, 1));
+        Mat vertical = getStructuringElement(MORPH_RECT, new Size(1, lineLength));
+        morphologyEx(ws.small, ws.lines, MORPH_OPEN, vertical);
+        morphologyEx(ws.small, ws.small, MORPH_OPEN, horizontal);
+        bitwise_or(ws.small, ws.lines, ws.lines);
+        horizontal.release();
+        vertical.release();
+
+        List<MatOfPoint> contours = new ArrayList<>();
+        List<Rect> regions = new ArrayList<>();
+        try {
+            // RETR_CCOMP：两级轮廓，外轮廓的子轮廓即孔洞
+            findContours(ws.lines, contours, ws.hierarchy, RETR_CCOMP, CHAIN_APPROX_SIMPLE);
+            int[] hierarchy = new int[4];
+            for (int i = 0; i < contours.size(); i++) {
+                ws.hierarchy.get(0, i, hierarchy);
+                if (hierarchy[3] >= 0 || hierarchy[2] < 0) {// 孔洞本身，或没有孔洞的外轮廓
+                    continue;
+                }
+                Rect r = boundingRect(contours.get(i));
+                int x1 = Math.max(0, (r.x - 1) * scale);
+                int y1 = Math.max(0, (r.y - 1) * scale);
+                int x2 = Math.min(page.width, (r.x + r.width + 1) * scale);
+                int y2 = Math.min(page.height, (r.y + r.height + 1) * scale);
+                if (x2 + scale >= page.width) {// 裁剪掉的右侧和底部不足一个缩放倍数的像素
+                    x2 = page.width;
+                }
+                if (y2 + scale >= page.height) {
+                    y2 = page.height;
+                }
+                regions.add(new Rect(x1, y1, x2 - x1, y2 - y1));
+            }
+        } finally {
+            release(contours);
         }
+        return mergeOverlapping(regions);
+    }
 
-        /**
-         * 4. 二值图像和表格的mask异或
-         */
-        Mat xored = new Mat();
-        bitwise_xor(bit, contourMask, xored);
-        if (settings.hasDebugImages()) {
-            imwrite(buildDebugFilename("xored"), xored);
+    /**
+     * 合并相互重叠的区域，直到没有重叠为止，避免同一个表格被两个区域分割
+     */
+    static List<Rect> mergeOverlapping(List<Rect> regions) {
+        List<Rect> merged = new ArrayList<>(regions);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int i = 0; i < merged.size() && !changed; i++) {
+                for (int j = i + 1; j < merged.size(); j++) {
+                    Rect a = merged.get(i);
+                    Rect b = merged.get(j);
+                    if (a.x < b.x + b.width && b.x < a.x + a.width && a.y < b.y + b.height && b.y < a.y + a.height) {
+                        int x1 = Math.min(a.x, b.x);
+                        int y1 = Math.min(a.y, b.y);
+                        int x2 = Math.max(a.x + a.width, b.x + b.width);
+                        int y2 = Math.max(a.y + a.height, b.y + b.height);
+                        merged.set(i, new Rect(x1, y1, x2 - x1, y2 - y1));
+                        merged.remove(j);
+                        changed = true;
+                        break;
+                    }
+                }
+            }
         }
+        merged.sort((a, b) -> a.y != b.y ? Integer.compare(a.y, b.y) : Integer.compare(a.x, b.x));
+        return merged;
+    }
 
-        /**
-         * 5. 对步骤4异或的结果再次进行边缘检测 #2
-         */
+    /**
+     * 在单个候选区域内识别单元格。
+     * <p>
+     * 各步骤在页面尺寸的工作区Mat的子矩阵(submat)上原地进行，不复制区域图像；结果坐标映射回整个页面。
+     *
+     * @param grayscaleMat  灰度图像
+     * @param region        候选区域
+     * @param regionIndex   区域序号，用于debug图像文件名
+     * @param ws            当前线程的工作区
+     * @param contourCounts 累加两次轮廓查找得到的轮廓数量
+     * @return 区域内的表格，单元格按所属的外轮廓分组
+     */
+    private List<DetectedTable> getCellRectangles(Mat grayscaleMat, Rect region, int regionIndex, Workspace ws,
+                                                  int[] contourCounts) {
+        List<Rect> cells = new ArrayList<>();
+        List<Rect> outlines;
+        String debugPrefix = String.format("region_%02d_", regionIndex);
+
+        Mat gray = grayscaleMat.submat(region);
+        Mat bit = ws.bit.submat(region);
+        Mat mask = ws.mask.submat(region);
+        Mat canny = settings.hasCannyFiltering() ? ws.canny.submat(region) : null;
+
+        List<MatOfPoint> contours = new ArrayList<>();
         List<MatOfPoint> contours2 = new ArrayList<>();
-        if (settings.hasCannyFiltering()) {
-            Mat canny2 = cannyFilter(xored);
-            findContours(canny2, contours2, new Mat(), RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+        try {
+            /**
+             * 3.1 查找轮廓
+             */
+            if (settings.hasCannyFiltering()) {
+
+                // 基于边缘检测图像
+                cannyFilter(gray, canny);
+                if (settings.hasDebugImages()) {// 输出边缘检测图像
+                    writeDebugImage(debugPrefix + "canny1", canny);
+                }
+
+
+                // Mat image：输入图像，必须为一个8位的二值图像
+                // List<MatOfPoint> contours：用于存储轮廓的容器
+                // Mat hierarchy：
+                //      hiararchy参数和轮廓个数相同，每个轮廓contours[ i ]对应4个hierarchy元素hierarchy[ i ][ 0 ] ~hierarchy[ i ][ 3 ]，分别表示后一个轮廓、前一个轮廓、父轮廓、内嵌轮廓的索引编号，如果没有对应项，该值设置为负数。
+                // int mode：轮廓检测的模式
+                //      RETR_EXTERNAL：只提取最外层的轮廓，查找外边缘，各边缘以指针h_next相连；
+                // int method：轮廓边缘的近似方法
+                //      CHAIN_APPROX_SIMPLE：压缩水平方向，垂直方向，对角线方向的元素，只保留该方向的终点坐标，例如一个矩形轮廓只需4个点来保存轮廓信息；
+                findContours(canny, contours, ws.hierarchy, RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+            } else {
+                // 基于二值化图像
+                findContours(bit, contours, ws.hierarchy, RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+            }
+            outlines = new ArrayList<>(contours.size());// 外轮廓即表格外框，保留边界矩形用于对单元格分组
+            for (MatOfPoint contour : contours) {
+                Rect outline = boundingRect(contour);
+                outline.x += region.x;
+                outline.y += region.y;
+                outlines.add(outline);
+            }
+
+            /**
+             * 3.2 用`CV_FILLED`(填充轮廓内部)绘制轮廓，得到表格的蒙版(mask)
+             */
+            // Mat image：输入图像，函数将在这张图像上绘制轮廓
+            // List<MatOfPoint> contours： 轮廓链表
+            // int contourIdx：绘制轮廓的最大层数
+            // Scalar color：颜色
+            // int thickness：轮廓线的宽度，如果为`CV_FILLED`则会填充轮廓内部
+            bit.copyTo(mask);
+            drawContours(mask, contours, -1, WHITE, Core.FILLED);
             if (settings.hasDebugImages()) {
-                imwrite(buildDebugFilename("canny2"), canny2);
+                writeDebugImage(debugPrefix + "contour_mask", mask);
             }
-        } else {
-            findContours(xored, contours2, new Mat(), RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
-        }
-        /**
-         * 6. 再次用`CV_FILLED`(填充轮廓内部)绘制轮廓 #2
-         */
-        if (settings.hasDebugImages()) {
-            Mat contourMask2 = grayscaleMat.clone();
-            drawContours(contourMask2, contours2, -1, new Scalar(255, 255, 255), Core.FILLED);
-            imwrite(buildDebugFilename("final_contours"), contourMask2);
-        }
 
-        /**
-         * 7. 计算轮廓的边界矩形或旋转矩形
-         */
-        for (int i = 0; i < contours2.size(); i++) {
-            MatOfPoint2f approxCurve = new MatOfPoint2f();
+            /**
+             * 3.3 二值图像和表格的mask异或，结果直接写回mask
+             */
+            bitwise_xor(bit, mask, mask);
+            if (settings.hasDebugImages()) {
+                writeDebugImage(debugPrefix + "xored", mask);
+            }
 
-            MatOfPoint2f contour2f = new MatOfPoint2f(contours2.get(i).toArray());
-            double approxDistance = arcLength(contour2f, true) * settings.getApproxDistScaleFactor();
-            approxPolyDP(contour2f, approxCurve, approxDistance, true);
+            /**
+             * 3.4 对步骤3.3异或的结果再次进行边缘检测 #2
+             */
+            if (settings.hasCannyFiltering()) {
+                cannyFilter(mask, canny);
+                findContours(canny, contours2, ws.hierarchy, RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+                if (settings.hasDebugImages()) {
+                    writeDebugImage(debugPrefix + "canny2", canny);
+                }
+            } else {
+                findContours(mask, contours2, ws.hierarchy, RETR_EXTERNAL, CHAIN_APPROX_SIMPLE);
+            }
+            contourCounts[0] += contours.size();
+            contourCounts[1] += contours2.size();
 
-            MatOfPoint points = new MatOfPoint(approxCurve.toArray());
-            Rect rect = boundingRect(points);
-            out.add(rect);
-        }
+            /**
+             * 3.5 再次用`CV_FILLED`(填充轮廓内部)绘制轮廓 #2
+             */
+            if (settings.hasDebugImages()) {
+                gray.copyTo(ws.debug);
+                drawContours(ws.debug, contours2, -1, WHITE, Core.FILLED);
+                writeDebugImage(debugPrefix + "final_contours", ws.debug);
+            }
 
-        Collections.reverse(out);
+            /**
+             * 3.6 计算轮廓的边界矩形或旋转矩形，坐标加上区域的偏移
+             */
+            for (int i = 0; i < contours2.size(); i++) {
+                // approxPolyDP只会从轮廓中挑选顶点，坐标仍为整数，转换回CV_32S不会损失精度
+                contours2.get(i).convertTo(ws.contour2f, CvType.CV_32F);
+                double approxDistance = arcLength(ws.contour2f, true) * settings.getApproxDistScaleFactor();
+                approxPolyDP(ws.contour2f, ws.approxCurve, approxDistance, true);
 
-        if (settings.hasDebugImages()) {
-            int index = 0;
-            for (Rect rect : out) {
-                Mat outImage = grayscaleMat.clone();
+                ws.approxCurve.convertTo(ws.points, CvType.CV_32S);
+                Rect rect = boundingRect(ws.points);
+                rect.x += region.x;
+                rect.y += region.y;
+                cells.add(rect);
+            }
+        } finally {
+            release(contours);
+            release(contours2);
+            gray.release();
+            bit.release();
+            mask.release();
+            if (canny != null) {
+                canny.release();
+            }
+        }
+        Collections.reverse(cells);// findContours按自下而上的顺序返回轮廓
+        return groupByOutline(cells, outlines);
+    }
+
+    /**
+     * 将每个单元格归入包含其中心点的最小外框。
+     * <p>
+     * 外框按面积升序排列，每个单元格从面积大于自身的外框开始查找，找到的第一个即为最小的外框；
+     * 文字等小轮廓面积小于单元格，直接跳过。没有外框包含的单元格（例如中心点落在不规则单元格之外）各自作为一个表格
+     *
+     * @param cells    单元格
+     * @param outlines 外轮廓的边界矩形
+     * @return 按外框分组的表格，顺序与外框首次出现的单元格顺序一致
+     */
+    static List<DetectedTable> groupByOutline(List<Rect> cells, List<Rect> outlines) {
+        Rect[] sorted = outlines.toArray(new Rect[0]);
+        Arrays.sort(sorted, Comparator.comparingDouble(Rect::area));
+        double[] areas = new double[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            areas[i] = sorted[i].area();
+        }
 
-                Point p1 = new Point(rect.x, rect.y);
-                Point p2 = new Point(rect.x + rect.width, rect.y + rect.height);
-                rectangle(outImage, p1, p2, new Scalar(0, 0, 0, 255), 3);
-                imwrite(buildDebugFilename(String.format("box_%03d", index)), outImage);
-                index++;
+        Map<Rect, List<Rect>> groups = new LinkedHashMap<>();// 外框 -> 单元格，按插入顺序
+        List<DetectedTable> orphans = new ArrayList<>();
+        for (Rect cell : cells) {
+            double cx = cell.x + cell.width / 2.0;
+            double cy = cell.y + cell.height / 2.0;
+            int i = Arrays.binarySearch(areas, cell.area());
+            i = i >= 0 ? i : -i - 1;
+            while (i > 0 && areas[i - 1] >= cell.area()) {// 面积相同的外框可能排在前面
+                i--;
+            }
+            Rect parent = null;
+            for (; i < sorted.length; i++) {
+                Rect outline = sorted[i];
+                if (cx >= outline.x && cx < outline.x + outline.width && cy >= outline.y && cy < outline.y + outline.height) {
+                    parent = outline;
+                    break;
+                }
+            }
+            if (parent == null) {
+                orphans.add(DetectedTable.of(new ArrayList<>(Collections.singletonList(cell))));
+            } else {
+                groups.computeIfAbsent(parent, k -> new ArrayList<>()).add(cell);
             }
         }
 
+        List<DetectedTable> out = new ArrayList<>(groups.size() + orphans.size());
+        for (Map.Entry<Rect, List<Rect>> group : groups.entrySet()) {
+            out.add(new DetectedTable(group.getKey(), group.getValue()));
+        }
+        out.addAll(orphans);
         return out;
     }
 
+    /**
+     * 把灰度图像转换为彩色图像，并画出所有表格外框（蓝色）和单元格（红色）
+     *
+     * @param grayscaleMat 灰度图像
+     * @param tables       识别出的表格
+     * @param out          输出的BGR图像
+     */
+    static void drawTables(Mat grayscaleMat, List<DetectedTable> tables, Mat out) {
+        cvtColor(grayscaleMat, out, COLOR_GRAY2BGR);
+        for (DetectedTable table : tables) {
+            Rect bounds = table.getBounds();
+            rectangle(out, bounds.tl(), bounds.br(), TABLE_COLOR, 5);
+            for (Rect rect : table.getCells()) {
+                rectangle(out, rect.tl(), rect.br(), CELL_COLOR, 2);
+            }
+        }
+    }
+
+    /**
+     * 释放当前线程的工作区占用的native内存。
+     * <p>
+     * {@link com.trekkiii.pdf.table.analysis.PdfTableParser}在每次公开的解析调用结束时调用；之后再次解析时会重新分配
+     */
+    public static void releaseWorkspace() {
+        WORKSPACE.get().release();
+        WORKSPACE.remove();
+    }
+
     /**
      * 将Binary Inverted Threshold (BIT) 应用于Mat图像。图像二值化，将灰度图转换为黑白图
      *
      * @param input Input image
-     * @return 应用Binary Inverted Threshold (BIT) 的org.opencv.core.Mat image
+     * @param out   输出图像，尺寸与input不同时重新分配
      */
-    private Mat binaryInvertedThreshold(Mat input) {
-        Mat out = new Mat();
+    private void binaryInvertedThreshold(Mat input, Mat out) {
         threshold(input, out, settings.getBitThreshold(), settings.getBitMaxVal(), THRESH_BINARY_INV);
-        return out;
     }
 
     /**
      * 将Canny边缘检测应用于Mat图像
      *
      * @param input Input image
-     * @return 应用Canny边缘检测的org.opencv.core.Mat image
+     * @param out   输出图像，尺寸与input不同时重新分配
      */
-    private Mat cannyFilter(Mat input) {
-        Mat out = new Mat();
+    private void cannyFilter(Mat input, Mat out) {
         Canny(input, out,
                 settings.getCannyThreshold1(), settings.getCannyThreshold2(), settings.getCannyApertureSize(), settings.hasCannyL2Gradient());
-        return out;
+    }
+
+    private static void release(List<MatOfPoint> contours) {
+        for (MatOfPoint contour : contours) {
+            contour.release();
+        }
+        contours.clear();
+    }
+
+    /**
+     * 单个线程复用的中间图像。
+     * <p>
+     * OpenCV的输出Mat尺寸和类型不变时直接复用原有内存，因此连续解析相同尺寸的页面时不再分配native内存，
+     * 也不依赖GC回收Java包装对象来释放native内存。
+     */
+    private static class Workspace {
+
+        final Mat bit = new Mat();
+        final Mat canny = new Mat();
+        final Mat mask = new Mat();// 表格蒙版，异或后存放单元格图像
+        final Mat hierarchy = new Mat();
+        final Mat small = new Mat();// 缩小后的二值图像，用于查找表格候选区域
+        final Mat lines = new Mat();// 缩小后的图像中的长线段
+        final Mat debug = new Mat();
+        final MatOfPoint2f contour2f = new MatOfPoint2f();
+        final MatOfPoint2f approxCurve = new MatOfPoint2f();
+        final MatOfPoint points = new MatOfPoint();
+
+        void release() {
+            bit.release();
+            canny.release();
+            mask.release();
+            hierarchy.release();
+            small.release();
+            lines.release();
+            debug.release();
+            contour2f.release();
+            approxCurve.release();
+            points.release();
+        }
+    }
+
+    /**
+     * 复制图像并交给{@code settings.getDebugImageWriter()}在后台写出，
+     * 队列已满时丢弃（{@code settings.hasCompleteDebugImages()}为true时直接写出）
+     *
+     * @param suffix Image filename 后缀
+     * @param image  图像，调用后可以立即修改
+     */
+    private void writeDebugImage(String suffix, Mat image) {
+        settings.getDebugImageWriter().write(buildDebugFilename(suffix), image, !settings.hasCompleteDebugImages());
     }
 
     /**
@@ -0,0 +1,161 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * 以Apache Arrow IPC流格式写出解析结果。
+ * <p>
+ * 每个单元格一条记录，字段为page、table、表格内的row、column（均从1开始）、x、y、width、height（单位为1/72英寸，原点在页面左上角）、
+ * 网格位置grid_row、grid_column（从1开始）、合并单元格跨越的row_span、column_span以及text（UTF-8）。每个页面写为一个record batch，解析失败或没有单元格的页面不输出。
+ * 单元格文本直接从{@link CompactTable}编码到可复用的字节数组，再复制到Arrow缓冲区。
+ * <p>
+ * Arrow是可选依赖，使用本类时需要引入{@code org.apache.arrow:arrow-vector}以及一个内存实现，
+ * 例如{@code org.apache.arrow:arrow-memory-unsafe}。
+ */
+public class ArrowTablePageWriter implements TablePageWriter {
+
+    public static final Schema SCHEMA = new Schema(Arrays.asList(
+            intField("page"), intField("table"), intField("row"), intField("column"),
+            intField("x"), intField("y"), intField("width"), intField("height"),
+            intField("grid_row"), intField("grid_column"), intField("row_span"), intField("column_span"),
+            new Field("text", FieldType.notNullable(ArrowType.Utf8.INSTANCE), null)));
+
+    private final BufferAllocator allocator;
+    private final VectorSchemaRoot root;
+    private final ArrowStreamWriter writer;
+    private final IntVector page;
+    private final IntVector tableIndex;
+    private final IntVector row;
+    private final IntVector column;
+    private final IntVector x;
+    private final IntVector y;
+    private final IntVector width;
+    private final IntVector height;
+    private final IntVector gridRow;
+    private final IntVector gridColumn;
+    private final IntVector rowSpan;
+    private final IntVector columnSpan;
+    private final VarCharVector text;
+
+    private final CellChars cellChars = new CellChars();
+    private byte[] utf8 = new byte[256];
+
+    public ArrowTablePageWriter(WritableByteChannel channel) throws IOException {
+        this.allocator = new RootAllocator();
+        this.root = VectorSchemaRoot.create(SCHEMA, allocator);
+        this.page = (IntVector) root.getVector("page");
+        this.tableIndex = (IntVector) root.getVector("table");
+        this.row = (IntVector) root.getVector("row");
+        this.column = (IntVector) root.getVector("column");
+        this.x = (IntVector) root.getVector("x");
+        this.y = (IntVector) root.getVector("y");
+        this.width = (IntVector) root.getVector("width");
+        this.height = (IntVector) root.getVector("height");
+        this.gridRow = (IntVector) root.getVector("grid_row");
+        this.gridColumn = (IntVector) root.getVector("grid_column");
+        this.rowSpan = (IntVector) root.getVector("row_span");
+        this.columnSpan = (IntVector) root.getVector("column_span");
+        this.text = (VarCharVector) root.getVector("text");
+        this.writer = new ArrowStreamWriter(root, null, channel);
+        try {
+            writer.start();
+        } catch (IOException | RuntimeException e) {
+            writer.close();
+            root.close();
+            allocator.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(ParsedTablePage parsedPage) throws IOException {
+        int count = parsedPage.getCellCount();
+        if (parsedPage.hasError() || count == 0) {
+            return;
+        }
+
+        for (FieldVector vector : root.getFieldVectors()) {
+            vector.reset();// 复用上一批次分配的缓冲区
+        }
+        int i = 0;
+        for (ParsedTable parsedTable : parsedPage.getTables()) {
+            CompactTable table = parsedTable.getCells();
+            for (int cell = 0; cell < table.getCellCount(); cell++, i++) {
+                page.setSafe(i, parsedPage.getPageNum());
+                tableIndex.setSafe(i, parsedTable.getIndex() + 1);
+                row.setSafe(i, table.getRow(cell) + 1);
+                column.setSafe(i, table.getColumn(cell) + 1);
+                x.setSafe(i, table.getX(cell));
+                y.setSafe(i, table.getY(cell));
+                width.setSafe(i, table.getWidth(cell));
+                height.setSafe(i, table.getHeight(cell));
+                gridRow.setSafe(i, table.getGridRow(cell) + 1);
+                gridColumn.setSafe(i, table.getGridColumn(cell) + 1);
+                rowSpan.setSafe(i, table.getRowSpan(cell));
+                columnSpan.setSafe(i, table.getColumnSpan(cell));
+                text.setSafe(i, utf8, 0, encode(cellChars.reset(table, cell)));
+            }
+        }
+        root.setRowCount(count);
+        writer.writeBatch();
+    }
+
+    /**
+     * 将文本编码到utf8数组中
+     *
+     * @return 编码后的字节数
+     */
+    private int encode(CharSequence chars) {
+        int capacity = chars.length() * 3;// 代理对编码为4个字节，每个char不超过3个字节
+        if (utf8.length < capacity) {
+            utf8 = new byte[Math.max(capacity, utf8.length * 2)];
+        }
+        int length = 0;
+        for (int i = 0; i < chars.length(); ) {
+            int codePoint = Utf8.codePointAt(chars, i);
+            i += Character.charCount(codePoint);
+            length = Utf8.encode(codePoint, utf8, length);
+        }
+        return length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // ArrowStreamWriter写完每个batch后已经写入通道
+    }
+
+    /**
+     * 写出流结束标记并关闭通道
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.end();
+        } finally {
+            writer.close();
+            root.close();
+            allocator.close();
+        }
+    }
+
+    private static Field intField(String name) {
+        return new Field(name, FieldType.notNullable(new ArrowType.Int(32, true)), null);
+    }
+}
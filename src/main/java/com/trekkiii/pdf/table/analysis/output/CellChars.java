@@ -0,0 +1,40 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+
+/**
+ * 单元格文本的可复用视图，{@link #reset(CompactTable, int)}后指向另一个单元格，逐个单元格编码时不分配内存
+ */
+final class CellChars implements CharSequence {
+
+    private CompactTable table;
+    private int cell;
+    private int length;
+
+    CellChars reset(CompactTable table, int cell) {
+        this.table = table;
+        this.cell = cell;
+        this.length = table.getTextLength(cell);
+        return this;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return table.getChar(cell, index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return table.getText(cell);
+    }
+}
@@ -0,0 +1,78 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 以CSV（RFC 4180）格式写出解析结果。
+ * <p>
+ * 每行一个表格行：页码、表格序号、表格内的行号（均从1开始）以及各单元格文本，以逗号分隔，行尾为CRLF；
+ * 包含逗号、双引号或换行符的单元格用双引号括起，其中的双引号写为两个双引号。
+ * 各行的单元格数量可能不同，因此没有表头。解析失败的页面不输出任何行。
+ */
+public class CsvTablePageWriter extends TextTablePageWriter {
+
+    private boolean quoting;
+
+    public CsvTablePageWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel    输出通道
+     * @param bufferSize 缓冲区大小（字节）
+     */
+    public CsvTablePageWriter(WritableByteChannel channel, int bufferSize) {
+        super(channel, bufferSize);
+    }
+
+    @Override
+    public void write(ParsedTablePage page) throws IOException {
+        for (ParsedTable parsedTable : page.getTables()) {
+            CompactTable table = parsedTable.getCells();
+            for (int row = 0; row < table.getRowCount(); row++) {
+                writeInt(page.getPageNum());
+                writeByte(',');
+                writeInt(parsedTable.getIndex() + 1);
+                writeByte(',');
+                writeInt(row + 1);
+                int end = table.getRowStart(row) + table.getRowSize(row);
+                for (int cell = table.getRowStart(row); cell < end; cell++) {
+                    writeByte(',');
+                    quoting = needsQuotes(cellChars(table, cell));
+                    if (quoting) {
+                        writeByte('"');
+                    }
+                    writeText(table, cell);
+                    if (quoting) {
+                        writeByte('"');
+                    }
+                }
+                writeByte('\r');
+                writeByte('\n');
+            }
+        }
+    }
+
+    @Override
+    protected void writeAscii(char c) throws IOException {
+        if (c == '"' && quoting) {
+            writeByte('"');
+        }
+        writeByte(c);
+    }
+
+    private static boolean needsQuotes(CharSequence chars) {
+        for (int i = 0; i < chars.length(); i++) {
+            char c = chars.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return true;
+            }
+        }
+        return false;
+    }
+}
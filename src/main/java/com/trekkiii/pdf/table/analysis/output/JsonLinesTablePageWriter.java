@@ -0,0 +1,115 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 以JSON Lines格式写出解析结果，每个页面一行：
+ * <pre>
+ * {"page":1,"dpi":300,"tables":[{"bounds":[36,72,520,300],"rows":[["a","b"],["c"]]}]}
+ * {"page":2,"error":"java.io.IOException: ..."}
+ * </pre>
+ * bounds为表格外框的x、y、width、height（1/72英寸，原点在页面左上角）。解析失败的页面只有page和error两个字段。字符串按RFC 8259转义，非ASCII字符直接以UTF-8写出。
+ */
+public class JsonLinesTablePageWriter extends TextTablePageWriter {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    public JsonLinesTablePageWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel    输出通道
+     * @param bufferSize 缓冲区大小（字节）
+     */
+    public JsonLinesTablePageWriter(WritableByteChannel channel, int bufferSize) {
+        super(channel, bufferSize);
+    }
+
+    @Override
+    public void write(ParsedTablePage page) throws IOException {
+        writeRaw("{\"page\":");
+        writeInt(page.getPageNum());
+        if (page.hasError()) {
+            writeRaw(",\"error\":\"");
+            writeText(String.valueOf(page.getError()));
+            writeRaw("\"}\n");
+            return;
+        }
+        writeRaw(",\"dpi\":");
+        writeInt(page.getDpi());
+        writeRaw(",\"tables\":[");
+        for (ParsedTable parsedTable : page.getTables()) {
+            if (parsedTable.getIndex() > 0) {
+                writeByte(',');
+            }
+            writeTable(parsedTable);
+        }
+        writeRaw("]}\n");
+    }
+
+    private void writeTable(ParsedTable parsedTable) throws IOException {
+        writeRaw("{\"bounds\":[");
+        writeInt(parsedTable.getX());
+        writeByte(',');
+        writeInt(parsedTable.getY());
+        writeByte(',');
+        writeInt(parsedTable.getWidth());
+        writeByte(',');
+        writeInt(parsedTable.getHeight());
+        writeRaw("],\"rows\":[");
+        CompactTable table = parsedTable.getCells();
+        for (int row = 0; row < table.getRowCount(); row++) {
+            if (row > 0) {
+                writeByte(',');
+            }
+            writeByte('[');
+            int start = table.getRowStart(row);
+            int end = start + table.getRowSize(row);
+            for (int cell = start; cell < end; cell++) {
+                if (cell > start) {
+                    writeByte(',');
+                }
+                writeByte('"');
+                writeText(table, cell);
+                writeByte('"');
+            }
+            writeByte(']');
+        }
+        writeRaw("]}");
+    }
+
+    @Override
+    protected void writeAscii(char c) throws IOException {
+        switch (c) {
+            case '"':
+                writeRaw("\\\"");
+                break;
+            case '\\':
+                writeRaw("\\\\");
+                break;
+            case '\n':
+                writeRaw("\\n");
+                break;
+            case '\r':
+                writeRaw("\\r");
+                break;
+            case '\t':
+                writeRaw("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    writeRaw("\\u00");
+                    writeByte(HEX[c >> 4]);
+                    writeByte(HEX[c & 0xF]);
+                } else {
+                    writeByte(c);
+                }
+        }
+    }
+}
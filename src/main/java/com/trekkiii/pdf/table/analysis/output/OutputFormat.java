@@ -0,0 +1,64 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+/**
+ * 支持的输出格式
+ */
+public enum OutputFormat {
+
+    TSV(".tsv"),
+    CSV(".csv"),
+    JSONL(".jsonl"),
+    ARROW(".arrow");
+
+    private final String extension;
+
+    OutputFormat(String extension) {
+        this.extension = extension;
+    }
+
+    /**
+     * @return 结果文件的扩展名，包含"."
+     */
+    public String getExtension() {
+        return extension;
+    }
+
+    /**
+     * 创建写出到channel的{@link TablePageWriter}
+     *
+     * @param channel 输出通道，关闭writer时一并关闭
+     * @return writer
+     * @throws IOException
+     */
+    public TablePageWriter open(WritableByteChannel channel) throws IOException {
+        switch (this) {
+            case CSV:
+                return new CsvTablePageWriter(channel);
+            case JSONL:
+                return new JsonLinesTablePageWriter(channel);
+            case ARROW:
+                return new ArrowTablePageWriter(channel);
+            default:
+                return new TsvTablePageWriter(channel);
+        }
+    }
+
+    /**
+     * 按名称（不区分大小写）查找格式
+     *
+     * @param name tsv、csv、jsonl或arrow
+     * @return 格式
+     * @throws IllegalArgumentException 不支持的格式
+     */
+    public static OutputFormat of(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("unknown output format: " + name);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.function.Consumer;
+
+/**
+ * 将解析结果逐页写出。
+ * <p>
+ * 每解析完一页即可调用{@link #write(ParsedTablePage)}，不需要先收集整个文档的结果。
+ * 实现直接从{@link com.trekkiii.pdf.table.analysis.models.CompactTable}读取单元格，编码到可复用的缓冲区后写入通道，
+ * 不为单元格创建中间字符串。{@link #close()}会关闭底层通道。
+ * <p>
+ * 非线程安全。{@code PdfTableParser.parsePdfPages(..., Consumer)}按页码顺序在调用线程中交付结果，可以直接配合使用：
+ * <pre>
+ * try (TablePageWriter writer = new CsvTablePageWriter(channel)) {
+ *     parser.parsePdfPages(file, writer.asConsumer());
+ * }
+ * </pre>
+ */
+public interface TablePageWriter extends Closeable {
+
+    /**
+     * 写出一个页面的解析结果
+     *
+     * @param page 解析结果
+     * @throws IOException 写入失败
+     */
+    void write(ParsedTablePage page) throws IOException;
+
+    /**
+     * 将缓冲区中的数据写入通道
+     *
+     * @throws IOException 写入失败
+     */
+    void flush() throws IOException;
+
+    /**
+     * @return 调用{@link #write(ParsedTablePage)}的Consumer，写入失败时抛出{@link UncheckedIOException}
+     */
+    default Consumer<ParsedTablePage> asConsumer() {
+        return page -> {
+            try {
+                write(page);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+}
@@ -0,0 +1,125 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 文本格式写出的基类：维护固定大小的字节缓冲区，将字符直接编码为UTF-8，缓冲区满时写入通道。
+ * 子类通过{@link #writeAscii(char)}处理各自格式中需要转义的ASCII字符。
+ */
+abstract class TextTablePageWriter implements TablePageWriter {
+
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final byte[] buffer;
+    private final ByteBuffer byteBuffer;
+    private int position;
+    private final byte[] digits = new byte[11];
+    private final CellChars cellChars = new CellChars();
+
+    TextTablePageWriter(WritableByteChannel channel, int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("bufferSize must be >= 16: " + bufferSize);
+        }
+        this.channel = channel;
+        this.buffer = new byte[bufferSize];
+        this.byteBuffer = ByteBuffer.wrap(buffer);
+    }
+
+    /**
+     * 写出一个ASCII字符，子类按格式要求转义
+     */
+    protected void writeAscii(char c) throws IOException {
+        writeByte(c);
+    }
+
+    protected final void writeByte(int b) throws IOException {
+        if (position == buffer.length) {
+            flushBuffer();
+        }
+        buffer[position++] = (byte) b;
+    }
+
+    /**
+     * 原样写出只包含ASCII字符的字符串，不经过{@link #writeAscii(char)}
+     */
+    protected final void writeRaw(String ascii) throws IOException {
+        for (int i = 0; i < ascii.length(); i++) {
+            writeByte(ascii.charAt(i));
+        }
+    }
+
+    protected final void writeInt(int value) throws IOException {
+        if (value == Integer.MIN_VALUE) {
+            writeRaw(Integer.toString(value));
+            return;
+        }
+        if (value < 0) {
+            writeByte('-');
+            value = -value;
+        }
+        int i = digits.length;
+        do {
+            digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        while (i < digits.length) {
+            writeByte(digits[i++]);
+        }
+    }
+
+    /**
+     * 写出单元格文本
+     */
+    protected final void writeText(CompactTable table, int cell) throws IOException {
+        writeText(cellChars.reset(table, cell));
+    }
+
+    /**
+     * 写出文本，ASCII字符交给{@link #writeAscii(char)}，其它字符编码为UTF-8
+     */
+    protected final void writeText(CharSequence chars) throws IOException {
+        for (int i = 0; i < chars.length(); ) {
+            int codePoint = Utf8.codePointAt(chars, i);
+            i += Character.charCount(codePoint);
+            if (codePoint < 0x80) {
+                writeAscii((char) codePoint);
+            } else {
+                if (buffer.length - position < 4) {
+                    flushBuffer();
+                }
+                position = Utf8.encode(codePoint, buffer, position);
+            }
+        }
+    }
+
+    protected final CellChars cellChars(CompactTable table, int cell) {
+        return cellChars.reset(table, cell);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        byteBuffer.clear().limit(position);
+        while (byteBuffer.hasRemaining()) {
+            channel.write(byteBuffer);
+        }
+        position = 0;
+    }
+}
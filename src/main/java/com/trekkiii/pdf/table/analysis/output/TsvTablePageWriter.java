@@ -0,0 +1,70 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+
+import java.io.IOException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 以制表符分隔的格式写出解析结果。
+ * <p>
+ * 每行一个表格行：页码、表格序号、表格内的行号（均从1开始）以及各单元格文本，以制表符分隔，行尾为LF；
+ * 单元格中的反斜杠、制表符和换行符分别转义为{@code \\}、{@code \t}、{@code \n}、{@code \r}。
+ * 解析失败的页面不输出任何行。
+ */
+public class TsvTablePageWriter extends TextTablePageWriter {
+
+    public TsvTablePageWriter(WritableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param channel    输出通道
+     * @param bufferSize 缓冲区大小（字节）
+     */
+    public TsvTablePageWriter(WritableByteChannel channel, int bufferSize) {
+        super(channel, bufferSize);
+    }
+
+    @Override
+    public void write(ParsedTablePage page) throws IOException {
+        for (ParsedTable parsedTable : page.getTables()) {
+            CompactTable table = parsedTable.getCells();
+            for (int row = 0; row < table.getRowCount(); row++) {
+                writeInt(page.getPageNum());
+                writeByte('\t');
+                writeInt(parsedTable.getIndex() + 1);
+                writeByte('\t');
+                writeInt(row + 1);
+                int end = table.getRowStart(row) + table.getRowSize(row);
+                for (int cell = table.getRowStart(row); cell < end; cell++) {
+                    writeByte('\t');
+                    writeText(table, cell);
+                }
+                writeByte('\n');
+            }
+        }
+    }
+
+    @Override
+    protected void writeAscii(char c) throws IOException {
+        switch (c) {
+            case '\\':
+                writeRaw("\\\\");
+                break;
+            case '\t':
+                writeRaw("\\t");
+                break;
+            case '\n':
+                writeRaw("\\n");
+                break;
+            case '\r':
+                writeRaw("\\r");
+                break;
+            default:
+                writeByte(c);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+/**
+ * UTF-8编码工具，逐个码点编码到调用者提供的数组中，不分配内存
+ */
+final class Utf8 {
+
+    /**
+     * 无法编码的孤立代理字符替换为'?'，与{@link String#getBytes(java.nio.charset.Charset)}一致
+     */
+    static final int REPLACEMENT = '?';
+
+    private Utf8() {
+    }
+
+    /**
+     * @param chars 字符序列
+     * @param index 位置
+     * @return index处的码点，孤立的代理字符返回{@link #REPLACEMENT}；
+     * 调用者按{@link Character#charCount(int)}前进
+     */
+    static int codePointAt(CharSequence chars, int index) {
+        char c = chars.charAt(index);
+        if (Character.isHighSurrogate(c)) {
+            if (index + 1 < chars.length() && Character.isLowSurrogate(chars.charAt(index + 1))) {
+                return Character.toCodePoint(c, chars.charAt(index + 1));
+            }
+            return REPLACEMENT;
+        }
+        return Character.isLowSurrogate(c) ? REPLACEMENT : c;
+    }
+
+    /**
+     * 编码一个码点，dst中至少需要有4个字节的空间
+     *
+     * @return 写入后的位置
+     */
+    static int encode(int codePoint, byte[] dst, int offset) {
+        if (codePoint < 0x80) {
+            dst[offset++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            dst[offset++] = (byte) (0xC0 | (codePoint >> 6));
+            dst[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            dst[offset++] = (byte) (0xE0 | (codePoint >> 12));
+            dst[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            dst[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+        } else {
+            dst[offset++] = (byte) (0xF0 | (codePoint >> 18));
+            dst[offset++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+            dst[offset++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+            dst[offset++] = (byte) (0x80 | (codePoint & 0x3F));
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,48 @@
+package com.trekkiii.pdf.table.analysis.render;
+
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.apache.pdfbox.rendering.PageDrawer;
+import org.apache.pdfbox.rendering.PageDrawerParameters;
+
+import java.io.IOException;
+
+/**
+ * 只绘制路径（描边和填充）的{@link PDFRenderer}，文字、图像XObject、内联图像和渐变填充（sh）都不绘制。
+ * <p>
+ * 单元格文本按PDF坐标提取，页面图像只用于识别表格线，因此文字和图片只会增加渲染时间和干扰。
+ * 表格线只存在于图像中（例如扫描件）时，使用该渲染器无法识别出表格
+ */
+public class LineArtRenderer extends PDFRenderer {
+
+    public LineArtRenderer(PDDocument document) {
+        super(document);
+    }
+
+    @Override
+    protected PageDrawer createPageDrawer(PageDrawerParameters parameters) throws IOException {
+        return new LineArtPageDrawer(parameters);
+    }
+
+    private static class LineArtPageDrawer extends PageDrawer {
+
+        LineArtPageDrawer(PageDrawerParameters parameters) throws IOException {
+            super(parameters);
+        }
+
+        @Override
+        protected void showText(byte[] string) {
+            // 不绘制文字，也省去了字形的解码和轮廓计算
+        }
+
+        @Override
+        public void drawImage(PDImage pdImage) {
+        }
+
+        @Override
+        public void shadingFill(COSName shadingName) {
+        }
+    }
+}
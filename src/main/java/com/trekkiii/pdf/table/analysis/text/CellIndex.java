@@ -0,0 +1,107 @@
+package com.trekkiii.pdf.table.analysis.text;
+
+import java.awt.geom.Rectangle2D;
+import java.util.List;
+
+/**
+ * 单元格的均匀网格索引。
+ * <p>
+ * 将所有单元格的外接区域划分为大小约等于平均单元格尺寸的网格桶，每个单元格登记在它覆盖的所有桶中。
+ * 查询某个点时只需返回该点所在桶中的单元格，表格单元格互不重叠时通常只有一两个候选。
+ */
+class CellIndex {
+
+    // 网格桶总数上限（相对单元格数量），避免个别很小的单元格导致网格过密
+    private static final int MAX_BUCKETS_PER_CELL = 4;
+
+    private final double minX;
+    private final double minY;
+    private final double bucketWidth;
+    private final double bucketHeight;
+    private final int columns;
+    private final int rows;
+    private final int[][] buckets;
+
+    CellIndex(List<Rectangle2D> cells) {
+        if (cells.isEmpty()) {
+            minX = minY = 0;
+            bucketWidth = bucketHeight = 1;
+            columns = rows = 0;
+            buckets = new int[0][];
+            return;
+        }
+
+        double x1 = Double.MAX_VALUE, y1 = Double.MAX_VALUE;
+        double x2 = -Double.MAX_VALUE, y2 = -Double.MAX_VALUE;
+        double widthSum = 0, heightSum = 0;
+        for (Rectangle2D cell : cells) {
+            x1 = Math.min(x1, cell.getMinX());
+            y1 = Math.min(y1, cell.getMinY());
+            x2 = Math.max(x2, cell.getMaxX());
+            y2 = Math.max(y2, cell.getMaxY());
+            widthSum += cell.getWidth();
+            heightSum += cell.getHeight();
+        }
+        minX = x1;
+        minY = y1;
+
+        double bw = Math.max(widthSum / cells.size(), 1);
+        double bh = Math.max(heightSum / cells.size(), 1);
+        long maxBuckets = (long) cells.size() * MAX_BUCKETS_PER_CELL;
+        while ((long) Math.ceil((x2 - x1) / bw) * (long) Math.ceil((y2 - y1) / bh) > maxBuckets) {
+            bw *= 2;
+            bh *= 2;
+        }
+        bucketWidth = bw;
+        bucketHeight = bh;
+        columns = Math.max(1, (int) Math.ceil((x2 - x1) / bw));
+        rows = Math.max(1, (int) Math.ceil((y2 - y1) / bh));
+
+        // 先统计每个桶中的单元格数量，再填充，避免为每个桶创建List
+        int[] counts = new int[columns * rows];
+        for (Rectangle2D cell : cells) {
+            for (int row = row(cell.getMinY()); row <= row(cell.getMaxY()); row++) {
+                for (int col = column(cell.getMinX()); col <= column(cell.getMaxX()); col++) {
+                    counts[row * columns + col]++;
+                }
+            }
+        }
+        buckets = new int[columns * rows][];
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = counts[i] == 0 ? null : new int[counts[i]];
+            counts[i] = 0;
+        }
+        for (int i = 0; i < cells.size(); i++) {
+            Rectangle2D cell = cells.get(i);
+            for (int row = row(cell.getMinY()); row <= row(cell.getMaxY()); row++) {
+                for (int col = column(cell.getMinX()); col <= column(cell.getMaxX()); col++) {
+                    int bucket = row * columns + col;
+                    buckets[bucket][counts[bucket]++] = i;
+                }
+            }
+        }
+    }
+
+    /**
+     * 返回可能包含点(x, y)的单元格编号（按添加顺序），点不在任何单元格附近时返回null
+     */
+    int[] candidates(double x, double y) {
+        if (buckets.length == 0) {
+            return null;
+        }
+        int col = (int) Math.floor((x - minX) / bucketWidth);
+        int row = (int) Math.floor((y - minY) / bucketHeight);
+        if (col < 0 || row < 0 || col >= columns || row >= rows) {
+            return null;
+        }
+        return buckets[row * columns + col];
+    }
+
+    private int column(double x) {
+        return Math.min(columns - 1, Math.max(0, (int) Math.floor((x - minX) / bucketWidth)));
+    }
+
+    private int row(double y) {
+        return Math.min(rows - 1, Math.max(0, (int) Math.floor((y - minY) / bucketHeight)));
+    }
+}
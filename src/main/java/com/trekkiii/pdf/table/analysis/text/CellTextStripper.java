@@ -0,0 +1,112 @@
+package com.trekkiii.pdf.table.analysis.text;
+
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.apache.pdfbox.text.PDFTextStripperByArea;
+import org.apache.pdfbox.text.TextPosition;
+
+import java.awt.geom.Rectangle2D;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按单元格提取页面文本，输出与{@link PDFTextStripperByArea}逐个区域提取的结果相同。
+ * <p>
+ * {@link PDFTextStripperByArea}对每个字符都要遍历所有区域，复杂度为 O(字符数 x 单元格数)。
+ * 这里在提取前为单元格建立网格索引（{@link CellIndex}），每个字符只与所在网格桶中的少数单元格比较，
+ * 整页文本只处理一遍，耗时与字符数成线性关系。
+ */
+public class CellTextStripper extends PDFTextStripper {
+
+    private final List<Rectangle2D> cells = new ArrayList<>();
+    private List<ArrayList<List<TextPosition>>> cellCharacters;
+    private List<StringWriter> cellText;
+    private CellIndex index;
+
+    public CellTextStripper() throws IOException {
+        super();
+        super.setShouldSeparateByBeads(false);
+    }
+
+    /**
+     * 单元格与文章分栏(bead)不兼容，总是忽略bead
+     */
+    @Override
+    public final void setShouldSeparateByBeads(boolean aShouldSeparateByBeads) {
+    }
+
+    /**
+     * 添加单元格
+     *
+     * @param rect 单元格区域，坐标单位为1/72英寸，原点在页面左上角
+     * @return 单元格编号，从0开始按添加顺序递增，用于{@link #getTextForCell(int)}
+     */
+    public int addCell(Rectangle2D rect) {
+        cells.add(rect);
+        return cells.size() - 1;
+    }
+
+    public int getCellCount() {
+        return cells.size();
+    }
+
+    /**
+     * 获取单元格的文本，应在{@link #extractCells(PDPage)}之后调用
+     *
+     * @param cell 单元格编号
+     * @return 单元格文本
+     */
+    public String getTextForCell(int cell) {
+        return cellText.get(cell).toString();
+    }
+
+    /**
+     * 处理页面，提取所有单元格的文本
+     *
+     * @param page PDF页面
+     * @throws IOException
+     */
+    public void extractCells(PDPage page) throws IOException {
+        setStartPage(getCurrentPageNo());
+        setEndPage(getCurrentPageNo());
+
+        cellCharacters = new ArrayList<>(cells.size());
+        cellText = new ArrayList<>(cells.size());
+        for (int i = 0; i < cells.size(); i++) {
+            ArrayList<List<TextPosition>> charactersByCell = new ArrayList<>();
+            charactersByCell.add(new ArrayList<>());
+            cellCharacters.add(charactersByCell);
+            cellText.add(new StringWriter());
+        }
+        index = new CellIndex(cells);
+
+        if (page.hasContents()) {
+            processPage(page);
+        }
+    }
+
+    @Override
+    protected void processTextPosition(TextPosition text) {
+        int[] candidates = index.candidates(text.getX(), text.getY());
+        if (candidates == null) {
+            return;
+        }
+        for (int cell : candidates) {
+            if (cells.get(cell).contains(text.getX(), text.getY())) {
+                charactersByArticle = cellCharacters.get(cell);
+                super.processTextPosition(text);
+            }
+        }
+    }
+
+    @Override
+    protected void writePage() throws IOException {
+        for (int cell = 0; cell < cells.size(); cell++) {
+            charactersByArticle = cellCharacters.get(cell);
+            output = cellText.get(cell);
+            super.writePage();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.trekkiii.pdf.table.analysis.utils;
+
+import org.apache.pdfbox.cos.*;
+import org.apache.pdfbox.pdmodel.PDPage;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 计算PDF对象图的SHA-256摘要。
+ * <p>
+ * 从指定的对象开始递归遍历字典、数组和流（流使用未解码的原始字节），字典按键名排序，
+ * 因此结果只取决于对象内容，与文件中的对象编号、交叉引用表以及保存时间无关。
+ * 重复访问的对象（包括循环引用）只记录其首次访问的序号。
+ * <p>
+ * 非线程安全，每次计算使用一个实例。
+ */
+public class CosDigest {
+
+    // 页面字典中跳过的键：/Parent指向页面树，注释单独计算
+    private static final Set<COSName> PAGE_SKIPPED_KEYS = new HashSet<>(Arrays.asList(COSName.PARENT, COSName.ANNOTS));
+    // 注释中跳过的键，它们指向其它页面、注释或表单域，不影响本页面的绘制
+    private static final Set<COSName> ANNOTATION_SKIPPED_KEYS = new HashSet<>(Arrays.asList(
+            COSName.DEST, COSName.A, COSName.P, COSName.getPDFName("Popup"), COSName.PARENT));
+
+    private final MessageDigest digest;
+    private final Set<COSName> skippedKeys;
+    private final Map<COSBase, Integer> visited = new IdentityHashMap<>();
+    private final byte[] buffer = new byte[8192];
+
+    /**
+     * @param skippedKeys 遍历字典时跳过的键，例如页面的/Parent，避免遍历整个页面树
+     */
+    public CosDigest(Set<COSName> skippedKeys) {
+        this.digest = sha256();
+        this.skippedKeys = skippedKeys;
+    }
+
+    public CosDigest() {
+        this(Collections.emptySet());
+    }
+
+    /**
+     * 计算页面内容的摘要：页面字典（跳过/Parent）及其引用的内容流、资源，从页面树继承的资源、页面框和旋转角度，
+     * 以及各个注释（跳过链接到其它页面或注释的/Dest、/A、/P、/Popup、/Parent）。
+     * 只遍历该页面本身的对象，耗时取决于页面本身，与文档的页数无关；修改其它页面（例如链接的目标页）不影响该页面的摘要
+     *
+     * @param page PDF页面
+     * @return 十六进制摘要
+     * @throws IOException 读取流数据失败
+     */
+    public static String hashPage(PDPage page) throws IOException {
+        CosDigest digest = new CosDigest(PAGE_SKIPPED_KEYS).update(page.getCOSObject());
+        if (page.getResources() != null) {
+            digest.update(page.getResources().getCOSObject());
+        }
+        COSBase annots = page.getCOSObject().getDictionaryObject(COSName.ANNOTS);
+        if (annots instanceof COSArray) {
+            for (COSBase annot : (COSArray) annots) {
+                digest.update(new CosDigest(ANNOTATION_SKIPPED_KEYS).update(annot).hexDigest());
+            }
+        }
+        return digest.update(page.getMediaBox().getCOSArray())
+                .update(page.getCropBox().getCOSArray())
+                .update(String.valueOf(page.getRotation()))
+                .hexDigest();
+    }
+
+    /**
+     * 将对象及其引用的所有对象加入摘要
+     *
+     * @param base PDF对象，可以为null
+     * @return this
+     * @throws IOException 读取流数据失败
+     */
+    public CosDigest update(COSBase base) throws IOException {
+        if (base instanceof COSObject) {
+            base = ((COSObject) base).getObject();
+        }
+        if (base == null || base instanceof COSNull) {
+            tag('n');
+            return this;
+        }
+
+        if (base instanceof COSDictionary || base instanceof COSArray) {
+            Integer order = visited.get(base);
+            if (order != null) {
+                tag('v');
+                updateInt(order);
+                return this;
+            }
+            visited.put(base, visited.size());
+        }
+
+        if (base instanceof COSDictionary) {
+            COSDictionary dict = (COSDictionary) base;
+            List<COSName> keys = new ArrayList<>(dict.keySet());
+            Collections.sort(keys);
+            tag(base instanceof COSStream ? 's' : 'd');
+            updateInt(keys.size());
+            for (COSName key : keys) {
+                if (skippedKeys.contains(key)) {
+                    continue;
+                }
+                updateString(key.getName());
+                update(dict.getItem(key));
+            }
+            if (base instanceof COSStream) {
+                try (InputStream in = ((COSStream) base).createRawInputStream()) {
+                    int n;
+                    while ((n = in.read(buffer)) > 0) {
+                        digest.update(buffer, 0, n);
+                    }
+                }
+            }
+        } else if (base instanceof COSArray) {
+            COSArray array = (COSArray) base;
+            tag('a');
+            updateInt(array.size());
+            for (int i = 0; i < array.size(); i++) {
+                update(array.get(i));
+            }
+        } else if (base instanceof COSName) {
+            tag('/');
+            updateString(((COSName) base).getName());
+        } else if (base instanceof COSString) {
+            byte[] bytes = ((COSString) base).getBytes();
+            tag('(');
+            updateInt(bytes.length);
+            digest.update(bytes);
+        } else {// 数字、布尔值
+            tag('#');
+            updateString(base.toString());
+        }
+        return this;
+    }
+
+    /**
+     * 将额外的数据（例如参与计算的设置项）加入摘要
+     *
+     * @param value 字符串
+     * @return this
+     */
+    public CosDigest update(String value) {
+        tag('t');
+        updateString(value);
+        return this;
+    }
+
+    /**
+     * @return 十六进制摘要，调用后不应继续使用该实例
+     */
+    public String hexDigest() {
+        byte[] bytes = digest.digest();
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+
+    private void tag(char c) {
+        digest.update((byte) c);
+    }
+
+    private void updateInt(int value) {
+        digest.update((byte) (value >>> 24));
+        digest.update((byte) (value >>> 16));
+        digest.update((byte) (value >>> 8));
+        digest.update((byte) value);
+    }
+
+    private void updateString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        updateInt(bytes.length);
+        digest.update(bytes);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);// 所有JVM都必须支持SHA-256
+        }
+    }
+}
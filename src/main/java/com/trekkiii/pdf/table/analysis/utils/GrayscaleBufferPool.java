@@ -0,0 +1,96 @@
+package com.trekkiii.pdf.table.analysis.utils;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * 灰度像素缓冲区池。
+ * <p>
+ * 页面图像转换为灰度Mat时需要一块 width * height 大小的byte[]作为中转，
+ * 长时间运行的worker逐页解析时，通过该池复用缓冲区，避免每页都分配数MB的新数组。
+ * <p>
+ * 线程安全，池中最多保留{@code maxRetained}个缓冲区。
+ */
+public class GrayscaleBufferPool {
+
+    private static final int DEFAULT_MAX_RETAINED = 4;
+
+    private static final GrayscaleBufferPool SHARED = new GrayscaleBufferPool(DEFAULT_MAX_RETAINED);
+
+    private final int maxRetained;
+    private final Deque<byte[]> buffers = new ArrayDeque<>();
+
+    public GrayscaleBufferPool(int maxRetained) {
+        if (maxRetained < 0) {
+            throw new IllegalArgumentException("maxRetained must be >= 0: " + maxRetained);
+        }
+        this.maxRetained = maxRetained;
+    }
+
+    /**
+     * 进程内共享的缓冲区池，{@link Utils#bufferedImage2GrayscaleMat(java.awt.image.BufferedImage)}默认使用它
+     *
+     * @return 共享的缓冲区池
+     */
+    public static GrayscaleBufferPool shared() {
+        return SHARED;
+    }
+
+    /**
+     * 获取长度不小于{@code minSize}的缓冲区，池中没有合适的缓冲区时分配新数组。
+     * <p>
+     * 返回的数组可能比{@code minSize}更长，内容未定义。
+     *
+     * @param minSize 最小长度
+     * @return 缓冲区
+     */
+    public byte[] acquire(int minSize) {
+        synchronized (buffers) {
+            Iterator<byte[]> it = buffers.iterator();
+            while (it.hasNext()) {
+                byte[] buffer = it.next();
+                if (buffer.length >= minSize) {
+                    it.remove();
+                    return buffer;
+                }
+            }
+        }
+        return new byte[minSize];
+    }
+
+    /**
+     * 归还缓冲区。池已满时丢弃最小的缓冲区，保留较大的以便适配更大的页面。
+     *
+     * @param buffer 通过{@link #acquire(int)}获取的缓冲区
+     */
+    public void release(byte[] buffer) {
+        if (buffer == null || maxRetained == 0) {
+            return;
+        }
+        synchronized (buffers) {
+            if (buffers.size() >= maxRetained) {
+                byte[] smallest = null;
+                for (byte[] b : buffers) {
+                    if (smallest == null || b.length < smallest.length) {
+                        smallest = b;
+                    }
+                }
+                if (smallest.length >= buffer.length) {
+                    return;
+                }
+                buffers.remove(smallest);
+            }
+            buffers.addFirst(buffer);
+        }
+    }
+
+    /**
+     * 丢弃池中保留的所有缓冲区
+     */
+    public void clear() {
+        synchronized (buffers) {
+            buffers.clear();
+        }
+    }
+}
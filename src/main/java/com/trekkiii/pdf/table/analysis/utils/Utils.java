@@ -1,12 +1,19 @@
 package com.trekkiii.pdf.table.analysis.utils;
 
 import org.apache.pdfbox.io.IOUtils;
+import org.opencv.core.CvType;
 import org.opencv.core.Mat;
 import org.opencv.core.MatOfByte;
 import org.opencv.imgcodecs.Imgcodecs;
 
 import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SampleModel;
+import java.awt.image.SinglePixelPackedSampleModel;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -17,18 +24,138 @@ import java.io.InputStream;
  */
 public class Utils {
 
+    // RGB转灰度的定点系数，与OpenCV cvtColor(COLOR_RGB2GRAY)一致：Y = 0.299 R + 0.587 G + 0.114 B
+    private static final int GRAY_SHIFT = 14;
+    private static final int R2Y = 4899;
+    private static final int G2Y = 9617;
+    private static final int B2Y = 1868;
+    private static final int GRAY_ROUND = 1 << (GRAY_SHIFT - 1);
+
     private Utils() {
     }
 
     /**
      * 将BufferedImage转换为灰度OpenCV Mat
+     * <p>
+     * 直接读取图像raster的像素数据，不再经过PNG编码/解码，中转缓冲区取自{@link GrayscaleBufferPool#shared()}
      *
      * @param inImg Buffered Image
      * @return org.opencv.core.Mat
      * @throws IOException
      */
     public static Mat bufferedImage2GrayscaleMat(BufferedImage inImg) throws IOException {
-        return bufferedImage2Mat(inImg, Imgcodecs.IMREAD_GRAYSCALE);
+        return bufferedImage2GrayscaleMat(inImg, new Mat(), GrayscaleBufferPool.shared());
+    }
+
+    /**
+     * 将BufferedImage转换为灰度OpenCV Mat，并写入{@code dst}。
+     * <p>
+     * {@code dst}的尺寸与图像一致时直接复用其内存，因此逐页解析时可以反复传入同一个Mat。
+     * {@link BufferedImage#TYPE_BYTE_GRAY}图像直接拷贝raster的byte[]，其它类型按OpenCV的系数逐像素计算灰度值。
+     *
+     * @param inImg Buffered Image
+     * @param dst   输出Mat，会被重新分配为 height x width 的CV_8UC1
+     * @param pool  中转缓冲区池
+     * @return {@code dst}
+     */
+    public static Mat bufferedImage2GrayscaleMat(BufferedImage inImg, Mat dst, GrayscaleBufferPool pool) {
+        int width = inImg.getWidth();
+        int height = inImg.getHeight();
+        dst.create(height, width, CvType.CV_8UC1);
+
+        byte[] direct = directGrayData(inImg);
+        if (direct != null) {// 灰度图像且raster连续，直接拷贝
+            dst.put(0, 0, direct);
+            return dst;
+        }
+
+        byte[] buffer = pool.acquire(width * height);
+        try {
+            fillGrayscale(inImg, buffer);
+            dst.put(0, 0, buffer);
+        } finally {
+            pool.release(buffer);
+        }
+        return dst;
+    }
+
+    /**
+     * 如果图像是raster连续存储的8位灰度图像，返回其底层byte[]，否则返回null
+     */
+    private static byte[] directGrayData(BufferedImage inImg) {
+        if (inImg.getType() != BufferedImage.TYPE_BYTE_GRAY) {
+            return null;
+        }
+        Raster raster = inImg.getRaster();
+        SampleModel sm = raster.getSampleModel();
+        if (!(raster.getDataBuffer() instanceof DataBufferByte) || !(sm instanceof ComponentSampleModel)
+                || raster.getParent() != null) {
+            return null;
+        }
+        ComponentSampleModel csm = (ComponentSampleModel) sm;
+        DataBufferByte db = (DataBufferByte) raster.getDataBuffer();
+        if (csm.getPixelStride() != 1 || csm.getScanlineStride() != inImg.getWidth()
+                || db.getOffset() != 0 || db.getNumBanks() != 1) {
+            return null;
+        }
+        return db.getData();
+    }
+
+    /**
+     * 将图像的灰度值逐行写入{@code out}，{@code out}的长度不小于 width * height
+     */
+    private static void fillGrayscale(BufferedImage inImg, byte[] out) {
+        int width = inImg.getWidth();
+        int height = inImg.getHeight();
+        Raster raster = inImg.getRaster();
+        int type = inImg.getType();
+
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && raster.getDataBuffer() instanceof DataBufferInt
+                && raster.getSampleModel() instanceof SinglePixelPackedSampleModel
+                && raster.getParent() == null) {
+            // PDFRenderer以ImageType.RGB/ARGB渲染时的情况，直接读取int[]像素
+            SinglePixelPackedSampleModel sm = (SinglePixelPackedSampleModel) raster.getSampleModel();
+            DataBufferInt db = (DataBufferInt) raster.getDataBuffer();
+            int[] pixels = db.getData();
+            int stride = sm.getScanlineStride();
+            int offset = db.getOffset();
+            for (int y = 0; y < height; y++) {
+                int src = offset + y * stride;
+                int dst = y * width;
+                for (int x = 0; x < width; x++) {
+                    out[dst + x] = rgb2Gray(pixels[src + x]);
+                }
+            }
+            return;
+        }
+
+        int[] row = new int[width];
+        if (type == BufferedImage.TYPE_BYTE_GRAY) {
+            for (int y = 0; y < height; y++) {
+                raster.getSamples(0, y, width, 1, 0, row);
+                int dst = y * width;
+                for (int x = 0; x < width; x++) {
+                    out[dst + x] = (byte) row[x];
+                }
+            }
+            return;
+        }
+
+        for (int y = 0; y < height; y++) {// 其它类型统一经sRGB转换
+            inImg.getRGB(0, y, width, 1, row, 0, width);
+            int dst = y * width;
+            for (int x = 0; x < width; x++) {
+                out[dst + x] = rgb2Gray(row[x]);
+            }
+        }
+    }
+
+    private static byte rgb2Gray(int rgb) {
+        int r = (rgb >> 16) & 0xFF;
+        int g = (rgb >> 8) & 0xFF;
+        int b = rgb & 0xFF;
+        return (byte) ((r * R2Y + g * G2Y + b * B2Y + GRAY_ROUND) >> GRAY_SHIFT);
     }
 
     /**
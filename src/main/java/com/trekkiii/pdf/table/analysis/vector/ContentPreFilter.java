@@ -0,0 +1,181 @@
+package com.trekkiii.pdf.table.analysis.vector;
+
+import org.apache.pdfbox.contentstream.PDContentStream;
+import org.apache.pdfbox.contentstream.operator.Operator;
+import org.apache.pdfbox.cos.COSBase;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.cos.COSStream;
+import org.apache.pdfbox.pdfparser.PDFStreamParser;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotation;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAppearanceStream;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * 渲染之前判断页面中是否可能有表格，用于跳过明显没有表格的页面。
+ * <p>
+ * 只对内容流做词法扫描，不解析字体、不计算坐标，开销远小于渲染。统计实际绘制（描边或填充）的路径中
+ * 直线段(l)、封闭子路径时回到起点的边(h、s、b、b*)和矩形(re，按4条边计)的数量，至少有{@link #MIN_EDGES}条边时才可能构成单元格。
+ * 以下情况无法从矢量指令判断，一律视为可能有表格：
+ * <ul>
+ * <li>绘制图像（图像XObject或内联图像），例如扫描件中的表格</li>
+ * <li>着色填充(sh)</li>
+ * <li>内容流无法解析</li>
+ * </ul>
+ * 表单XObject和注释的外观流（渲染时会一起绘制）递归扫描。文本层不参与判断：表格由表格线决定，
+ * 只靠文字对齐推断表格容易误判，会丢失真实的表格。用字形（如制表符字体）画出的表格线无法识别。
+ */
+public final class ContentPreFilter {
+
+    // 构成一个单元格至少需要的边数
+    static final int MIN_EDGES = 4;
+
+    // 表单XObject的最大嵌套深度，超出时视为可能有表格
+    private static final int MAX_DEPTH = 8;
+
+    private ContentPreFilter() {
+    }
+
+    /**
+     * @param page PDF页面
+     * @return 页面中可能有表格时返回true，返回false时页面中一定没有可识别的表格线和图像
+     */
+    public static boolean mayContainTable(PDPage page) {
+        Scan scan = new Scan();
+        try {
+            scan.scan(page, page.getResources(), 0);
+            for (PDAnnotation annotation : page.getAnnotations()) {
+                PDAppearanceStream appearance = annotation.getNormalAppearanceStream();
+                if (appearance != null && !scan.found()) {
+                    scan.scan(appearance, appearance.getResources() != null ? appearance.getResources() : page.getResources(), 1);
+                }
+            }
+        } catch (IOException | RuntimeException e) {// 无法判断时交给后续的识别
+            return true;
+        }
+        return scan.found();
+    }
+
+    /**
+     * 一次扫描的状态，累计所有内容流中已绘制的边数
+     */
+    private static class Scan {
+
+        private final Map<COSStream, Integer> formEdges = new IdentityHashMap<>();// 表单XObject绘制的边数，重复绘制时直接累加
+        private int edges;
+        private int pendingEdges;// 当前路径中尚未绘制的边
+        private boolean openSubpath;// 当前子路径中有直线段且尚未封闭，封闭时增加一条回到起点的边
+        private boolean opaque;// 遇到无法判断的内容
+
+        boolean found() {
+            return opaque || edges >= MIN_EDGES;
+        }
+
+        private void closeSubpath() {
+            if (openSubpath) {
+                pendingEdges++;
+                openSubpath = false;
+            }
+        }
+
+        private void paint() {
+            edges += pendingEdges;
+            pendingEdges = 0;
+            openSubpath = false;
+        }
+
+        void scan(PDContentStream stream, PDResources resources, int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                opaque = true;
+                return;
+            }
+            PDFStreamParser parser = new PDFStreamParser(stream);
+            COSBase lastOperand = null;
+            Object token;
+            while (!found() && (token = parser.parseNextToken()) != null) {
+                if (!(token instanceof Operator)) {
+                    lastOperand = (COSBase) token;
+                    continue;
+                }
+                switch (((Operator) token).getName()) {
+                    case "m":
+                        openSubpath = false;
+                        break;
+                    case "l":
+                        pendingEdges++;
+                        openSubpath = true;
+                        break;
+                    case "re":
+                        pendingEdges += 4;
+                        openSubpath = false;
+                        break;
+                    case "h":
+                        closeSubpath();
+                        break;
+                    case "s":// 先封闭子路径再绘制
+                    case "b":
+                    case "b*":
+                        closeSubpath();
+                        paint();
+                        break;
+                    case "S":
+                    case "f":
+                    case "F":
+                    case "f*":
+                    case "B":
+                    case "B*":
+                        paint();
+                        break;
+                    case "n":// 只用于裁剪的路径
+                        pendingEdges = 0;
+                        openSubpath = false;
+                        break;
+                    case "BI":
+                    case "sh":
+                        opaque = true;
+                        break;
+                    case "Do":
+                        if (lastOperand instanceof COSName && resources != null) {
+                            drawXObject(resources, (COSName) lastOperand, depth);
+                        }
+                        break;
+                    default:
+                        break;
+                }
+                lastOperand = null;
+            }
+        }
+
+        private void drawXObject(PDResources resources, COSName name, int depth) throws IOException {
+            if (resources.isImageXObject(name)) {
+                opaque = true;
+                return;
+            }
+            PDXObject xobject = resources.getXObject(name);
+            if (!(xobject instanceof PDFormXObject)) {
+                return;
+            }
+            Integer known = formEdges.get(xobject.getCOSObject());
+            if (known == null) {
+                formEdges.put(xobject.getCOSObject(), 0);// 循环引用时按0计
+                int outerEdges = edges;
+                int outerPending = pendingEdges;
+                edges = 0;
+                pendingEdges = 0;
+                PDFormXObject form = (PDFormXObject) xobject;
+                scan(form, form.getResources() != null ? form.getResources() : resources, depth + 1);
+                known = edges;
+                formEdges.put(xobject.getCOSObject(), known);
+                edges = outerEdges;
+                pendingEdges = outerPending;
+            }
+            edges += known;
+        }
+    }
+}
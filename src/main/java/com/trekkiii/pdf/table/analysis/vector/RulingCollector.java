@@ -0,0 +1,247 @@
+package com.trekkiii.pdf.table.analysis.vector;
+
+import org.apache.pdfbox.contentstream.PDFGraphicsStreamEngine;
+import org.apache.pdfbox.cos.COSName;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.graphics.color.PDColor;
+import org.apache.pdfbox.pdmodel.graphics.image.PDImage;
+
+import java.awt.geom.Point2D;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 遍历页面内容流，收集描边/填充路径中水平和竖直的线段（表格线）。
+ * <p>
+ * 坐标已从PDF用户空间（原点在左下角）转换为以裁剪框左上角为原点、单位为1/72英寸的坐标，
+ * 与{@link org.apache.pdfbox.text.PDFTextStripperByArea}使用的坐标系一致。
+ * <p>
+ * 每条水平线保存为{x1, x2, y}，每条竖直线保存为{y1, y2, x}，其中x1 &lt;= x2、y1 &lt;= y2。
+ * <p>
+ * 填充区域的边缘通常是单元格底色的边界，但覆盖整个裁剪框的填充（页面底色）和白色填充（在白色页面上不可见，常用于铺底或遮盖）
+ * 不是表格线，它们的边缘不收集。
+ */
+class RulingCollector extends PDFGraphicsStreamEngine {
+
+    // RGB各分量不小于该值的填充色视为白色
+    private static final int WHITE_LEVEL = 250;
+
+    private final float maxLineThickness;
+    private final float originX;
+    private final float originY;
+    private final float pageWidth;
+    private final float pageHeight;
+
+    private final List<float[]> horizontals = new ArrayList<>();
+    private final List<float[]> verticals = new ArrayList<>();
+
+    // 当前路径中的线段{x1, y1, x2, y2}和矩形{x1, y1, x2, y2}，已转换坐标
+    private final List<float[]> pathSegments = new ArrayList<>();
+    private final List<float[]> pathRects = new ArrayList<>();
+    private Point2D.Float currentPoint;
+    private Point2D.Float subpathStart;
+    private int imageCount;
+
+    /**
+     * @param page             PDF页面
+     * @param maxLineThickness 填充矩形的宽或高不大于该值时视为一条线
+     */
+    RulingCollector(PDPage page, float maxLineThickness) {
+        super(page);
+        this.maxLineThickness = maxLineThickness;
+        PDRectangle cropBox = page.getCropBox();
+        this.originX = cropBox.getLowerLeftX();
+        this.originY = cropBox.getUpperRightY();
+        this.pageWidth = cropBox.getWidth();
+        this.pageHeight = cropBox.getHeight();
+    }
+
+    List<float[]> getHorizontals() {
+        return horizontals;
+    }
+
+    List<float[]> getVerticals() {
+        return verticals;
+    }
+
+    /**
+     * @return 页面中绘制的图像数量
+     */
+    int getImageCount() {
+        return imageCount;
+    }
+
+    @Override
+    public void appendRectangle(Point2D p0, Point2D p1, Point2D p2, Point2D p3) throws IOException {
+        float x1 = toX(Math.min(p0.getX(), p2.getX()));
+        float x2 = toX(Math.max(p0.getX(), p2.getX()));
+        float y1 = toY(Math.max(p0.getY(), p2.getY()));
+        float y2 = toY(Math.min(p0.getY(), p2.getY()));
+        pathRects.add(new float[]{x1, y1, x2, y2});
+        currentPoint = new Point2D.Float((float) p0.getX(), (float) p0.getY());
+        subpathStart = currentPoint;
+    }
+
+    @Override
+    public void drawImage(PDImage pdImage) throws IOException {
+        imageCount++;
+    }
+
+    @Override
+    public void clip(int windingRule) throws IOException {
+        // 裁剪路径随后的 n 操作符结束，这里无需处理
+    }
+
+    @Override
+    public void moveTo(float x, float y) throws IOException {
+        currentPoint = new Point2D.Float(x, y);
+        subpathStart = currentPoint;
+    }
+
+    @Override
+    public void lineTo(float x, float y) throws IOException {
+        Point2D.Float next = new Point2D.Float(x, y);
+        if (currentPoint != null) {
+            pathSegments.add(new float[]{toX(currentPoint.x), toY(currentPoint.y), toX(x), toY(y)});
+        }
+        currentPoint = next;
+    }
+
+    @Override
+    public void curveTo(float x1, float y1, float x2, float y2, float x3, float y3) throws IOException {
+        currentPoint = new Point2D.Float(x3, y3);// 曲线不会是表格线
+    }
+
+    @Override
+    public Point2D getCurrentPoint() throws IOException {
+        return currentPoint;
+    }
+
+    @Override
+    public void closePath() throws IOException {
+        if (currentPoint != null && subpathStart != null) {
+            lineTo(subpathStart.x, subpathStart.y);
+        }
+    }
+
+    @Override
+    public void endPath() throws IOException {
+        resetPath();
+    }
+
+    @Override
+    public void strokePath() throws IOException {
+        for (float[] s : pathSegments) {
+            addSegment(s[0], s[1], s[2], s[3]);
+        }
+        for (float[] r : pathRects) {
+            addRectEdges(r);
+        }
+        resetPath();
+    }
+
+    @Override
+    public void fillPath(int windingRule) throws IOException {
+        if (isWhite(getGraphicsState().getNonStrokingColor())) {
+            resetPath();
+            return;
+        }
+        if (!coversPage(pathSegments)) {
+            for (float[] s : pathSegments) {
+                addSegment(s[0], s[1], s[2], s[3]);
+            }
+        }
+        for (float[] r : pathRects) {
+            float width = r[2] - r[0];
+            float height = r[3] - r[1];
+            if (height <= maxLineThickness && width > height) {// 细长的填充矩形即水平线
+                float y = (r[1] + r[3]) / 2;
+                horizontals.add(new float[]{r[0], r[2], y});
+            } else if (width <= maxLineThickness && height > width) {// 竖直线
+                float x = (r[0] + r[2]) / 2;
+                verticals.add(new float[]{r[1], r[3], x});
+            } else if (!coversPage(r[0], r[1], r[2], r[3])) {// 单元格底色等填充区域，边缘即单元格边界
+                addRectEdges(r);
+            }
+        }
+        resetPath();
+    }
+
+    @Override
+    public void fillAndStrokePath(int windingRule) throws IOException {
+        strokePath();
+    }
+
+    @Override
+    public void shadingFill(COSName shadingName) throws IOException {
+    }
+
+    /**
+     * @return 是否为白色，无法转换为RGB的颜色（例如图案）视为不是白色
+     */
+    private static boolean isWhite(PDColor color) {
+        int rgb;
+        try {
+            rgb = color.toRGB();
+        } catch (IOException | UnsupportedOperationException e) {
+            return false;
+        }
+        // 经ICC转换的CMYK白色可能略低于255
+        return (rgb >> 16 & 0xFF) >= WHITE_LEVEL && (rgb >> 8 & 0xFF) >= WHITE_LEVEL && (rgb & 0xFF) >= WHITE_LEVEL;
+    }
+
+    /**
+     * @return 由线段围成的填充区域的外接矩形是否覆盖整个裁剪框
+     */
+    private boolean coversPage(List<float[]> segments) {
+        if (segments.isEmpty()) {
+            return false;
+        }
+        float x1 = Float.MAX_VALUE, y1 = Float.MAX_VALUE, x2 = -Float.MAX_VALUE, y2 = -Float.MAX_VALUE;
+        for (float[] s : segments) {
+            x1 = Math.min(x1, Math.min(s[0], s[2]));
+            y1 = Math.min(y1, Math.min(s[1], s[3]));
+            x2 = Math.max(x2, Math.max(s[0], s[2]));
+            y2 = Math.max(y2, Math.max(s[1], s[3]));
+        }
+        return coversPage(x1, y1, x2, y2);
+    }
+
+    private boolean coversPage(float x1, float y1, float x2, float y2) {
+        return x1 <= maxLineThickness && y1 <= maxLineThickness
+                && x2 >= pageWidth - maxLineThickness && y2 >= pageHeight - maxLineThickness;
+    }
+
+    private void addRectEdges(float[] r) {
+        horizontals.add(new float[]{r[0], r[2], r[1]});
+        horizontals.add(new float[]{r[0], r[2], r[3]});
+        verticals.add(new float[]{r[1], r[3], r[0]});
+        verticals.add(new float[]{r[1], r[3], r[2]});
+    }
+
+    /**
+     * 只保留水平或竖直的线段，斜线忽略
+     */
+    private void addSegment(float x1, float y1, float x2, float y2) {
+        if (Math.abs(y1 - y2) <= maxLineThickness / 2 && x1 != x2) {
+            horizontals.add(new float[]{Math.min(x1, x2), Math.max(x1, x2), (y1 + y2) / 2});
+        } else if (Math.abs(x1 - x2) <= maxLineThickness / 2 && y1 != y2) {
+            verticals.add(new float[]{Math.min(y1, y2), Math.max(y1, y2), (x1 + x2) / 2});
+        }
+    }
+
+    private void resetPath() {
+        pathSegments.clear();
+        pathRects.clear();
+    }
+
+    private float toX(double x) {
+        return (float) x - originX;
+    }
+
+    private float toY(double y) {
+        return originY - (float) y;
+    }
+}
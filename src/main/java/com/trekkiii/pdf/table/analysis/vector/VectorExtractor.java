@@ -0,0 +1,282 @@
+package com.trekkiii.pdf.table.analysis.vector;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.extract.TableExtractor;
+import com.trekkiii.pdf.table.analysis.metrics.StageTimer;
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 直接从PDF页面的矢量绘图指令中识别表格单元格，无需将页面渲染为图像。
+ * <p>
+ * 适用于表格线由线段/矩形绘制的原生PDF：
+ * <ol>
+ * <li>使用{@link RulingCollector}收集页面中所有水平线和竖直线</li>
+ * <li>将坐标相近的线聚类为同一条网格线，并合并首尾相接的线段</li>
+ * <li>对相邻的两条水平网格线之间的每个区间，找出贯穿它的竖直线，相邻竖直线之间若上下都有水平线封闭即为一个单元格
+ * （缺少内部竖直线的区域即合并的列；向下延伸直到遇到封闭的水平线即合并的行）</li>
+ * </ol>
+ * 返回的{@link Rect}与{@link com.trekkiii.pdf.table.analysis.opencv.OpenCVExtractor}一致，
+ * 以{@code settings.getPdfRenderingDpi()}下的像素为单位。页面旋转（/Rotate）不做处理。
+ */
+public class VectorExtractor implements TableExtractor {
+
+    // 坐标差不大于该值（1/72英寸）的线视为同一条网格线
+    private static final float RULING_TOLERANCE = 2f;
+    // 宽或高不大于该值（1/72英寸）的填充矩形视为一条线
+    private static final float MAX_LINE_THICKNESS = 3f;
+
+    private final Settings settings;
+
+    public VectorExtractor(Settings settings) {
+        this.settings = settings;
+    }
+
+    @Override
+    public boolean requiresImage() {
+        return false;
+    }
+
+    @Override
+    public List<DetectedTable> extract(PDPage page, Mat grayscaleMat, StageTimer timer) throws IOException {
+        return getTables(page);
+    }
+
+    /**
+     * 提取页面中表格单元格的边界矩形
+     *
+     * @param page PDF页面
+     * @return 单元格边界矩形，页面中没有表格线时返回空列表
+     * @throws IOException
+     */
+    public List<Rect> getTableBoundingRectangles(PDPage page) throws IOException {
+        List<Rect> out = new ArrayList<>();
+        for (DetectedTable table : getTables(page)) {
+            out.addAll(table.getCells());
+        }
+        return out;
+    }
+
+    /**
+     * 提取页面中的表格，相互连接（共用网格线）的单元格属于同一个表格
+     *
+     * @param page PDF页面
+     * @return 按(y, x)排序的表格，页面中没有表格线时返回空列表
+     * @throws IOException
+     */
+    public List<DetectedTable> getTables(PDPage page) throws IOException {
+        RulingCollector collector = new RulingCollector(page, MAX_LINE_THICKNESS);
+        collector.processPage(page);
+
+        List<float[]> cells = buildCells(collector.getHorizontals(), collector.getVerticals());
+
+        double scale = 1 / settings.getDpiRatio();// 1/72英寸 -> 渲染像素
+        List<DetectedTable> out = new ArrayList<>();
+        for (List<float[]> group : groupConnected(cells)) {
+            List<Rect> rects = new ArrayList<>(group.size());
+            for (float[] c : group) {
+                int x = (int) Math.round(c[0] * scale);
+                int y = (int) Math.round(c[1] * scale);
+                int width = (int) Math.round(c[2] * scale) - x;
+                int height = (int) Math.round(c[3] * scale) - y;
+                rects.add(new Rect(x, y, width, height));
+            }
+            out.add(DetectedTable.of(rects));
+        }
+        out.sort((a, b) -> a.getBounds().y != b.getBounds().y
+                ? Integer.compare(a.getBounds().y, b.getBounds().y) : Integer.compare(a.getBounds().x, b.getBounds().x));
+        return out;
+    }
+
+    /**
+     * 将相互接触（间距不大于{@link #RULING_TOLERANCE}）的单元格{x1, y1, x2, y2}分为一组。
+     * <p>
+     * 按x1排序后扫描，每个单元格只与x1不超过其右边缘的单元格比较，再用并查集合并
+     *
+     * @return 各组单元格，组内保持原来的顺序
+     */
+    static List<List<float[]>> groupConnected(List<float[]> cells) {
+        int n = cells.size();
+        int[] parent = new int[n];
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            parent[i] = i;
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingDouble(i -> cells.get(i)[0]));
+        for (int a = 0; a < n; a++) {
+            float[] ca = cells.get(order[a]);
+            for (int b = a + 1; b < n; b++) {
+                float[] cb = cells.get(order[b]);
+                if (cb[0] - ca[2] > RULING_TOLERANCE) {
+                    break;
+                }
+                if (cb[1] - ca[3] <= RULING_TOLERANCE && ca[1] - cb[3] <= RULING_TOLERANCE) {
+                    parent[find(parent, order[a])] = find(parent, order[b]);
+                }
+            }
+        }
+
+        Map<Integer, List<float[]>> groups = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            groups.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(cells.get(i));
+        }
+        return new ArrayList<>(groups.values());
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    /**
+     * 由水平线{x1, x2, y}和竖直线{y1, y2, x}构建单元格{x1, y1, x2, y2}，按先行后列的顺序返回
+     */
+    static List<float[]> buildCells(List<float[]> horizontals, List<float[]> verticals) {
+        List<float[]> out = new ArrayList<>();
+        if (horizontals.size() < 2 || verticals.size() < 2) {
+            return out;
+        }
+
+        Grid rows = new Grid(horizontals);// 水平网格线，位置为y，区间为x
+        Grid cols = new Grid(verticals);// 竖直网格线，位置为x，区间为y
+
+        int[] bandCols = new int[cols.size()];
+        for (int i = 0; i < rows.size() - 1; i++) {
+            float top = rows.position(i);
+            float nextTop = rows.position(i + 1);
+
+            // 贯穿当前区间的竖直线
+            int n = 0;
+            for (int j = 0; j < cols.size(); j++) {
+                if (cols.covers(j, top, nextTop)) {
+                    bandCols[n++] = j;
+                }
+            }
+
+            for (int c = 0; c < n - 1; c++) {
+                int left = bandCols[c];
+                int right = bandCols[c + 1];
+                float x1 = cols.position(left);
+                float x2 = cols.position(right);
+                if (x2 - x1 <= RULING_TOLERANCE || !rows.covers(i, x1, x2)) {
+                    continue;
+                }
+
+                // 向下寻找封闭单元格的水平线
+                for (int k = i + 1; k < rows.size(); k++) {
+                    if (rows.covers(k, x1, x2)) {
+                        if (rows.position(k) - top > RULING_TOLERANCE) {
+                            out.add(new float[]{x1, top, x2, rows.position(k)});
+                        }
+                        break;
+                    }
+                    if (k + 1 >= rows.size()
+                            || !cols.covers(left, rows.position(k), rows.position(k + 1))
+                            || !cols.covers(right, rows.position(k), rows.position(k + 1))) {
+                        break;
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 聚类后的一组平行网格线。每条网格线有一个位置，以及合并后按起点排序、互不重叠的区间
+     */
+    private static class Grid {
+
+        private final float[] positions;
+        private final float[][] starts;
+        private final float[][] ends;
+
+        /**
+         * @param lines 线段{start, end, position}
+         */
+        Grid(List<float[]> lines) {
+            float[][] sorted = lines.toArray(new float[lines.size()][]);
+            Arrays.sort(sorted, Comparator.comparingDouble(l -> l[2]));
+
+            List<Float> positionList = new ArrayList<>();
+            List<float[][]> intervalList = new ArrayList<>();
+            int from = 0;
+            while (from < sorted.length) {
+                int to = from + 1;
+                double sum = sorted[from][2];
+                while (to < sorted.length && sorted[to][2] - sorted[to - 1][2] <= RULING_TOLERANCE) {
+                    sum += sorted[to][2];
+                    to++;
+                }
+                positionList.add((float) (sum / (to - from)));
+                intervalList.add(mergeIntervals(sorted, from, to));
+                from = to;
+            }
+
+            positions = new float[positionList.size()];
+            starts = new float[positionList.size()][];
+            ends = new float[positionList.size()][];
+            for (int i = 0; i < positions.length; i++) {
+                positions[i] = positionList.get(i);
+                starts[i] = intervalList.get(i)[0];
+                ends[i] = intervalList.get(i)[1];
+            }
+        }
+
+        int size() {
+            return positions.length;
+        }
+
+        float position(int index) {
+            return positions[index];
+        }
+
+        /**
+         * 第index条网格线是否完整覆盖[from, to]（允许{@link #RULING_TOLERANCE}的误差）
+         */
+        boolean covers(int index, float from, float to) {
+            float[] s = starts[index];
+            // 最后一个起点不大于from的区间
+            int i = Arrays.binarySearch(s, from + RULING_TOLERANCE);
+            if (i < 0) {
+                i = -i - 2;
+            }
+            return i >= 0 && ends[index][i] >= to - RULING_TOLERANCE;
+        }
+
+        /**
+         * 合并sorted[from, to)中的线段区间，返回{starts, ends}
+         */
+        private static float[][] mergeIntervals(float[][] sorted, int from, int to) {
+            float[][] segments = Arrays.copyOfRange(sorted, from, to);
+            Arrays.sort(segments, Comparator.comparingDouble(l -> l[0]));
+
+            float[] s = new float[segments.length];
+            float[] e = new float[segments.length];
+            int n = 0;
+            for (float[] segment : segments) {
+                if (n > 0 && segment[0] <= e[n - 1] + RULING_TOLERANCE) {
+                    e[n - 1] = Math.max(e[n - 1], segment[1]);
+                } else {
+                    s[n] = segment[0];
+                    e[n] = segment[1];
+                    n++;
+                }
+            }
+            return new float[][]{Arrays.copyOf(s, n), Arrays.copyOf(e, n)};
+        }
+    }
+}
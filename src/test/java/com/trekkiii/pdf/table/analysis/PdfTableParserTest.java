@@ -1,6 +1,17 @@
 package com.trekkiii.pdf.table.analysis;
 
+import com.trekkiii.pdf.table.analysis.cache.PageImageCache;
+import com.trekkiii.pdf.table.analysis.metrics.ParseListener;
+import com.trekkiii.pdf.table.analysis.metrics.Stage;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import com.trekkiii.pdf.table.analysis.opencv.DebugImageWriter;
 import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.opencv.core.Rect;
+import org.testng.Assert;
 import org.testng.TestException;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
@@ -8,8 +19,19 @@ import org.testng.annotations.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Created by 刘春龙 on 2017/10/24.
@@ -17,8 +39,8 @@ import java.nio.file.Paths;
 public class PdfTableParserTest {
 
     private static final String TEST_FILENAME = "test_tables.pdf";
-    //    private static final Path TEST_OUT_PATH = Paths.get(System.getProperty("user.home"), "worktmp", "pdf_table", "pdf_tests");
-    private static final Path TEST_OUT_PATH = Paths.get("D:", "tmp", "pdf_tests");
+    // 测试输出的图像放在构建目录下，mvn clean时删除
+    private static final Path TEST_OUT_PATH = Paths.get("target", "pdf_tests");
     private static PDDocument PDFdoc;
 
     @BeforeMethod
@@ -27,6 +49,7 @@ public class PdfTableParserTest {
             ClassLoader classLoader = this.getClass().getClassLoader();
             File file = new File(classLoader.getResource(TEST_FILENAME).getFile());
             PDFdoc = PDDocument.load(file);
+            Files.createDirectories(TEST_OUT_PATH);
         } catch (IOException e) {
             e.printStackTrace();
             throw new TestException(e.getCause());
@@ -56,9 +79,394 @@ public class PdfTableParserTest {
         parser.savePdfPageDebugImage(PDFdoc, 1, TEST_OUT_PATH);
     }
 
+    @Test
+    public void saveCompactPdfDebugImages() throws IOException {
+        Path dir = Files.createTempDirectory("debug-images");
+        try (DebugImageWriter writer = new DebugImageWriter(2, 16)) {
+            PdfTableParser parser = new PdfTableParser(Settings.builder()
+                    .setCompactDebugImages(true)
+                    .setDebugImageWriter(writer)
+                    .build());
+            parser.savePdfPageDebugImage(PDFdoc, 1, dir);
+
+            // 所有单元格画在同一张图像上，返回时已经写出
+            Assert.assertTrue(Files.exists(dir.resolve("page_1_boxes.png")));
+            Assert.assertFalse(Files.exists(dir.resolve("page_1_box_000.png")));
+            Assert.assertEquals(writer.getDroppedCount(), 0);
+        }
+    }
+
+    @Test
+    public void saveAllBoxDebugImages() throws IOException {
+        Path dir = Files.createTempDirectory("debug-images");
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                // 10×10的表格，单元格数量超过默认写出队列的长度
+                for (int i = 0; i <= 10; i++) {
+                    content.moveTo(50, 700 - i * 40);
+                    content.lineTo(550, 700 - i * 40);
+                    content.moveTo(50 + i * 50, 700);
+                    content.lineTo(50 + i * 50, 300);
+                }
+                content.stroke();
+            }
+            new PdfTableParser().savePdfPageDebugImage(document, 1, dir);
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            Assert.assertEquals(files.filter(file -> file.getFileName().toString().startsWith("page_1_box_")).count(), 100);
+        }
+    }
+
     @Test
     public void parsePdfPages() throws IOException {
         PdfTableParser parser = new PdfTableParser();
         parser.parsePdfPages(PDFdoc, 1, 1);
     }
+
+    @Test
+    public void parsePdfPagesInParallel() throws IOException {
+        int endPage = Math.min(6, PDFdoc.getNumberOfPages());
+        List<ParsedTablePage> expected = new PdfTableParser().parsePdfPages(PDFdoc, 1, endPage);
+        List<ParsedTablePage> actual = new PdfTableParser(Settings.builder().setParallelism(3).build())
+                .parsePdfPages(PDFdoc, 1, endPage);
+
+        Assert.assertEquals(actual.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertFalse(actual.get(i).hasError());
+            Assert.assertEquals(actual.get(i).getPageNum(), i + 1);
+            Assert.assertEquals(actual.get(i).getRows().size(), expected.get(i).getRows().size());
+            for (int row = 0; row < expected.get(i).getRows().size(); row++) {
+                Assert.assertEquals(actual.get(i).getRow(row).getCells(), expected.get(i).getRow(row).getCells());
+            }
+        }
+    }
+
+    @Test
+    public void failedPageDoesNotStopOtherPages() throws IOException {
+        Path file = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile()).toPath();
+        for (int parallelism : new int[]{1, 2}) {
+            Settings settings = Settings.builder()
+                    .setParallelism(parallelism)
+                    .setParseListener(new ParseListener() {
+                        @Override
+                        public void onStage(int pageNumber, Stage stage, long nanos, long allocatedBytes) {
+                            if (pageNumber == 2) {
+                                throw new IllegalStateException("page 2");
+                            }
+                        }
+                    })
+                    .build();
+            PdfTableParser parser = new PdfTableParser(settings);
+            try (PDDocument document = parser.loadPdfDocument(file)) {// 并行时工作线程从文件重新加载
+                List<ParsedTablePage> pages = parser.parsePdfPages(document, 1, 3);
+                Assert.assertEquals(pages.size(), 3);
+                Assert.assertFalse(pages.get(0).hasError());
+                Assert.assertTrue(pages.get(0).getCellCount() > 0);
+                Assert.assertEquals(pages.get(1).getPageNum(), 2);
+                Assert.assertEquals(pages.get(1).getError().getMessage(), "page 2", "parallelism " + parallelism);
+                Assert.assertFalse(pages.get(2).hasError());
+            }
+        }
+    }
+
+    @Test
+    public void sharedParserServesConcurrentRequests() throws Exception {
+        PdfTableParser parser = new PdfTableParser();
+        int endPage = Math.min(4, PDFdoc.getNumberOfPages());
+        String expected = cellText(parser.parsePdfPages(PDFdoc, 1, endPage));
+
+        // 每个请求使用自己的文档，共享同一个解析器
+        Path file = Paths.get(getClass().getClassLoader().getResource(TEST_FILENAME).toURI());
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> {
+                    try (PDDocument document = PDDocument.load(file.toFile())) {
+                        return cellText(parser.parsePdfPages(document, 1, endPage));
+                    }
+                }));
+            }
+            for (Future<String> future : futures) {
+                Assert.assertEquals(future.get(), expected);
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static String cellText(List<ParsedTablePage> pages) {
+        return pages.stream()
+                .flatMap(page -> page.getRows().stream())
+                .map(row -> row.getCells().toString())
+                .collect(Collectors.joining("\n"));
+    }
+
+    @Test
+    public void streamPdfPages() throws IOException {
+        PdfTableParser parser = new PdfTableParser();
+        List<ParsedTablePage> expected = parser.parsePdfPages(PDFdoc, 1, 3);
+        try (Stream<ParsedTablePage> pages = parser.streamPdfPages(PDFdoc, 1, 3)) {
+            List<ParsedTablePage> actual = pages.collect(Collectors.toList());
+            Assert.assertEquals(actual.size(), 3);
+            for (int i = 0; i < actual.size(); i++) {
+                Assert.assertEquals(actual.get(i).getPageNum(), i + 1);
+                Assert.assertEquals(actual.get(i).getRows().size(), expected.get(i).getRows().size());
+            }
+        }
+    }
+
+    @Test
+    public void parsePdfPagesWithPageImageCache() throws IOException {
+        AtomicInteger renders = new AtomicInteger();
+        Settings settings = Settings.builder()
+                .setPageImageCache(new PageImageCache(64L << 20))
+                .setParseListener(new ParseListener() {
+                    @Override
+                    public void onStage(int pageNumber, Stage stage, long nanos, long allocatedBytes) {
+                        if (stage == Stage.RENDER) {
+                            renders.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+        PdfTableParser parser = new PdfTableParser(settings);
+
+        List<ParsedTablePage> expected = parser.parsePdfPages(PDFdoc, 1, 2);
+        Assert.assertEquals(renders.get(), 2);
+        List<ParsedTablePage> actual = parser.parsePdfPages(PDFdoc, 1, 2);
+        Assert.assertEquals(renders.get(), 2);// 第二次解析全部命中缓存
+        for (int i = 0; i < actual.size(); i++) {
+            Assert.assertEquals(actual.get(i).getRows().size(), expected.get(i).getRows().size());
+        }
+    }
+
+    @Test
+    public void contentPreFilterSkipsPagesWithoutTables() throws IOException {
+        PDFdoc.addPage(new PDPage());// 空白页
+        int pageCount = PDFdoc.getNumberOfPages();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger renders = new AtomicInteger();
+        Settings settings = Settings.builder()
+                .setContentPreFilter(true)
+                .setParseListener(new ParseListener() {
+                    @Override
+                    public void onStage(int pageNumber, Stage stage, long nanos, long allocatedBytes) {
+                        if (stage == Stage.RENDER) {
+                            renders.incrementAndGet();
+                        }
+                    }
+
+                    @Override
+                    public void onPageSkipped(int pageNumber) {
+                        Assert.assertEquals(pageNumber, pageCount);
+                        skipped.incrementAndGet();
+                    }
+                })
+                .build();
+
+        List<ParsedTablePage> pages = new PdfTableParser(settings).parsePdfPages(PDFdoc, pageCount - 2, pageCount);
+        Assert.assertEquals(skipped.get(), 1);
+        Assert.assertEquals(renders.get(), 2);
+        Assert.assertTrue(pages.get(1).getCellCount() > 0);
+        Assert.assertEquals(pages.get(2).getCellCount(), 0);
+        Assert.assertEquals(pages.get(2).getPageNum(), pageCount);
+    }
+
+    @Test
+    public void autoExtractorSelectionKeepsResults() throws IOException {
+        int endPage = Math.min(4, PDFdoc.getNumberOfPages());
+        String expected = cellText(new PdfTableParser().parsePdfPages(PDFdoc, 1, endPage));
+        List<String> selected = new ArrayList<>();
+        Settings settings = Settings.builder()
+                .setAutoExtractorSelection(true)
+                .setExtractorSamplePages(2)
+                .setMinExtractorAgreement(1)
+                .setParseListener(new ParseListener() {
+                    @Override
+                    public void onExtractorSelected(String extractor) {
+                        selected.add(extractor);
+                    }
+                })
+                .build();
+
+        String actual = cellText(new PdfTableParser(settings).parsePdfPages(PDFdoc, 1, endPage));
+        Assert.assertEquals(selected.size(), 1);
+        Assert.assertEquals(actual, expected);
+    }
+
+    @Test
+    public void extractorChoiceIsSharedByChunks() throws IOException {
+        int endPage = Math.min(4, PDFdoc.getNumberOfPages());
+        String expected = cellText(new PdfTableParser().parsePdfPages(PDFdoc, 1, endPage));
+        AtomicInteger selections = new AtomicInteger();
+        AtomicInteger renders = new AtomicInteger();
+        Settings settings = Settings.builder()
+                .setAutoExtractorSelection(true)
+                .setExtractorSamplePages(2)
+                .setMinExtractorAgreement(1)
+                .setParseListener(new ParseListener() {
+                    @Override
+                    public void onExtractorSelected(String extractor) {
+                        selections.incrementAndGet();
+                    }
+
+                    @Override
+                    public void onStage(int pageNumber, Stage stage, long nanos, long allocatedBytes) {
+                        if (stage == Stage.RENDER) {
+                            renders.incrementAndGet();
+                        }
+                    }
+                })
+                .build();
+        PdfTableParser parser = new PdfTableParser(settings);
+
+        ExtractorChoice choice = parser.selectExtractor(PDFdoc, 1, endPage);
+        List<ParsedTablePage> pages = new ArrayList<>();
+        int middle = (endPage + 1) / 2;
+        parser.parsePdfPages(PDFdoc, 1, middle, choice, pages::add);// 模拟按页码拆分的两段
+        parser.parsePdfPages(PDFdoc, middle + 1, endPage, choice, pages::add);
+        Assert.assertEquals(selections.get(), 1);
+        Assert.assertTrue(renders.get() <= endPage - 2, "sample pages rendered again: " + renders.get());
+        Assert.assertEquals(cellText(pages), expected);
+    }
+
+    @Test
+    public void lineArtRenderingKeepsResults() throws IOException {
+        int endPage = Math.min(4, PDFdoc.getNumberOfPages());
+        String expected = cellText(new PdfTableParser().parsePdfPages(PDFdoc, 1, endPage));
+        Settings settings = Settings.builder().setLineArtRendering(true).setAdaptiveDpi(true).build();
+        Assert.assertEquals(cellText(new PdfTableParser(settings).parsePdfPages(PDFdoc, 1, endPage)), expected);
+    }
+
+    @Test
+    public void groupRectanglesByRow() {
+        List<Rect> rects = Arrays.asList(
+                new Rect(200, 51, 100, 20), new Rect(0, 80, 100, 20),
+                new Rect(100, 50, 100, 20), new Rect(0, 49, 100, 20));
+
+        List<List<Rect>> rows = PdfTableParser.groupRectanglesByRow(rects, 2);
+        Assert.assertEquals(rows.size(), 2);
+        Assert.assertEquals(rows.get(0), Arrays.asList(rects.get(3), rects.get(2), rects.get(0)));
+        Assert.assertEquals(rows.get(1), Arrays.asList(rects.get(1)));
+
+        Assert.assertEquals(PdfTableParser.groupRectanglesByRow(rects, 0).size(), 4);
+    }
+
+    @Test
+    public void separatesStackedTables() throws IOException {
+        ParsedTablePage page = new PdfTableParser().parsePdfPages(PDFdoc, 4, 4).get(0);
+        List<ParsedTable> tables = page.getTables();
+        Assert.assertEquals(tables.size(), 3);
+        int rows = 0;
+        for (int i = 0; i < tables.size(); i++) {
+            Assert.assertEquals(tables.get(i).getIndex(), i);
+            if (i > 0) {
+                Assert.assertTrue(tables.get(i).getY() >= tables.get(i - 1).getY() + tables.get(i - 1).getHeight());
+            }
+            Assert.assertEquals(tables.get(i).getCells().getGridRow(0), 0);// 网格位置相对于所在表格
+            rows += tables.get(i).getCells().getRowCount();
+        }
+        Assert.assertEquals(page.getRows().size(), rows);
+    }
+
+    @Test
+    public void cellGridWithMergedCells() {
+        // 表头第一格跨两行，第二格跨两列；单元格之间隔着3像素的表格线
+        Rect corner = new Rect(0, 0, 100, 43);
+        Rect header = new Rect(103, 1, 203, 20);
+        Rect left = new Rect(104, 23, 100, 20);
+        Rect right = new Rect(206, 23, 100, 20);
+        Rect body = new Rect(1, 46, 305, 20);
+        CellGrid grid = new CellGrid(Arrays.asList(corner, header, left, right, body), 2);
+
+        Assert.assertEquals(grid.getRowCount(), 3);
+        Assert.assertEquals(grid.getColumnCount(), 3);
+        Assert.assertEquals(new int[]{grid.row(corner), grid.column(corner), grid.rowSpan(corner), grid.columnSpan(corner)},
+                new int[]{0, 0, 2, 1});
+        Assert.assertEquals(new int[]{grid.row(header), grid.column(header), grid.rowSpan(header), grid.columnSpan(header)},
+                new int[]{0, 1, 1, 2});
+        Assert.assertEquals(new int[]{grid.row(right), grid.column(right), grid.rowSpan(right), grid.columnSpan(right)},
+                new int[]{1, 2, 1, 1});
+        Assert.assertEquals(new int[]{grid.row(body), grid.column(body), grid.rowSpan(body), grid.columnSpan(body)},
+                new int[]{2, 0, 1, 3});
+    }
+
+    @Test
+    public void parsePdfPagesWithAdaptiveDpi() throws IOException {
+        List<ParsedTablePage> expected = new PdfTableParser().parsePdfPages(PDFdoc, 1, 3);
+        Settings settings = Settings.builder().setAdaptiveDpi(true).setMinPdfRenderingDpi(60).build();
+        List<ParsedTablePage> actual = new PdfTableParser(settings).parsePdfPages(PDFdoc, 1, 3);
+        for (int i = 0; i < actual.size(); i++) {
+            Assert.assertEquals(expected.get(i).getDpi(), 120);
+            Assert.assertTrue(actual.get(i).getDpi() == 60 || actual.get(i).getDpi() == 120);
+            Assert.assertEquals(actual.get(i).getRows().size(), expected.get(i).getRows().size());
+            for (int row = 0; row < actual.get(i).getRows().size(); row++) {
+                Assert.assertEquals(actual.get(i).getRow(row).getCells(), expected.get(i).getRow(row).getCells());
+            }
+        }
+    }
+
+    @Test
+    public void adaptiveDpiSkipsFullRenderOfPagesWithoutRulings() throws IOException {
+        long[] pixels = new long[3];
+        Settings settings = Settings.builder()
+                .setAdaptiveDpi(true)
+                .setMinPdfRenderingDpi(60)
+                .setParseListener(new ParseListener() {
+                    @Override
+                    public void onPageRendered(int pageNumber, int width, int height) {
+                        pixels[pageNumber] += (long) width * height;
+                    }
+                })
+                .build();
+        try (PDDocument document = new PDDocument()) {
+            PDPage text = new PDPage();// 612×792，只有文字
+            document.addPage(text);
+            try (PDPageContentStream content = new PDPageContentStream(document, text)) {
+                content.beginText();
+                content.setFont(PDType1Font.HELVETICA, 12);
+                content.newLineAtOffset(72, 700);
+                content.showText("no tables here");
+                content.endText();
+            }
+            PDPage lines = new PDPage();// 只有不构成单元格的下划线，低DPI下识别不到单元格
+            document.addPage(lines);
+            try (PDPageContentStream content = new PDPageContentStream(document, lines)) {
+                for (int i = 0; i < 4; i++) {
+                    content.moveTo(72, 600 - i * 40);
+                    content.lineTo(300, 600 - i * 40);
+                }
+                content.stroke();
+            }
+
+            List<ParsedTablePage> pages = new PdfTableParser(settings).parsePdfPages(document, 1, 2);
+            Assert.assertEquals(pages.get(0).getCellCount(), 0);
+            Assert.assertEquals(pages.get(0).getDpi(), 60);
+            Assert.assertEquals(pixels[1], 510L * 660, "text-only page rendered again at full DPI");
+            Assert.assertEquals(pixels[2], 510L * 660 + 1020L * 1320);
+        }
+    }
+
+    @Test
+    public void parsePdfPagesFromPathAndInputStream() throws IOException {
+        List<ParsedTablePage> expected = new PdfTableParser().parsePdfPages(PDFdoc, 1, PDFdoc.getNumberOfPages());
+        Path file = Paths.get(new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile()).toURI());
+        PdfTableParser parser = new PdfTableParser(Settings.builder().setMaxMainMemoryBytes(1L << 20).build());
+
+        List<ParsedTablePage> fromPath = parser.parsePdfPages(file);
+        List<ParsedTablePage> fromStream;
+        try (InputStream input = getClass().getClassLoader().getResourceAsStream(TEST_FILENAME)) {
+            fromStream = parser.parsePdfPages(input);
+        }
+        Assert.assertEquals(fromPath.size(), expected.size());
+        Assert.assertEquals(fromStream.size(), expected.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(fromPath.get(i).getPageNum(), i + 1);
+            Assert.assertEquals(fromPath.get(i).getRows().size(), expected.get(i).getRows().size());
+            Assert.assertEquals(fromStream.get(i).getRows().size(), expected.get(i).getRows().size());
+        }
+    }
 }
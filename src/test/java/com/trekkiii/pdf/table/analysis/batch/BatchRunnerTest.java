@@ -0,0 +1,74 @@
+package com.trekkiii.pdf.table.analysis.batch;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+public class BatchRunnerTest {
+
+    private static final String TEST_FILENAME = "test_tables.pdf";
+
+    @Test
+    public void parsesDirectoryIntoResultFiles() throws IOException {
+        Path input = Files.createTempDirectory("batch-in");
+        Path output = Files.createTempDirectory("batch-out");
+        File pdf = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile());
+        Files.createDirectories(input.resolve("sub"));
+        Files.copy(pdf.toPath(), input.resolve("sub").resolve("a.pdf"));
+        Files.write(input.resolve("broken.pdf"), "not a pdf".getBytes(StandardCharsets.US_ASCII));
+
+        ByteArrayOutputStream stats = new ByteArrayOutputStream();
+        int exitCode = BatchRunner.run(new String[]{"-o", output.toString(), "-t", "2", "--chunk-pages", "10",
+                "--progress", "0", input.toString()}, new PrintStream(stats), System.err);
+
+        Assert.assertEquals(exitCode, 1);// broken.pdf解析失败
+        Assert.assertTrue(stats.toString().contains("documents 2/2 (failed 1), pages 28"), stats.toString());
+        List<String> lines = Files.readAllLines(output.resolve("sub").resolve("a.tsv"), StandardCharsets.UTF_8);
+        Assert.assertTrue(lines.get(0).startsWith("1\t1\t"));
+        Assert.assertTrue(lines.get(lines.size() - 1).startsWith("28\t"));
+        Assert.assertFalse(Files.exists(output.resolve("broken.tsv")));
+    }
+
+    @Test
+    public void sameFileNamesInListDoNotOverwrite() throws IOException {
+        Path input = Files.createTempDirectory("batch-in");
+        Path output = Files.createTempDirectory("batch-out");
+        File pdf = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile());
+        Path a = Files.createDirectories(input.resolve("a")).resolve("report.pdf");
+        Path b = Files.createDirectories(input.resolve("b")).resolve("report.pdf");
+        Files.copy(pdf.toPath(), a);
+        Files.write(b, "not a pdf".getBytes(StandardCharsets.US_ASCII));
+        Path list = input.resolve("list.txt");
+        Files.write(list, Arrays.asList(a.toString(), b.toString()), StandardCharsets.UTF_8);
+
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        int exitCode = BatchRunner.run(new String[]{"-o", output.toString(), "--method", "vector", "--progress", "0",
+                "@" + list, input.resolve("a").toString()}, quiet, quiet);
+        Assert.assertEquals(exitCode, 2);// a/report.pdf出现两次
+
+        exitCode = BatchRunner.run(new String[]{"-o", output.toString(), "--method", "vector", "--progress", "0",
+                "@" + list}, quiet, quiet);
+        Assert.assertEquals(exitCode, 1);// b/report.pdf解析失败
+        Path absolute = a.toAbsolutePath().normalize();
+        Path result = output.resolve(absolute.getRoot().relativize(absolute)).resolveSibling("report.tsv");
+        Assert.assertTrue(Files.readAllLines(result, StandardCharsets.UTF_8).get(0).startsWith("1\t1\t"));
+        Assert.assertFalse(Files.exists(output.resolve("report.tsv")));
+    }
+
+    @Test
+    public void usageErrors() {
+        PrintStream quiet = new PrintStream(new ByteArrayOutputStream());
+        Assert.assertEquals(BatchRunner.run(new String[]{"some.pdf"}, quiet, quiet), 2);
+        Assert.assertEquals(BatchRunner.run(new String[]{"-o", "out", "--bogus", "some.pdf"}, quiet, quiet), 2);
+        Assert.assertEquals(BatchRunner.run(new String[]{"-o", "out", "-f", "xml", "some.pdf"}, quiet, quiet), 2);
+    }
+}
@@ -0,0 +1,106 @@
+package com.trekkiii.pdf.table.analysis.cache;
+
+import com.trekkiii.pdf.table.analysis.utils.CosDigest;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.interactive.action.PDActionGoTo;
+import org.apache.pdfbox.pdmodel.interactive.annotation.PDAnnotationLink;
+import org.apache.pdfbox.pdmodel.interactive.documentnavigation.destination.PDPageFitDestination;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+public class PageImageCacheTest {
+
+    private static final String TEST_FILENAME = "test_tables.pdf";
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        PageImageCache cache = new PageImageCache(200);
+        cache.put("doc-0", 120, image(10, 10, 0));
+        cache.put("doc-1", 120, image(10, 10, 1));
+        Assert.assertNotNull(cache.get("doc-0", 120));// 访问第0页后，第1页成为最久未使用
+        cache.put("doc-2", 120, image(10, 10, 2));
+
+        Assert.assertNotNull(cache.get("doc-0", 120));
+        Assert.assertNull(cache.get("doc-1", 120));
+        Assert.assertNotNull(cache.get("doc-2", 120));
+        Assert.assertNull(cache.get("doc-0", 72));
+        Assert.assertEquals(cache.getMemoryBytes(), 200);
+    }
+
+    @Test
+    public void readsBackFromDisk() throws IOException {
+        Path dir = Files.createTempDirectory("page-image-cache");
+        PageImageCache cache = new PageImageCache(0, dir);// 内存层不保留任何页面
+        cache.put("doc-3", 120, image(7, 5, 42));
+
+        CachedPageImage image = new PageImageCache(1 << 20, dir).get("doc-3", 120);
+        Assert.assertNotNull(image);
+        Assert.assertEquals(image.getWidth(), 7);
+        Assert.assertEquals(image.getHeight(), 5);
+        Assert.assertEquals(image.getPixels(), image(7, 5, 42).getPixels());
+    }
+
+    @Test
+    public void pageKeyIsStableAcrossLoads() throws IOException {
+        File file = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile());
+        String first;
+        try (PDDocument document = PDDocument.load(file)) {
+            first = CosDigest.hashPage(document.getPage(1));
+            Assert.assertNotEquals(CosDigest.hashPage(document.getPage(0)), first);
+        }
+        try (PDDocument document = PDDocument.load(file)) {
+            Assert.assertEquals(CosDigest.hashPage(document.getPage(1)), first);
+            document.removePage(0);// 其它页面的变化不影响该页面的键
+            Assert.assertEquals(CosDigest.hashPage(document.getPage(0)), first);
+        }
+    }
+
+    @Test
+    public void pageKeyIgnoresLinkedPages() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage toc = new PDPage();
+            PDPage target = new PDPage();
+            document.addPage(toc);
+            document.addPage(target);
+            PDPageFitDestination destination = new PDPageFitDestination();
+            destination.setPage(target);
+            PDAnnotationLink link = new PDAnnotationLink();// 目录中链接到第二页的两种方式
+            link.setRectangle(new PDRectangle(72, 700, 200, 20));
+            link.setDestination(destination);
+            PDAnnotationLink action = new PDAnnotationLink();
+            action.setRectangle(new PDRectangle(72, 650, 200, 20));
+            PDActionGoTo goTo = new PDActionGoTo();
+            goTo.setDestination(destination);
+            action.setAction(goTo);
+            action.setPage(toc);
+            toc.setAnnotations(Arrays.asList(link, action));
+
+            String before = CosDigest.hashPage(toc);
+            try (PDPageContentStream content = new PDPageContentStream(document, target)) {// 修改链接的目标页
+                content.addRect(100, 100, 200, 200);
+                content.stroke();
+            }
+            Assert.assertEquals(CosDigest.hashPage(toc), before);
+
+            link.setRectangle(new PDRectangle(72, 600, 200, 20));// 修改本页的注释
+            Assert.assertNotEquals(CosDigest.hashPage(toc), before);
+        }
+    }
+
+    private static CachedPageImage image(int width, int height, int seed) {
+        byte[] pixels = new byte[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = (byte) (i * 31 + seed);
+        }
+        return new CachedPageImage(width, height, pixels);
+    }
+}
@@ -0,0 +1,126 @@
+package com.trekkiii.pdf.table.analysis.cache;
+
+import com.trekkiii.pdf.table.analysis.PdfTableParser;
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.models.CompactTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTable;
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+public class PageResultCacheTest {
+
+    private static final String TEST_FILENAME = "test_tables.pdf";
+    private static final String KEY_A = repeat('a');
+    private static final String KEY_B = repeat('b');
+
+    @Test
+    public void reparseOnlyChangedPages() throws IOException {
+        File file = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile());
+        Path cacheFile = Files.createTempDirectory("page-result-cache").resolve("results.bin");
+
+        List<ParsedTablePage> first;
+        try (PDDocument document = PDDocument.load(file);
+             PageResultCache cache = new PageResultCache(cacheFile)) {
+            first = parser(cache).parsePdfPages(document, 1, 4);
+            Assert.assertEquals(cache.getMissCount(), 4);
+            Assert.assertEquals(cache.size(), 4);
+        }
+
+        try (PDDocument document = PDDocument.load(file);
+             PageResultCache cache = new PageResultCache(cacheFile)) {// 重新打开，索引从文件重建
+            try (PDPageContentStream stream = new PDPageContentStream(document, document.getPage(1),
+                    PDPageContentStream.AppendMode.APPEND, false)) {// 修改第2页
+                stream.moveTo(0, 0);
+                stream.lineTo(1, 1);
+                stream.stroke();
+            }
+            List<ParsedTablePage> second = parser(cache).parsePdfPages(document, 1, 4);
+            Assert.assertEquals(cache.getHitCount(), 3);
+            Assert.assertEquals(cache.getMissCount(), 1);
+            for (int i = 0; i < first.size(); i++) {
+                assertSamePage(second.get(i), first.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void dropsIncompleteTailRecord() throws IOException {
+        Path cacheFile = Files.createTempDirectory("page-result-cache").resolve("results.bin");
+        ParsedTablePage page = new ParsedTablePage(1);
+        page.addRow(Arrays.asList("a", "b"));
+        try (PageResultCache cache = new PageResultCache(cacheFile)) {
+            cache.put(KEY_A, page);
+            cache.put(KEY_B, page);
+        }
+        try (FileChannel channel = FileChannel.open(cacheFile, StandardOpenOption.WRITE)) {// 模拟写到一半时进程退出
+            channel.truncate(channel.size() - 3);
+        }
+
+        try (PageResultCache cache = new PageResultCache(cacheFile)) {
+            Assert.assertEquals(cache.size(), 1);
+            Assert.assertEquals(cache.get(KEY_A, 7).getRow(0).getCells(), page.getRow(0).getCells());
+            Assert.assertEquals(cache.get(KEY_A, 7).getPageNum(), 7);
+            Assert.assertNull(cache.get(KEY_B, 1));
+            cache.put(KEY_B, page);// 截掉的部分被新记录覆盖
+        }
+        try (PageResultCache cache = new PageResultCache(cacheFile)) {
+            Assert.assertEquals(cache.size(), 2);
+        }
+    }
+
+    @Test(expectedExceptions = IOException.class)
+    public void rejectsForeignFile() throws IOException {
+        Path file = Files.createTempFile("page-result-cache", ".bin");
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap("not a cache".getBytes("UTF-8")));
+        }
+        new PageResultCache(file).close();
+    }
+
+    private static PdfTableParser parser(PageResultCache cache) {
+        return new PdfTableParser(Settings.builder().setPageResultCache(cache).build());
+    }
+
+    private static void assertSamePage(ParsedTablePage actual, ParsedTablePage expected) {
+        Assert.assertEquals(actual.getPageNum(), expected.getPageNum());
+        Assert.assertEquals(actual.getDpi(), expected.getDpi());
+        Assert.assertEquals(actual.getTables().size(), expected.getTables().size());
+        for (int t = 0; t < expected.getTables().size(); t++) {
+            ParsedTable a = actual.getTables().get(t);
+            ParsedTable e = expected.getTables().get(t);
+            Assert.assertEquals(new int[]{a.getX(), a.getY(), a.getWidth(), a.getHeight()},
+                    new int[]{e.getX(), e.getY(), e.getWidth(), e.getHeight()});
+            CompactTable ac = a.getCells();
+            CompactTable ec = e.getCells();
+            Assert.assertEquals(ac.getCellCount(), ec.getCellCount());
+            Assert.assertEquals(ac.getRowCount(), ec.getRowCount());
+            for (int cell = 0; cell < ec.getCellCount(); cell++) {
+                Assert.assertEquals(ac.getText(cell), ec.getText(cell));
+                Assert.assertEquals(ac.getRow(cell), ec.getRow(cell));
+                Assert.assertEquals(ac.getX(cell), ec.getX(cell));
+                Assert.assertEquals(ac.getHeight(cell), ec.getHeight(cell));
+                Assert.assertEquals(ac.getGridColumn(cell), ec.getGridColumn(cell));
+                Assert.assertEquals(ac.getColumnSpan(cell), ec.getColumnSpan(cell));
+            }
+        }
+    }
+
+    private static String repeat(char c) {
+        char[] chars = new char[64];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
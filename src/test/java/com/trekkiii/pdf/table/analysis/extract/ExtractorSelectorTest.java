@@ -0,0 +1,74 @@
+package com.trekkiii.pdf.table.analysis.extract;
+
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+import org.opencv.core.Rect;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class ExtractorSelectorTest {
+
+    private static final List<Rect> CELLS = Arrays.asList(
+            new Rect(0, 0, 100, 20), new Rect(100, 0, 100, 20),
+            new Rect(0, 20, 100, 20), new Rect(100, 20, 100, 20));
+
+    @Test
+    public void selectsFastestAccurateExtractor() {
+        Map<String, TableExtractor> candidates = new LinkedHashMap<>();
+        candidates.put("reference", fixed(CELLS, 20));
+        candidates.put("fast-but-wrong", fixed(CELLS.subList(0, 1), 0));
+        candidates.put("fast", fixed(shifted(CELLS), 5));
+        candidates.put("failing", (page, mat, timer) -> {
+            throw new IllegalStateException();
+        });
+
+        ExtractorSelector.Selection selection = new ExtractorSelector(candidates, "reference", 0.95)
+                .select(Collections.nCopies(3, new ExtractorSelector.Sample(null, null, 0)));
+        Assert.assertEquals(selection.getName(), "fast", selection.toString());
+        Assert.assertEquals(selection.getScores().get(0).getAgreement(), 1.0);
+        Assert.assertEquals(selection.getScores().get(1).getAgreement(), 0.4, 1e-9);// 召回率1/4，精确率1
+        Assert.assertEquals(selection.getScores().get(3).getNanos(), -1);
+    }
+
+    @Test
+    public void keepsReferenceWithoutCells() {
+        Map<String, TableExtractor> candidates = new LinkedHashMap<>();
+        candidates.put("reference", fixed(Collections.emptyList(), 20));
+        candidates.put("fast", fixed(CELLS, 0));
+
+        ExtractorSelector.Selection selection = new ExtractorSelector(candidates, "reference", 0.5)
+                .select(Collections.nCopies(2, new ExtractorSelector.Sample(null, null, 0)));
+        Assert.assertEquals(selection.getName(), "reference");
+    }
+
+    /**
+     * 每页返回相同单元格、耗时约millis毫秒的识别方法
+     */
+    private static TableExtractor fixed(List<Rect> cells, long millis) {
+        return (page, mat, timer) -> {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return cells.isEmpty() ? Collections.<DetectedTable>emptyList() : Collections.singletonList(DetectedTable.of(cells));
+        };
+    }
+
+    /**
+     * 每个单元格偏移一个像素，IoU仍大于阈值
+     */
+    private static List<Rect> shifted(List<Rect> cells) {
+        Rect[] out = new Rect[cells.size()];
+        for (int i = 0; i < out.length; i++) {
+            Rect cell = cells.get(i);
+            out[i] = new Rect(cell.x + 1, cell.y + 1, cell.width, cell.height);
+        }
+        return Arrays.asList(out);
+    }
+}
@@ -0,0 +1,71 @@
+package com.trekkiii.pdf.table.analysis.metrics;
+
+import org.testng.Assert;
+import org.testng.SkipException;
+import org.testng.annotations.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class HistogramTest {
+
+    @Test
+    public void recordAndQuantiles() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+        histogram.record(-5);// 按0记录
+
+        Assert.assertEquals(histogram.getCount(), 101);
+        Assert.assertEquals(histogram.getSum(), 5050);
+        Assert.assertEquals(histogram.getMax(), 100);
+        // 50位于[32, 64)桶，99位于[64, 128)桶，上界不超过最大值
+        Assert.assertEquals(histogram.getQuantile(0.5), 63);
+        Assert.assertEquals(histogram.getQuantile(0.99), 100);
+        Assert.assertEquals(histogram.getQuantile(0), 0);
+
+        histogram.reset();
+        Assert.assertEquals(histogram.getCount(), 0);
+        Assert.assertEquals(histogram.getQuantile(0.5), 0);
+    }
+
+    @Test
+    public void noopListenerIsDisabled() {
+        StageTimer timer = new StageTimer(ParseListener.NOOP, 1);
+        Assert.assertFalse(timer.isEnabled());
+        timer.start();
+        timer.stop(Stage.RENDER);
+    }
+
+    @Test
+    public void allocationTrackingIsOptIn() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)
+                || !((com.sun.management.ThreadMXBean) bean).isThreadAllocatedMemorySupported()) {
+            throw new SkipException("JVM不支持统计线程内存分配");
+        }
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        boolean wasEnabled = sunBean.isThreadAllocatedMemoryEnabled();
+        try {
+            sunBean.setThreadAllocatedMemoryEnabled(false);
+            HistogramParseListener listener = new HistogramParseListener();
+            StageTimer timer = new StageTimer(listener, 1);
+            timer.start();
+            timer.stop(Stage.RENDER);
+            // 不修改JVM设置，也不记录内存分配量
+            Assert.assertFalse(sunBean.isThreadAllocatedMemoryEnabled());
+            Assert.assertEquals(listener.getStageNanos(Stage.RENDER).getCount(), 1);
+            Assert.assertEquals(listener.getStageAllocatedBytes(Stage.RENDER).getCount(), 0);
+
+            listener = new HistogramParseListener(true);
+            Assert.assertTrue(sunBean.isThreadAllocatedMemoryEnabled());
+            timer = new StageTimer(listener, 1);
+            timer.start();
+            timer.stop(Stage.RENDER);
+            Assert.assertEquals(listener.getStageAllocatedBytes(Stage.RENDER).getCount(), 1);
+        } finally {
+            sunBean.setThreadAllocatedMemoryEnabled(wasEnabled);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.trekkiii.pdf.table.analysis.models;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.stream.Collectors;
+
+public class CompactTableTest {
+
+    @Test
+    public void cellsAndViews() throws Exception {
+        CompactTable table = new CompactTable();
+        for (int row = 0; row < 20; row++) {// 超过初始容量，验证扩容
+            table.startRow();
+            for (int col = 0; col < 3; col++) {
+                table.addCell("r" + row + "c" + col, col * 10, row * 5, 10, 5);
+            }
+        }
+        table.startRow();// 空行
+        table.trimToSize();
+
+        Assert.assertEquals(table.getRowCount(), 21);
+        Assert.assertEquals(table.getCellCount(), 60);
+        Assert.assertEquals(table.getRowSize(20), 0);
+
+        int cell = table.getCell(7, 2);
+        Assert.assertEquals(table.getText(cell), "r7c2");
+        Assert.assertEquals(table.getRow(cell), 7);
+        Assert.assertEquals(table.getColumn(cell), 2);
+        Assert.assertEquals(table.getX(cell), 20);
+        Assert.assertEquals(table.getY(cell), 35);
+        Assert.assertEquals(table.getWidth(cell), 10);
+        Assert.assertEquals(table.getHeight(cell), 5);
+        Assert.assertEquals(table.getColumnCells(1).count(), 20);
+
+        StringWriter writer = new StringWriter();
+        table.writeText(cell, writer);
+        Assert.assertEquals(writer.toString(), "r7c2");
+    }
+
+    @Test
+    public void pageRowsAreViews() {
+        ParsedTablePage page = new ParsedTablePage(1);
+        page.addRow(Arrays.asList("a", "", "中文"));
+        page.addRow(Collections.singletonList("b"));
+
+        Assert.assertEquals(page.getRows().size(), 2);
+        Assert.assertEquals(page.getRow(0).getCells(), Arrays.asList("a", "", "中文"));
+        Assert.assertEquals(page.getRow(1).getCell(0), "b");
+        Assert.assertEquals(page.getCell(0, 2), "中文");
+        Assert.assertEquals(page.getRows().stream().map(r -> r.getCells().size()).collect(Collectors.toList()),
+                Arrays.asList(3, 1));
+    }
+
+    @Test
+    public void gridLookup() {
+        CompactTable table = new CompactTable();
+        table.startRow();
+        int merged = table.addCell("merged", 0, 0, 20, 10);
+        int b = table.addCell("b", 20, 0, 10, 5);
+        table.startRow();
+        int c = table.addCell("c", 20, 5, 10, 5);
+        table.setGridPosition(merged, 0, 0, 2, 2);
+        table.setGridPosition(b, 0, 2, 1, 1);
+        table.setGridPosition(c, 1, 2, 1, 1);
+
+        Assert.assertEquals(table.getGridRowCount(), 2);
+        Assert.assertEquals(table.getGridColumnCount(), 3);
+        Assert.assertEquals(table.getCellAt(1, 1), merged);
+        Assert.assertEquals(table.getCellAt(1, 2), c);
+        Assert.assertEquals(table.getCellAt(2, 0), -1);
+        Assert.assertEquals(table.getColumnSpan(merged), 2);
+
+        table.setGridPosition(c, 5000, 5000, 1, 1);// 网格很稀疏，不建立占用表
+        Assert.assertEquals(table.getCellAt(5000, 5000), c);
+        Assert.assertEquals(table.getCellAt(1, 2), -1);
+    }
+
+    @Test(expectedExceptions = IndexOutOfBoundsException.class)
+    public void rowOutOfRange() {
+        new ParsedTablePage(1).getRow(0);
+    }
+}
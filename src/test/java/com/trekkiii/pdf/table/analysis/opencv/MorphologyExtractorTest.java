@@ -0,0 +1,88 @@
+package com.trekkiii.pdf.table.analysis.opencv;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.trekkiii.pdf.table.analysis.utils.Utils.bufferedImage2GrayscaleMat;
+
+public class MorphologyExtractorTest {
+
+    private static final String TEST_FILENAME = "test_tables.pdf";
+
+    @BeforeClass
+    private void loadOpenCV() {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    @Test
+    public void findsSameCellsAsContours() throws IOException {
+        File file = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile());
+        try (PDDocument document = PDDocument.load(file)) {
+            Mat mat = render(document);
+            List<Rect> expected = new OpenCVExtractor(new Settings()).getTableBoundingRectangles(mat);
+            List<Rect> actual = new MorphologyExtractor(new Settings()).getTableBoundingRectangles(mat);
+            Assert.assertFalse(expected.isEmpty());
+            Assert.assertEquals(new HashSet<>(actual), new HashSet<>(expected));
+            mat.release();
+        }
+    }
+
+    @Test
+    public void mergesCellsOnlyWhereBorderIsMissing() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                // 3×3的表格，单元格100×30
+                for (int row = 0; row <= 3; row++) {
+                    float y = 600 - row * 30;
+                    if (row == 1) {// 第二列单元格的底边有3pt的缺口
+                        content.moveTo(100, y);
+                        content.lineTo(245, y);
+                        content.moveTo(248, y);
+                    } else {
+                        content.moveTo(100, y);
+                    }
+                    content.lineTo(400, y);
+                }
+                for (int column = 0; column <= 3; column++) {
+                    float x = 100 + column * 100;
+                    content.moveTo(x, column == 1 ? 570 : 600);// 第一行前两列合并
+                    content.lineTo(x, 510);
+                }
+                content.moveTo(310, 545);// 单元格内的下划线
+                content.lineTo(390, 545);
+                content.stroke();
+            }
+            Mat mat = render(document);
+            List<DetectedTable> tables = new MorphologyExtractor(new Settings()).getTables(mat, null);
+            mat.release();
+
+            Assert.assertEquals(tables.size(), 1);
+            List<Rect> cells = tables.get(0).getCells();
+            Assert.assertEquals(cells.size(), 8);
+            Assert.assertTrue(cells.get(0).width > 2 * cells.get(1).width, "merged cell: " + cells);
+            for (int i = 2; i < cells.size(); i++) {
+                Assert.assertEquals(cells.get(i).height, cells.get(1).height, "cell " + i + ": " + cells);
+            }
+        }
+    }
+
+    private static Mat render(PDDocument document) throws IOException {
+        return bufferedImage2GrayscaleMat(new PDFRenderer(document).renderImageWithDPI(0, 120, ImageType.RGB));
+    }
+}
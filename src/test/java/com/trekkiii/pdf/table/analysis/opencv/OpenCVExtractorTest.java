@@ -0,0 +1,100 @@
+package com.trekkiii.pdf.table.analysis.opencv;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.rendering.ImageType;
+import org.apache.pdfbox.rendering.PDFRenderer;
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.trekkiii.pdf.table.analysis.utils.Utils.bufferedImage2GrayscaleMat;
+
+public class OpenCVExtractorTest {
+
+    private static final String TEST_FILENAME = "test_tables.pdf";
+
+    @BeforeClass
+    private void loadOpenCV() {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    @Test
+    public void regionDetectionFindsSameCellsAsFullPage() throws IOException {
+        File file = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile());
+        try (PDDocument document = PDDocument.load(file)) {
+            Mat mat = render(document);
+            List<Rect> expected = extractor(1).getTableBoundingRectangles(mat);
+            List<Rect> actual = extractor(2).getTableBoundingRectangles(mat);
+            Assert.assertFalse(expected.isEmpty());
+            Assert.assertEquals(new HashSet<>(actual), new HashSet<>(expected));
+            mat.release();
+        }
+    }
+
+    @Test
+    public void rejectsPageWithoutTables() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+            try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                content.setFont(PDType1Font.HELVETICA, 10);
+                for (int y = 740; y > 40; y -= 12) {
+                    content.beginText();
+                    content.newLineAtOffset(50 + (y * 37) % 23, y);
+                    content.showText("Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor");
+                    content.endText();
+                }
+            }
+            Mat mat = render(document);
+            Assert.assertEquals(extractor(2).getTableBoundingRectangles(mat).size(), 0);
+            mat.release();
+        }
+    }
+
+    @Test
+    public void mergeOverlappingRegions() {
+        List<Rect> merged = OpenCVExtractor.mergeOverlapping(Arrays.asList(
+                new Rect(0, 100, 50, 50), new Rect(40, 140, 50, 50), new Rect(80, 180, 20, 20), new Rect(0, 0, 10, 10)));
+        Assert.assertEquals(merged, Arrays.asList(new Rect(0, 0, 10, 10), new Rect(0, 100, 100, 100)));
+    }
+
+    @Test
+    public void groupCellsBySideBySideOutlines() {
+        Rect left = new Rect(0, 0, 100, 50);
+        Rect right = new Rect(120, 0, 100, 50);
+        Rect glyph = new Rect(10, 10, 5, 8);// 文字轮廓，面积小于单元格
+        Rect a = new Rect(2, 2, 48, 46);
+        Rect b = new Rect(52, 2, 46, 46);
+        Rect c = new Rect(122, 2, 96, 46);
+        Rect orphan = new Rect(300, 300, 10, 10);
+
+        List<DetectedTable> tables = OpenCVExtractor.groupByOutline(
+                Arrays.asList(a, c, b, orphan), Arrays.asList(right, glyph, left));
+        Assert.assertEquals(tables.size(), 3);
+        Assert.assertEquals(tables.get(0).getBounds(), left);
+        Assert.assertEquals(tables.get(0).getCells(), Arrays.asList(a, b));
+        Assert.assertEquals(tables.get(1).getBounds(), right);
+        Assert.assertEquals(tables.get(1).getCells(), Arrays.asList(c));
+        Assert.assertEquals(tables.get(2).getBounds(), orphan);
+    }
+
+    private static OpenCVExtractor extractor(int regionDetectionScale) {
+        return new OpenCVExtractor(Settings.builder().setRegionDetectionScale(regionDetectionScale).build());
+    }
+
+    private static Mat render(PDDocument document) throws IOException {
+        return bufferedImage2GrayscaleMat(new PDFRenderer(document).renderImageWithDPI(0, 120, ImageType.RGB));
+    }
+}
@@ -0,0 +1,98 @@
+package com.trekkiii.pdf.table.analysis.output;
+
+import com.trekkiii.pdf.table.analysis.models.ParsedTablePage;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class TablePageWriterTest {
+
+    private static ParsedTablePage page() {
+        ParsedTablePage page = new ParsedTablePage(3);
+        page.setDpi(300);
+        page.addRow(Arrays.asList("a\tb\\c\r\n", "x,\"y\""));
+        page.addRow(Arrays.asList("中文\uD83D\uDE00", "", "\u0001"));
+        page.addTable(10, 20, 30, 40);
+        page.addRow(Arrays.asList("t2"));
+        return page;
+    }
+
+    private static String write(OutputFormat format, int bufferSize, ParsedTablePage... pages) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TablePageWriter writer = format == OutputFormat.CSV
+                ? new CsvTablePageWriter(Channels.newChannel(out), bufferSize)
+                : format == OutputFormat.TSV
+                ? new TsvTablePageWriter(Channels.newChannel(out), bufferSize)
+                : new JsonLinesTablePageWriter(Channels.newChannel(out), bufferSize)) {
+            for (ParsedTablePage page : pages) {
+                writer.write(page);
+            }
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void writesTsv() throws IOException {
+        Assert.assertEquals(write(OutputFormat.TSV, 16, page()),
+                "3\t1\t1\ta\\tb\\\\c\\r\\n\tx,\"y\"\n3\t1\t2\t中文\uD83D\uDE00\t\t\u0001\n3\t2\t1\tt2\n");
+    }
+
+    @Test
+    public void writesCsv() throws IOException {
+        Assert.assertEquals(write(OutputFormat.CSV, 16, page()),
+                "3,1,1,\"a\tb\\c\r\n\",\"x,\"\"y\"\"\"\r\n3,1,2,中文\uD83D\uDE00,,\u0001\r\n3,2,1,t2\r\n");
+    }
+
+    @Test
+    public void writesJsonLines() throws IOException {
+        ParsedTablePage failed = new ParsedTablePage(4);
+        failed.setError(new IOException("bad \"page\""));
+        Assert.assertEquals(write(OutputFormat.JSONL, 16, page(), failed),
+                "{\"page\":3,\"dpi\":300,\"tables\":[{\"bounds\":[0,0,0,0],\"rows\":[[\"a\\tb\\\\c\\r\\n\",\"x,\\\"y\\\"\"],"
+                        + "[\"中文\uD83D\uDE00\",\"\",\"\\u0001\"]]},{\"bounds\":[10,20,30,40],\"rows\":[[\"t2\"]]}]}\n"
+                        + "{\"page\":4,\"error\":\"java.io.IOException: bad \\\"page\\\"\"}\n");
+    }
+
+    @Test
+    public void writesArrow() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (TablePageWriter writer = OutputFormat.ARROW.open(Channels.newChannel(out))) {
+            writer.write(page());
+            writer.write(new ParsedTablePage(4));// 没有单元格，不输出
+            writer.write(page());
+        }
+
+        try (RootAllocator allocator = new RootAllocator();
+             ArrowStreamReader reader = new ArrowStreamReader(new ByteArrayInputStream(out.toByteArray()), allocator)) {
+            VectorSchemaRoot root = reader.getVectorSchemaRoot();
+            Assert.assertEquals(root.getSchema(), ArrowTablePageWriter.SCHEMA);
+            int batches = 0;
+            while (reader.loadNextBatch()) {
+                batches++;
+                Assert.assertEquals(root.getRowCount(), 6);
+                Assert.assertEquals(((IntVector) root.getVector("table")).get(5), 2);
+                Assert.assertEquals(((IntVector) root.getVector("row")).get(5), 1);
+                Assert.assertEquals(((IntVector) root.getVector("page")).get(3), 3);
+                Assert.assertEquals(((IntVector) root.getVector("row")).get(3), 2);
+                Assert.assertEquals(((IntVector) root.getVector("column")).get(3), 2);
+                Assert.assertEquals(((IntVector) root.getVector("grid_column")).get(3), 2);
+                Assert.assertEquals(((IntVector) root.getVector("column_span")).get(3), 1);
+                VarCharVector text = (VarCharVector) root.getVector("text");
+                Assert.assertEquals(new String(text.get(0), StandardCharsets.UTF_8), "a\tb\\c\r\n");
+                Assert.assertEquals(new String(text.get(2), StandardCharsets.UTF_8), "中文\uD83D\uDE00");
+            }
+            Assert.assertEquals(batches, 2);
+        }
+    }
+}
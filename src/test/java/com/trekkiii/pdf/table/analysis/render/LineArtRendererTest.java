@@ -0,0 +1,51 @@
+package com.trekkiii.pdf.table.analysis.render;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.apache.pdfbox.rendering.ImageType;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+public class LineArtRendererTest {
+
+    @Test
+    public void drawsOnlyPaths() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();// 612×792
+            document.addPage(page);
+            BufferedImage black = new BufferedImage(10, 10, BufferedImage.TYPE_BYTE_GRAY);
+            try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                stream.beginText();
+                stream.setFont(PDType1Font.HELVETICA_BOLD, 48);
+                stream.newLineAtOffset(72, 700);
+                stream.showText("MMMM");
+                stream.endText();
+                stream.drawImage(LosslessFactory.createFromImage(document, black), 72, 400, 100, 100);
+                stream.setLineWidth(2);
+                stream.moveTo(72, 200);
+                stream.lineTo(300, 200);
+                stream.stroke();
+            }
+
+            BufferedImage full = new LineArtRenderer(document).renderImage(0, 1, ImageType.GRAY);
+            Assert.assertEquals(full.getType(), BufferedImage.TYPE_BYTE_GRAY);
+            Assert.assertTrue(gray(full, 200, 792 - 200) < 128, "line");
+            Assert.assertEquals(gray(full, 120, 792 - 450), 255, "image");
+            for (int x = 72; x < 250; x++) {
+                for (int y = 792 - 740; y < 792 - 690; y++) {
+                    Assert.assertEquals(gray(full, x, y), 255, "text at " + x + "," + y);
+                }
+            }
+        }
+    }
+
+    private static int gray(BufferedImage image, int x, int y) {
+        return image.getRaster().getSample(x, y, 0);
+    }
+}
@@ -0,0 +1,53 @@
+package com.trekkiii.pdf.table.analysis.text;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.text.PDFTextStripperByArea;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class CellTextStripperTest {
+
+    private static final String TEST_FILENAME = "test_tables.pdf";
+
+    @Test
+    public void sameTextAsStripperByArea() throws IOException {
+        File file = new File(getClass().getClassLoader().getResource(TEST_FILENAME).getFile());
+        try (PDDocument document = PDDocument.load(file)) {
+            PDPage page = document.getPage(0);
+
+            // 覆盖整页的网格，包括空白单元格
+            List<Rectangle> cells = new ArrayList<>();
+            for (int y = 0; y < 800; y += 37) {
+                for (int x = 0; x < 600; x += 53) {
+                    cells.add(new Rectangle(x, y, 53, 37));
+                }
+            }
+
+            PDFTextStripperByArea expected = new PDFTextStripperByArea();
+            expected.setSortByPosition(true);
+            CellTextStripper actual = new CellTextStripper();
+            actual.setSortByPosition(true);
+            for (int i = 0; i < cells.size(); i++) {
+                expected.addRegion(String.valueOf(i), cells.get(i));
+                Assert.assertEquals(actual.addCell(cells.get(i)), i);
+            }
+            expected.extractRegions(page);
+            actual.extractCells(page);
+
+            boolean anyText = false;
+            for (int i = 0; i < cells.size(); i++) {
+                String text = actual.getTextForCell(i);
+                anyText |= !text.trim().isEmpty();
+                Assert.assertEquals(text, expected.getTextForRegion(String.valueOf(i)), "cell " + i);
+            }
+            Assert.assertTrue(anyText);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.trekkiii.pdf.table.analysis.utils;
+
+import org.opencv.core.Core;
+import org.opencv.core.Mat;
+import org.opencv.imgcodecs.Imgcodecs;
+import org.testng.Assert;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+
+public class UtilsTest {
+
+    @BeforeClass
+    private void loadOpenCV() {
+        nu.pattern.OpenCV.loadShared();
+    }
+
+    @Test
+    public void grayscaleMatMatchesPngRoundTrip() throws IOException {
+        BufferedImage image = new BufferedImage(97, 53, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 97, 53);
+        g.setColor(new Color(30, 120, 200));
+        g.drawRect(5, 5, 80, 40);
+        g.setColor(Color.BLACK);
+        g.drawString("42", 20, 30);
+        g.dispose();
+
+        Mat expected = Utils.bufferedImage2Mat(image, Imgcodecs.IMREAD_GRAYSCALE);
+        Mat actual = Utils.bufferedImage2GrayscaleMat(image);
+
+        Assert.assertEquals(actual.size(), expected.size());
+        Mat diff = new Mat();
+        Core.absdiff(actual, expected, diff);
+        Assert.assertTrue(Core.minMaxLoc(diff).maxVal <= 1, "max diff: " + Core.minMaxLoc(diff).maxVal);
+    }
+
+    @Test
+    public void grayImageIsCopiedIntoReusedMat() {
+        BufferedImage image = new BufferedImage(10, 4, BufferedImage.TYPE_BYTE_GRAY);
+        image.getRaster().setSample(3, 2, 0, 77);
+
+        Mat mat = new Mat();
+        GrayscaleBufferPool pool = new GrayscaleBufferPool(1);
+        Utils.bufferedImage2GrayscaleMat(image, mat, pool);
+        long nativeAddr = mat.dataAddr();
+        Utils.bufferedImage2GrayscaleMat(image, mat, pool);
+
+        Assert.assertEquals(mat.dataAddr(), nativeAddr);
+        Assert.assertEquals(mat.rows(), 4);
+        Assert.assertEquals(mat.cols(), 10);
+        Assert.assertEquals(mat.get(2, 3)[0], 77.0);
+    }
+}
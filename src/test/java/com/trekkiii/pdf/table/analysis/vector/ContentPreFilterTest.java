@@ -0,0 +1,114 @@
+package com.trekkiii.pdf.table.analysis.vector;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.PDResources;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.apache.pdfbox.pdmodel.graphics.form.PDFormXObject;
+import org.apache.pdfbox.pdmodel.graphics.image.LosslessFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+public class ContentPreFilterTest {
+
+    @Test
+    public void textWithUnderlineHasNoTable() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = page(document);
+            try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                stream.beginText();
+                stream.setFont(PDType1Font.HELVETICA, 12);
+                stream.newLineAtOffset(72, 700);
+                stream.showText("Just a paragraph of text");
+                stream.endText();
+                stream.moveTo(72, 698);
+                stream.lineTo(200, 698);
+                stream.stroke();
+                stream.addRect(0, 0, 612, 792);// 只用于裁剪的矩形不计
+                stream.clip();
+            }
+            Assert.assertFalse(ContentPreFilter.mayContainTable(page));
+        }
+    }
+
+    @Test
+    public void strokedRectangleMayBeTable() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = page(document);
+            try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                stream.addRect(72, 600, 200, 40);
+                stream.stroke();
+            }
+            Assert.assertTrue(ContentPreFilter.mayContainTable(page));
+        }
+    }
+
+    @Test
+    public void closedPathMayBeTable() throws IOException {
+        for (int close = 0; close < 3; close++) {// h S、s、b
+            try (PDDocument document = new PDDocument()) {
+                PDPage page = page(document);
+                try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                    stream.moveTo(72, 600);// 3条直线段加上封闭时回到起点的边，共4条边
+                    stream.lineTo(272, 600);
+                    stream.lineTo(272, 640);
+                    stream.lineTo(72, 640);
+                    if (close == 0) {
+                        stream.closePath();
+                        stream.stroke();
+                    } else if (close == 1) {
+                        stream.closeAndStroke();
+                    } else {
+                        stream.closeAndFillAndStroke();
+                    }
+                }
+                Assert.assertTrue(ContentPreFilter.mayContainTable(page), "close " + close);
+            }
+        }
+    }
+
+    @Test
+    public void linesInRepeatedFormAreCounted() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDFormXObject form = new PDFormXObject(document);
+            form.setBBox(new PDRectangle(200, 10));
+            form.setResources(new PDResources());
+            try (OutputStream out = form.getContentStream().createOutputStream()) {
+                out.write("0 0 m 200 0 l 0 0 m 0 10 l S\n".getBytes(StandardCharsets.US_ASCII));// 每次绘制2条边
+            }
+            PDPage page = page(document);
+            try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                stream.drawForm(form);
+            }
+            Assert.assertFalse(ContentPreFilter.mayContainTable(page));
+            try (PDPageContentStream stream = new PDPageContentStream(document, page, PDPageContentStream.AppendMode.APPEND, false)) {
+                stream.drawForm(form);
+            }
+            Assert.assertTrue(ContentPreFilter.mayContainTable(page));
+        }
+    }
+
+    @Test
+    public void imageMayBeScannedTable() throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = page(document);
+            try (PDPageContentStream stream = new PDPageContentStream(document, page)) {
+                stream.drawImage(LosslessFactory.createFromImage(document, new BufferedImage(4, 4, BufferedImage.TYPE_BYTE_GRAY)), 72, 600);
+            }
+            Assert.assertTrue(ContentPreFilter.mayContainTable(page));
+        }
+    }
+
+    private static PDPage page(PDDocument document) {
+        PDPage page = new PDPage(PDRectangle.LETTER);
+        document.addPage(page);
+        return page;
+    }
+}
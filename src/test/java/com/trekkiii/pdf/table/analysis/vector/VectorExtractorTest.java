@@ -0,0 +1,111 @@
+package com.trekkiii.pdf.table.analysis.vector;
+
+import com.trekkiii.pdf.table.analysis.Settings;
+import com.trekkiii.pdf.table.analysis.opencv.DetectedTable;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.opencv.core.Rect;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class VectorExtractorTest {
+
+    /**
+     * 3列x2行的表格，第一行的后两列合并，第一列的两行合并：
+     * <pre>
+     * +----+---------+
+     * |    |         |
+     * |    +----+----+
+     * |    |    |    |
+     * +----+----+----+
+     * </pre>
+     */
+    @Test
+    public void buildCellsWithMergedCells() {
+        List<float[]> horizontals = new ArrayList<>();
+        horizontals.add(new float[]{0, 300, 0});
+        horizontals.add(new float[]{100, 300, 50.5f});
+        horizontals.add(new float[]{0, 150, 100});
+        horizontals.add(new float[]{150, 300, 100});// 分段绘制的同一条线
+
+        List<float[]> verticals = new ArrayList<>();
+        verticals.add(new float[]{0, 100, 0});
+        verticals.add(new float[]{0, 100, 100});
+        verticals.add(new float[]{50, 100, 200.8f});// 与200相差不足容差，应视为同一条线
+        verticals.add(new float[]{60, 90, 199.5f});
+        verticals.add(new float[]{0, 100, 300});
+
+        List<float[]> cells = VectorExtractor.buildCells(horizontals, verticals);
+
+        Assert.assertEquals(cells.size(), 4);
+        assertCell(cells.get(0), 0, 0, 100, 100);
+        assertCell(cells.get(1), 100, 0, 300, 50.5f);
+        assertCell(cells.get(2), 100, 50.5f, 200, 100);
+        assertCell(cells.get(3), 200, 50.5f, 300, 100);
+    }
+
+    @Test
+    public void noCellsWithoutVerticalRulings() {
+        List<float[]> horizontals = new ArrayList<>();
+        horizontals.add(new float[]{0, 300, 0});
+        horizontals.add(new float[]{0, 300, 20});
+
+        Assert.assertTrue(VectorExtractor.buildCells(horizontals, new ArrayList<>()).isEmpty());
+    }
+
+    @Test
+    public void groupConnectedCellsIntoTables() {
+        List<float[]> cells = new ArrayList<>();
+        cells.add(new float[]{0, 0, 100, 20});
+        cells.add(new float[]{300, 0, 400, 20});// 并排的第二个表格
+        cells.add(new float[]{100, 0, 200, 20});
+        cells.add(new float[]{0, 20, 200, 40});
+        cells.add(new float[]{300, 20.5f, 400, 40});
+
+        List<List<float[]>> groups = VectorExtractor.groupConnected(cells);
+        Assert.assertEquals(groups.size(), 2);
+        Assert.assertEquals(groups.get(0).size(), 3);
+        Assert.assertSame(groups.get(1).get(0), cells.get(1));
+        Assert.assertSame(groups.get(1).get(1), cells.get(4));
+    }
+
+    @Test
+    public void ignoresPageBackgroundFill() throws IOException {
+        for (Color background : new Color[]{Color.WHITE, new Color(0xEE, 0xEE, 0xFF)}) {
+            try (PDDocument document = new PDDocument()) {
+                PDPage page = new PDPage();// 612×792
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.setNonStrokingColor(background);// 页面底色
+                    content.addRect(0, 0, 612, 792);
+                    content.fill();
+                    for (int i = 0; i <= 2; i++) {// 2×2的表格
+                        content.moveTo(100, 600 - i * 50);
+                        content.lineTo(300, 600 - i * 50);
+                        content.moveTo(100 + i * 100, 600);
+                        content.lineTo(100 + i * 100, 500);
+                    }
+                    content.stroke();
+                }
+
+                List<DetectedTable> tables = new VectorExtractor(Settings.builder().build()).getTables(page);
+                Assert.assertEquals(tables.size(), 1, background.toString());
+                Assert.assertEquals(tables.get(0).getCells().size(), 4, background.toString());
+                Assert.assertEquals(tables.get(0).getBounds(), new Rect(167, 320, 333, 167));// 120 DPI
+            }
+        }
+    }
+
+    private static void assertCell(float[] cell, float x1, float y1, float x2, float y2) {
+        Assert.assertEquals(cell[0], x1, 0.5);
+        Assert.assertEquals(cell[1], y1, 0.5);
+        Assert.assertEquals(cell[2], x2, 0.5);
+        Assert.assertEquals(cell[3], y2, 0.5);
+    }
+}